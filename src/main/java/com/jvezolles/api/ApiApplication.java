@@ -3,7 +3,9 @@ package com.jvezolles.api;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main class, used to launch spring boot
@@ -11,6 +13,8 @@ import org.springframework.boot.web.servlet.support.SpringBootServletInitializer
  * @author Vezolles
  */
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@EnableScheduling
 public class ApiApplication extends SpringBootServletInitializer {
 
     /**
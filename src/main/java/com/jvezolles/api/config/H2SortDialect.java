@@ -0,0 +1,18 @@
+package com.jvezolles.api.config;
+
+import org.hibernate.dialect.H2Dialect;
+
+/**
+ * Dialect for H2, sorting by columns instead of positions of selected columns
+ * H2 only recognizes an index already in order of an ORDER BY on columns, so users filtered are read from their index without sort
+ *
+ * @author Vezolles
+ */
+public class H2SortDialect extends H2Dialect {
+
+    @Override
+    public boolean supportsOrdinalSelectItemReference() {
+        return false;
+    }
+
+}
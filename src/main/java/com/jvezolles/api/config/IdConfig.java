@@ -0,0 +1,33 @@
+package com.jvezolles.api.config;
+
+import com.jvezolles.api.util.TimeOrderedIdentifierGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration spring boot for ids generated by the application
+ * Node id is required, the application fails to start without it
+ *
+ * @author Vezolles
+ */
+@Slf4j
+@Configuration
+public class IdConfig {
+
+    /**
+     * Bean declaration for Hibernate properties, with node id of the instance
+     *
+     * @param idProperties the id properties, with node id
+     * @return the Hibernate properties customizer
+     */
+    @Bean
+    public HibernatePropertiesCustomizer idCustomizer(IdProperties idProperties) {
+
+        log.info("Ids generated with node id {}", idProperties.getNode());
+
+        return properties -> properties.put(TimeOrderedIdentifierGenerator.NODE_SETTING, idProperties.getNode());
+    }
+
+}
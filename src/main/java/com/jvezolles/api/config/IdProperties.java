@@ -0,0 +1,30 @@
+package com.jvezolles.api.config;
+
+import com.jvezolles.api.util.TimeOrderedIdGenerator;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration properties for ids generated by the application
+ *
+ * @author Vezolles
+ */
+@Data
+@Validated
+@ConfigurationProperties(prefix = "jvezolles.id")
+public class IdProperties {
+
+    /**
+     * Node id of the instance, distinct by instance sharing the database
+     * Required, so that instances never start with the same node id by default
+     */
+    @NotNull
+    @Min(0)
+    @Max(TimeOrderedIdGenerator.MAX_NODE)
+    private Integer node;
+
+}
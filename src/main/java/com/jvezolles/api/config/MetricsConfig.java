@@ -0,0 +1,27 @@
+package com.jvezolles.api.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration spring boot for metrics
+ *
+ * @author Vezolles
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Bean declaration for aspect timing methods annotated with Timed
+     *
+     * @param meterRegistry the registry of meters
+     * @return the timed aspect
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+}
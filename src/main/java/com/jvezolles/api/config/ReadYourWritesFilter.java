@@ -0,0 +1,102 @@
+package com.jvezolles.api.config;
+
+import com.jvezolles.api.util.Constants;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Read-your-writes filter
+ * Marks clients writing with a cookie, then serves their reads from primary during the window
+ *
+ * @author Vezolles
+ */
+@AllArgsConstructor
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final Set<String> WRITE_METHODS = Set.of(HttpMethod.POST.name(), HttpMethod.PUT.name(), HttpMethod.PATCH.name(), HttpMethod.DELETE.name());
+
+    /**
+     * Window after a write during which reads are served by primary
+     */
+    private final Duration window;
+
+    /**
+     * Clock used for time of writes
+     */
+    private final Clock clock;
+
+    /**
+     * Same contract as for {@code doFilter}, but guaranteed to be
+     * just invoked once per request within a single request thread.
+     *
+     * @param request     The request to process
+     * @param response    The response associated with the request
+     * @param filterChain Provides access to the next filter in the chain for this filter
+     *                    to pass the request and response to for further processing
+     * @throws IOException      if an I/O error occurs during this filter's processing of the request
+     * @throws ServletException if the processing fails for any other reason
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        // Mark client writing, before response is committed
+        if (WRITE_METHODS.contains(request.getMethod())) {
+            Cookie cookie = new Cookie(Constants.LAST_WRITE_COOKIE, String.valueOf(clock.millis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) window.toSeconds());
+            response.addCookie(cookie);
+
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // Serve reads from primary if client wrote during window
+        if (isRecentWrite(WebUtils.getCookie(request, Constants.LAST_WRITE_COOKIE))) {
+            try {
+                ReplicaRoutingDataSource.forcePrimary();
+                filterChain.doFilter(request, response);
+
+            } finally {
+                ReplicaRoutingDataSource.clearPrimary();
+            }
+
+        } else {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    /**
+     * Filter is disabled if window is zero
+     *
+     * @param request current HTTP request
+     * @return true if window is zero, else false
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return window.isZero();
+    }
+
+    private boolean isRecentWrite(Cookie cookie) {
+
+        try {
+            return cookie != null && clock.millis() - Long.parseLong(cookie.getValue()) < window.toMillis();
+
+        } catch (NumberFormatException _) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.jvezolles.api.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration spring boot for read replicas
+ * Enabled only if at least one replica is configured, else the single datasource is used
+ *
+ * @author Vezolles
+ */
+@Configuration
+@AllArgsConstructor
+@ConditionalOnProperty(name = "jvezolles.datasource.replicas[0].url")
+public class ReplicaDataSourceConfig {
+
+    /**
+     * Replica properties
+     */
+    private ReplicaProperties replicaProperties;
+
+    /**
+     * Environment, used to bind pool properties of replicas
+     */
+    private Environment environment;
+
+    /**
+     * Bean declaration for primary datasource, from spring datasource properties
+     *
+     * @param dataSourceProperties the spring datasource properties
+     * @return the primary datasource
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Bean declaration for routing datasource between primary and replicas
+     * Replica pools are configured as primary pool, from spring hikari properties, and closed with routing datasource
+     *
+     * @param primaryDataSource the primary datasource
+     * @return the routing datasource
+     */
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource) {
+
+        Binder binder = Binder.get(environment);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaProperties.getReplicas().size(); i++) {
+            ReplicaProperties.Replica replica = replicaProperties.getReplicas().get(i);
+
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(replica.getUrl())
+                    .username(replica.getUsername())
+                    .password(replica.getPassword())
+                    .driverClassName(replica.getDriverClassName())
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+            dataSource.setPoolName("replica-" + i);
+
+            replicas.put("replica-" + i, dataSource);
+        }
+
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, replicaProperties.getHealthCheckTimeout());
+    }
+
+    /**
+     * Bean declaration for datasource
+     * Connection is fetched lazily, once read-only flag of transaction is known
+     *
+     * @param replicaRoutingDataSource the routing datasource
+     * @return the datasource
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * Bean declaration for read-your-writes filter
+     *
+     * @param clock the clock used
+     * @return the read-your-writes filter
+     */
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(Clock clock) {
+        return new ReadYourWritesFilter(replicaProperties.getReadYourWritesWindow(), clock);
+    }
+
+}
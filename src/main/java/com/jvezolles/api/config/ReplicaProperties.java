@@ -0,0 +1,67 @@
+package com.jvezolles.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties for read replicas of datasource
+ *
+ * @author Vezolles
+ */
+@Data
+@ConfigurationProperties(prefix = "jvezolles.datasource")
+public class ReplicaProperties {
+
+    /**
+     * Read replicas, read-only transactions are routed to them if any
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * Interval between health checks of replicas
+     */
+    private Duration healthCheckInterval = Duration.ofSeconds(10);
+
+    /**
+     * Timeout of health check of a replica
+     */
+    private Duration healthCheckTimeout = Duration.ofSeconds(1);
+
+    /**
+     * Window after a write during which reads of the same client are served by primary, disabled if zero
+     */
+    private Duration readYourWritesWindow = Duration.ZERO;
+
+    /**
+     * Read replica connection
+     */
+    @Data
+    public static class Replica {
+
+        /**
+         * JDBC url of replica
+         */
+        private String url;
+
+        /**
+         * Username of replica
+         */
+        private String username;
+
+        /**
+         * Password of replica
+         */
+        private String password;
+
+        /**
+         * JDBC driver class name of replica
+         */
+        private String driverClassName;
+
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.jvezolles.api.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routing datasource between primary and read replicas
+ * Read-only transactions are routed to healthy replicas in turn, other connections to primary
+ * Closing it closes replicas and their health check, primary is closed as its own bean
+ *
+ * @author Vezolles
+ */
+@Slf4j
+public final class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    /**
+     * Lookup key of primary
+     */
+    public static final String PRIMARY = "primary";
+
+    /**
+     * Primary forced for current thread, used for read-your-writes
+     */
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /**
+     * Replicas by lookup key
+     */
+    private final Map<String, DataSource> replicas;
+
+    /**
+     * Timeout of health check of a replica
+     */
+    private final Duration healthCheckTimeout;
+
+    /**
+     * Lookup keys of replicas healthy at last health check
+     */
+    private volatile List<String> healthyReplicas;
+
+    /**
+     * Counter used to select replicas in turn
+     */
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Executor checking health of replicas, one virtual thread by replica checked
+     */
+    private final ExecutorService checker = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Default constructor for ReplicaRoutingDataSource
+     *
+     * @param primary  the primary datasource
+     * @param replicas           the replica datasources by lookup key
+     * @param healthCheckTimeout timeout of health check of a replica
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration healthCheckTimeout) {
+
+        this.replicas = replicas;
+        this.healthCheckTimeout = healthCheckTimeout;
+        this.healthyReplicas = List.copyOf(replicas.keySet());
+
+        Map<Object, Object> targetDataSources = new HashMap<>(replicas);
+        targetDataSources.put(PRIMARY, primary);
+
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primary);
+    }
+
+    /**
+     * Force primary for current thread, until cleared
+     */
+    public static void forcePrimary() {
+        PRIMARY_FORCED.set(Boolean.TRUE);
+    }
+
+    /**
+     * Clear primary forced for current thread
+     */
+    public static void clearPrimary() {
+        PRIMARY_FORCED.remove();
+    }
+
+    /**
+     * Check if primary is forced for current thread
+     *
+     * @return true if primary is forced, else false
+     */
+    public static boolean isPrimaryForced() {
+        return PRIMARY_FORCED.get();
+    }
+
+    /**
+     * Determine lookup key of current connection
+     *
+     * @return a healthy replica for read-only transaction, else primary
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        List<String> replicasAvailable = healthyReplicas;
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || PRIMARY_FORCED.get() || replicasAvailable.isEmpty()) {
+            return PRIMARY;
+        }
+
+        return replicasAvailable.get(Math.floorMod(counter.getAndIncrement(), replicasAvailable.size()));
+    }
+
+    /**
+     * Check health of replicas periodically, unhealthy replicas are not used until next check
+     * Replicas are checked in parallel, a replica not answering within the timeout, even to get a connection, is unhealthy
+     */
+    @Scheduled(fixedDelayString = "${jvezolles.datasource.health-check-interval:10s}")
+    public void checkReplicas() {
+
+        // Check all replicas at once
+        Map<String, CompletableFuture<Boolean>> checks = new HashMap<>();
+        replicas.forEach((key, replica) -> checks.put(key, CompletableFuture.supplyAsync(() -> isValid(key, replica), checker)));
+
+        // Keep replicas valid before the deadline of the check
+        long deadline = System.nanoTime() + healthCheckTimeout.toNanos();
+        healthyReplicas = checks.entrySet().stream()
+                .filter(check -> isValid(check.getKey(), check.getValue(), deadline))
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Get lookup keys of replicas healthy at last health check
+     *
+     * @return the lookup keys of healthy replicas
+     */
+    public List<String> getHealthyReplicas() {
+        return healthyReplicas;
+    }
+
+    /**
+     * Stop health checks, and close replicas
+     */
+    @Override
+    public void close() {
+
+        checker.shutdownNow();
+        replicas.forEach((key, replica) -> {
+            if (replica instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+
+                } catch (Exception e) {
+                    log.warn("Replica {} cannot be closed : {}", key, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private boolean isValid(String key, CompletableFuture<Boolean> check, long deadline) {
+
+        try {
+            return check.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+        } catch (TimeoutException _) {
+            log.warn("Replica {} is not healthy : no answer within {}", key, healthCheckTimeout);
+            check.cancel(true);
+            return false;
+
+        } catch (ExecutionException e) {
+            log.warn("Replica {} is not healthy : {}", key, e.getCause().getMessage());
+            return false;
+
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean isValid(String key, DataSource replica) {
+
+        try (Connection connection = replica.getConnection()) {
+            return connection.isValid((int) Math.max(1, healthCheckTimeout.toSeconds()));
+
+        } catch (SQLException e) {
+            log.warn("Replica {} is not healthy : {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+}
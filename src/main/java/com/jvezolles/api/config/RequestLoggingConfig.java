@@ -1,5 +1,6 @@
 package com.jvezolles.api.config;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
@@ -8,6 +9,8 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.stream.Collectors;
 
@@ -55,10 +58,20 @@ public class RequestLoggingConfig {
             long endtime = System.currentTimeMillis();
 
             // Log end incoming request
-            log.info("<- {} {} in {}ms with body : {}", method, request.getRequestURL(), endtime - startTime, mapper.writeValueAsString(result));
+            log.info("<- {} {} in {}ms with body : {}", method, request.getRequestURL(), endtime - startTime, asLoggedBody(result));
         }
     }
 
+    private String asLoggedBody(Object result) throws JsonProcessingException {
+
+        // Streamed body is written after method execution, it cannot be logged
+        if (result instanceof ResponseEntity<?> responseEntity && responseEntity.getBody() instanceof StreamingResponseBody) {
+            return "streamed";
+        }
+
+        return mapper.writeValueAsString(result);
+    }
+
     /**
      * Log GET incoming request
      *
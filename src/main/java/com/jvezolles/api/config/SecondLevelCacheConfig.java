@@ -0,0 +1,73 @@
+package com.jvezolles.api.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * Configuration spring boot for Hibernate second-level cache
+ * Regions are in-process Caffeine caches, bounded in size and time to live, with statistics exposed as metrics
+ *
+ * @author Vezolles
+ */
+@Configuration
+@AllArgsConstructor
+public class SecondLevelCacheConfig {
+
+    /**
+     * User properties, with cache size and time to live
+     */
+    private UserProperties userProperties;
+
+    /**
+     * Bean declaration for JCache manager of second-level cache
+     *
+     * @param meterRegistry the registry of meters
+     * @return the JCache manager, with user regions created
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(MeterRegistry meterRegistry) {
+
+        // Own provider, to not share cache manager between application contexts
+        CacheManager cacheManager = new CaffeineCachingProvider().getCacheManager();
+
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>()
+                .setMaximumSize(OptionalLong.of(userProperties.getEntityCache().getMaxSize()))
+                .setExpireAfterWrite(OptionalLong.of(userProperties.getEntityCache().getTimeToLive().toNanos()))
+                .setStoreByValue(false)
+                .setNativeStatisticsEnabled(true);
+
+        // Create regions and bind their hits, misses and evictions as metrics, from native Caffeine statistics
+        for (String region : List.of(Constants.USER_CACHE_REGION, Constants.USER_NATURAL_ID_CACHE_REGION)) {
+            Cache<Object, Object> cache = cacheManager.createCache(region, configuration);
+            com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache = cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class);
+            CaffeineCacheMetrics.monitor(meterRegistry, nativeCache, region);
+        }
+
+        return cacheManager;
+    }
+
+    /**
+     * Bean declaration for Hibernate properties, using JCache manager of second-level cache
+     *
+     * @param secondLevelCacheManager the JCache manager of second-level cache
+     * @return the Hibernate properties customizer
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+
+}
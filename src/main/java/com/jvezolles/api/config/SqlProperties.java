@@ -0,0 +1,20 @@
+package com.jvezolles.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for SQL statistics
+ *
+ * @author Vezolles
+ */
+@Data
+@ConfigurationProperties(prefix = "jvezolles.sql")
+public class SqlProperties {
+
+    /**
+     * Number of SQL statements by request from which a warning is logged, as a likely N+1 selects
+     */
+    private int statementWarnThreshold = 10;
+
+}
@@ -0,0 +1,76 @@
+package com.jvezolles.api.config;
+
+import lombok.Getter;
+
+/**
+ * SQL statistics of current request
+ * Number of statements executed and time spent executing them, accumulated by thread
+ *
+ * @author Vezolles
+ */
+@Getter
+public class SqlStatistics {
+
+    /**
+     * Statistics of current thread, null outside of a request
+     */
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Number of statements executed
+     */
+    private int count;
+
+    /**
+     * Time spent executing statements, in nanoseconds
+     */
+    private long nanos;
+
+    /**
+     * Start statistics for current thread
+     *
+     * @return the statistics started
+     */
+    public static SqlStatistics start() {
+
+        SqlStatistics statistics = new SqlStatistics();
+        CURRENT.set(statistics);
+
+        return statistics;
+    }
+
+    /**
+     * Resume statistics of a request for current thread, as an async thread or dispatch of the same request
+     *
+     * @param statistics the statistics started by the request
+     * @return the statistics resumed
+     */
+    public static SqlStatistics resume(SqlStatistics statistics) {
+
+        CURRENT.set(statistics);
+
+        return statistics;
+    }
+
+    /**
+     * Stop statistics for current thread
+     */
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Record a statement executed by current thread, if statistics are started
+     *
+     * @param nanos time spent executing statement, in nanoseconds
+     */
+    public static void record(long nanos) {
+
+        SqlStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.count++;
+            statistics.nanos += nanos;
+        }
+    }
+
+}
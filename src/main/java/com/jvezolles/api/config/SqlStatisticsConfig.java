@@ -0,0 +1,51 @@
+package com.jvezolles.api.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Configuration spring boot for SQL statistics by request
+ *
+ * @author Vezolles
+ */
+@Configuration
+public class SqlStatisticsConfig {
+
+    /**
+     * Name of datasource bean used by application
+     */
+    private static final String DATA_SOURCE_BEAN = "dataSource";
+
+    /**
+     * Bean declaration for post processor recording SQL statistics of datasource used by application
+     * Only the datasource used by application is wrapped, not primary nor replicas behind it, to count statements once
+     *
+     * @return the bean post processor
+     */
+    @Bean
+    public static BeanPostProcessor sqlStatisticsDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && DATA_SOURCE_BEAN.equals(beanName) ? new SqlStatisticsDataSource(dataSource) : bean;
+            }
+        };
+    }
+
+    /**
+     * Bean declaration for SQL statistics filter
+     *
+     * @param meterRegistry the registry of meters
+     * @param sqlProperties the SQL properties
+     * @return the SQL statistics filter
+     */
+    @Bean
+    public SqlStatisticsFilter sqlStatisticsFilter(MeterRegistry meterRegistry, SqlProperties sqlProperties) {
+        return new SqlStatisticsFilter(meterRegistry, sqlProperties);
+    }
+
+}
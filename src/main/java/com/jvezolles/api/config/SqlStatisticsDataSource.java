@@ -0,0 +1,111 @@
+package com.jvezolles.api.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Datasource recording SQL statistics
+ * Connections and statements are proxied, each statement execution is counted and timed in current SQL statistics
+ *
+ * @author Vezolles
+ */
+public class SqlStatisticsDataSource extends DelegatingDataSource {
+
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+
+    /**
+     * Default constructor for SqlStatisticsDataSource
+     *
+     * @param targetDataSource the datasource to record statistics of
+     */
+    public SqlStatisticsDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, super.getConnection(), this::invokeConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, super.getConnection(username, password), this::invokeConnection);
+    }
+
+    private Object invokeConnection(Object connection, Method method, Object[] args) throws Throwable {
+
+        Object result = invoke(connection, method, args);
+
+        // Proxy statements created, with their most specific interface
+        if (STATEMENT_FACTORIES.contains(method.getName())) {
+            return switch (result) {
+                case CallableStatement statement -> proxy(CallableStatement.class, statement, this::invokeStatement);
+                case PreparedStatement statement -> proxy(PreparedStatement.class, statement, this::invokeStatement);
+                case Statement statement -> proxy(Statement.class, statement, this::invokeStatement);
+                default -> result;
+            };
+        }
+
+        return result;
+    }
+
+    private Object invokeStatement(Object statement, Method method, Object[] args) throws Throwable {
+
+        if (!method.getName().startsWith("execute")) {
+            return invoke(statement, method, args);
+        }
+
+        // Count and time statement execution
+        long start = System.nanoTime();
+        try {
+            return invoke(statement, method, args);
+
+        } finally {
+            SqlStatistics.record(System.nanoTime() - start);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+
+        try {
+            return method.invoke(target, args);
+
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, TargetInvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (_, method, args) -> handler.invoke(target, method, args)));
+    }
+
+    /**
+     * Invocation handler on proxied target
+     */
+    @FunctionalInterface
+    private interface TargetInvocationHandler {
+
+        /**
+         * Invoke method on target
+         *
+         * @param target the proxied target
+         * @param method the method invoked
+         * @param args   the arguments of method
+         * @return the result of method
+         * @throws Throwable if method fails
+         */
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+
+    }
+
+}
@@ -0,0 +1,248 @@
+package com.jvezolles.api.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL statistics filter
+ * Counts SQL statements and time spent in database by request, returned in header Server-Timing,
+ * and recorded as metrics by controller method
+ * An async request, as a stream of users, is counted across its dispatches and the async thread executing its body,
+ * and recorded once completed
+ *
+ * @author Vezolles
+ */
+@Slf4j
+@AllArgsConstructor
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+    /**
+     * Header returning time spent in database and in application
+     */
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    /**
+     * Name of distribution summary of SQL statements by request
+     */
+    public static final String SQL_STATEMENTS_METRIC = "http.server.requests.sql.statements";
+
+    /**
+     * Name of timer of time spent in database by request
+     */
+    public static final String SQL_TIME_METRIC = "http.server.requests.sql.time";
+
+    /**
+     * Attribute of request keeping its statistics across dispatches
+     */
+    private static final String STATISTICS_ATTRIBUTE = SqlStatisticsFilter.class.getName() + ".statistics";
+
+    /**
+     * Registry of meters
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * SQL properties, with warning threshold
+     */
+    private final SqlProperties sqlProperties;
+
+    /**
+     * Same contract as for {@code doFilter}, but guaranteed to be
+     * just invoked once per request within a single request thread.
+     *
+     * @param request     The request to process
+     * @param response    The response associated with the request
+     * @param filterChain Provides access to the next filter in the chain for this filter
+     *                    to pass the request and response to for further processing
+     * @throws IOException      if an I/O error occurs during this filter's processing of the request
+     * @throws ServletException if the processing fails for any other reason
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        long start = System.nanoTime();
+
+        // Statistics of the first dispatch resumed by the async dispatch, to merge counts of the whole request
+        SqlStatistics statistics;
+        if (isAsyncDispatch(request) && request.getAttribute(STATISTICS_ATTRIBUTE) instanceof SqlStatistics started) {
+            statistics = SqlStatistics.resume(started);
+        } else {
+            statistics = SqlStatistics.start();
+            request.setAttribute(STATISTICS_ATTRIBUTE, statistics);
+            WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(STATISTICS_ATTRIBUTE, new StatisticsCallableInterceptor());
+        }
+
+        ServerTimingResponse serverTimingResponse = new ServerTimingResponse(response, start, statistics);
+        try {
+            filterChain.doFilter(request, serverTimingResponse);
+
+        } finally {
+            SqlStatistics.stop();
+
+            // Header set once body is written, or now if no body was written
+            serverTimingResponse.setServerTiming();
+
+            // Metrics recorded once the request completed, by the async dispatch if started
+            if (!isAsyncStarted(request)) {
+                record(request, statistics);
+            }
+        }
+    }
+
+    /**
+     * Filter async dispatch too, to record statistics once the request completed
+     *
+     * @return false to filter async dispatch
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    private void record(HttpServletRequest request, SqlStatistics statistics) {
+
+        // Record metrics only for controller methods
+        if (!(request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod handlerMethod)) {
+            return;
+        }
+
+        String controller = handlerMethod.getBeanType().getSimpleName();
+        String method = handlerMethod.getMethod().getName();
+
+        DistributionSummary.builder(SQL_STATEMENTS_METRIC)
+                .description("Number of SQL statements by request")
+                .baseUnit("statements")
+                .tags("controller", controller, "method", method)
+                .register(meterRegistry)
+                .record(statistics.getCount());
+
+        Timer.builder(SQL_TIME_METRIC)
+                .description("Time spent executing SQL statements by request")
+                .tags("controller", controller, "method", method)
+                .register(meterRegistry)
+                .record(statistics.getNanos(), TimeUnit.NANOSECONDS);
+
+        // Warn on many statements, likely N+1 selects
+        if (statistics.getCount() >= sqlProperties.getStatementWarnThreshold()) {
+            log.warn("{} SQL statements executed by {}.{} for {} {}", statistics.getCount(), controller, method, request.getMethod(), request.getRequestURI());
+        }
+    }
+
+    /**
+     * Interceptor resuming statistics of the request in the async thread executing its body
+     */
+    private static class StatisticsCallableInterceptor implements CallableProcessingInterceptor {
+
+        @Override
+        public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+
+            if (request.getAttribute(STATISTICS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof SqlStatistics statistics) {
+                SqlStatistics.resume(statistics);
+            }
+        }
+
+        @Override
+        public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+            SqlStatistics.stop();
+        }
+
+    }
+
+    /**
+     * Response setting header Server-Timing before being committed
+     */
+    private static class ServerTimingResponse extends HttpServletResponseWrapper {
+
+        private final long start;
+
+        private final SqlStatistics statistics;
+
+        private boolean serverTimingSet;
+
+        ServerTimingResponse(HttpServletResponse response, long start, SqlStatistics statistics) {
+
+            super(response);
+            this.start = start;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+
+            setServerTiming();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+
+            setServerTiming();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+
+            setServerTiming();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+
+            setServerTiming();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+
+            setServerTiming();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+
+            setServerTiming();
+            super.sendRedirect(location);
+        }
+
+        void setServerTiming() {
+
+            if (serverTimingSet || isCommitted()) {
+                return;
+            }
+
+            double dbMillis = statistics.getNanos() / 1_000_000.0;
+            double appMillis = Math.max(0, System.nanoTime() - start - statistics.getNanos()) / 1_000_000.0;
+
+            setHeader(SERVER_TIMING_HEADER, String.format(Locale.ROOT, "db;dur=%.3f;desc=\"statements: %d\", app;dur=%.3f", dbMillis, statistics.getCount(), appMillis));
+            serverTimingSet = true;
+        }
+
+    }
+
+}
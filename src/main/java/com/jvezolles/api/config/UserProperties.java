@@ -0,0 +1,274 @@
+package com.jvezolles.api.config;
+
+import com.jvezolles.api.util.Constants;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration properties for users
+ *
+ * @author Vezolles
+ */
+@Data
+@ConfigurationProperties(prefix = "jvezolles.user")
+public class UserProperties {
+
+    /**
+     * Number of users inserted by JDBC batch, and by transaction for bulk creation
+     */
+    private int batchSize = 500;
+
+    /**
+     * Age of majority by country, users must be adult in one of these countries
+     */
+    private Map<String, Integer> ageOfMajority = new LinkedHashMap<>(Map.of(Constants.FRANCE, 18));
+
+    /**
+     * Second-level cache of user entities and natural ids
+     */
+    private Cache entityCache = new Cache();
+
+    /**
+     * Read-through cache of user's details in user service
+     */
+    private ReadThroughCache serviceCache = new ReadThroughCache();
+
+    /**
+     * Write-behind of users created asynchronously
+     */
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /**
+     * Group commit of users created concurrently
+     */
+    private GroupCommit groupCommit = new GroupCommit();
+
+    /**
+     * Keyset pagination of users, after a cursor
+     */
+    private Cursor cursor = new Cursor();
+
+    /**
+     * Changes of users, synced by clients
+     */
+    private Changes changes = new Changes();
+
+    /**
+     * Events of users, pushed to subscribers
+     */
+    private Events events = new Events();
+
+    /**
+     * Search of users, by username or email
+     */
+    private Search search = new Search();
+
+    /**
+     * Cache configuration
+     */
+    @Data
+    public static class Cache {
+
+        /**
+         * Max number of entries by cache region
+         */
+        private long maxSize = 10_000;
+
+        /**
+         * Time to live of an entry after write
+         */
+        private Duration timeToLive = Duration.ofMinutes(10);
+
+    }
+
+    /**
+     * Read-through cache configuration
+     */
+    @Data
+    public static class ReadThroughCache {
+
+        /**
+         * Max number of entries
+         */
+        private long maxSize = 10_000;
+
+        /**
+         * Time to live of an entry after write
+         */
+        private Duration timeToLive = Duration.ofMinutes(10);
+
+        /**
+         * Time after write from which an entry read is refreshed ahead, in background
+         */
+        private Duration refreshAfter = Duration.ofMinutes(1);
+
+        /**
+         * Time to live of a user not found
+         */
+        private Duration negativeTimeToLive = Duration.ofSeconds(5);
+
+    }
+
+    /**
+     * Write-behind configuration
+     */
+    @Data
+    public static class WriteBehind {
+
+        /**
+         * Max number of users pending in queue
+         */
+        private int capacity = 10_000;
+
+        /**
+         * Max number of users written by transaction
+         */
+        private int batchSize = 500;
+
+        /**
+         * Max time waiting for a place in a full queue, before rejecting a user
+         */
+        private Duration offerTimeout = Duration.ofMillis(100);
+
+        /**
+         * Max number of creation statuses kept
+         */
+        private long statusMaxSize = 100_000;
+
+        /**
+         * Time to live of a creation status
+         */
+        private Duration statusTimeToLive = Duration.ofMinutes(10);
+
+        /**
+         * Max time waiting for pending users to be written on shutdown
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    }
+
+    /**
+     * Group commit configuration
+     */
+    @Data
+    public static class GroupCommit {
+
+        /**
+         * Users created concurrently are written together, else each user is written alone
+         */
+        private boolean enabled = false;
+
+        /**
+         * Time waiting for other users after a first user, before writing them
+         */
+        private Duration window = Duration.ofMillis(1);
+
+        /**
+         * Max number of users written together
+         */
+        private int maxSize = 100;
+
+        /**
+         * Max number of users waiting in queue, users created beyond are written alone
+         */
+        private int capacity = 10_000;
+
+        /**
+         * Max time waiting for a user still queued, after which its creation fails
+         */
+        private Duration timeout = Duration.ofSeconds(10);
+
+        /**
+         * Max time waiting for queued users to be written on shutdown
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    }
+
+    /**
+     * Keyset pagination configuration
+     */
+    @Data
+    public static class Cursor {
+
+        /**
+         * Max number of users read after a cursor
+         */
+        private int maxSize = 500;
+
+    }
+
+    /**
+     * Changes configuration
+     */
+    @Data
+    public static class Changes {
+
+        /**
+         * Max number of changes returned at once
+         */
+        private int maxSize = 500;
+
+        /**
+         * Time to live of a tombstone, a client not synced since must sync all users again
+         */
+        private Duration tombstoneTimeToLive = Duration.ofDays(30);
+
+        /**
+         * Delay between two sequencings of writes, a write is returned by syncs once sequenced
+         */
+        private Duration sequenceInterval = Duration.ofSeconds(1);
+
+    }
+
+    /**
+     * Events configuration
+     */
+    @Data
+    public static class Events {
+
+        /**
+         * Max number of events waiting to be sent to a subscriber, a subscriber too slow is disconnected
+         */
+        private int bufferSize = 256;
+
+        /**
+         * Number of last events kept, to resume a subscription
+         */
+        private int logSize = 10_000;
+
+        /**
+         * Time after which a subscription is closed, the subscriber resumes it
+         */
+        private Duration timeout = Duration.ofMinutes(30);
+
+        /**
+         * Time between two heartbeats sent to subscribers, to detect subscribers gone
+         */
+        private Duration heartbeatInterval = Duration.ofSeconds(15);
+
+    }
+
+    /**
+     * Search configuration
+     */
+    @Data
+    public static class Search {
+
+        /**
+         * Max number of users by search
+         */
+        private int maxSize = 50;
+
+        /**
+         * Min length of text searched inside usernames and emails, trigram indexes need at least 3 characters
+         */
+        private int containsMinLength = 3;
+
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.jvezolles.api.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.jvezolles.api.config.ReplicaRoutingDataSource;
+import com.jvezolles.api.config.UserProperties;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.user.model.VersionedUser;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+/**
+ * User cache
+ * Read-through cache of user's details by username, in front of database
+ * Bounded with W-TinyLFU eviction, hot users are refreshed ahead of expiry, and users not found are cached shortly
+ * Users evicted after a write are loaded next from primary
+ *
+ * @author Vezolles
+ */
+@Component
+public class UserCache {
+
+    /**
+     * Cache of user's details with version by username in lower case, empty if user not found
+     */
+    private final LoadingCache<String, Optional<VersionedUser>> cache;
+
+    /**
+     * Usernames evicted since their last load, loaded next from primary, as replicas may not have their last write yet
+     */
+    private final Cache<String, Boolean> evicted;
+
+    /**
+     * Read-only transaction used to load users
+     */
+    private final TransactionTemplate readOnlyTransaction;
+
+    /**
+     * UserRepository used to load users
+     */
+    private final UserRepository userRepository;
+
+    /**
+     * UserMapper used to map users loaded
+     */
+    private final UserMapper userMapper;
+
+    /**
+     * Default constructor for UserCache
+     *
+     * @param userRepository     the user repository
+     * @param userMapper         the user mapper
+     * @param transactionManager the transaction manager
+     * @param userProperties     the user properties, with cache size and durations
+     * @param meterRegistry      the registry of meters
+     */
+    public UserCache(UserRepository userRepository, UserMapper userMapper, PlatformTransactionManager transactionManager,
+                     UserProperties userProperties, MeterRegistry meterRegistry) {
+
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        UserProperties.ReadThroughCache properties = userProperties.getServiceCache();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfter(Expiry.<String, Optional<VersionedUser>>writing((_, user) -> user.isPresent() ? properties.getTimeToLive() : properties.getNegativeTimeToLive()))
+                .refreshAfterWrite(properties.getRefreshAfter())
+                .recordStats()
+                .build(this::load);
+
+        this.evicted = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .build();
+
+        // Bind hits, misses and load time as metrics
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, Constants.USER_SERVICE_CACHE);
+    }
+
+    /**
+     * Get user's details by username, loaded from database if not cached
+     * Users read by a client which wrote recently are loaded from primary, and replace cached user
+     *
+     * @param username the username to get, in lower case
+     * @return an optional user's details with version if found
+     */
+    public Optional<VersionedUser> get(String username) {
+
+        if (ReplicaRoutingDataSource.isPrimaryForced()) {
+            Optional<VersionedUser> user = load(username);
+            cache.put(username, user);
+            return user;
+        }
+
+        return cache.get(username);
+    }
+
+    /**
+     * Evict user's details by username, once current transaction is completed if any
+     * User is loaded next from primary, so a replica lagging behind the write is not cached
+     *
+     * @param username the username to evict, in lower case
+     */
+    public void evict(String username) {
+
+        // Evict after transaction, to not reload user before changes are committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(username);
+                }
+            });
+
+        } else {
+            invalidate(username);
+        }
+    }
+
+    private void invalidate(String username) {
+        evicted.put(username, Boolean.TRUE);
+        cache.invalidate(username);
+    }
+
+    private Optional<VersionedUser> load(String username) {
+
+        // Load from primary if evicted since last load, unless already forced
+        boolean forcePrimary = evicted.asMap().remove(username) != null && !ReplicaRoutingDataSource.isPrimaryForced();
+        if (forcePrimary) {
+            ReplicaRoutingDataSource.forcePrimary();
+        }
+
+        try {
+            return readOnlyTransaction.execute(_ -> userRepository.findByNaturalId(username)
+                    .map(user -> new VersionedUser(userMapper.asUserDto(user), UserVersion.of(user))));
+
+        } finally {
+            if (forcePrimary) {
+                ReplicaRoutingDataSource.clearPrimary();
+            }
+        }
+    }
+
+}
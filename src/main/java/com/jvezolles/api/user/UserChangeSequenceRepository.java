@@ -0,0 +1,29 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.model.UserChangeSequence;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * User change sequence repository
+ * Used for persistance of UserChangeSequence entity
+ *
+ * @author Vezolles
+ */
+@Repository
+public interface UserChangeSequenceRepository extends JpaRepository<UserChangeSequence, Integer> {
+
+    /**
+     * Find sequence by id in database, locked until end of transaction, so syncs sequence changes one at a time
+     *
+     * @param id the id of sequence
+     * @return the sequence locked
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<UserChangeSequence> findLockedById(Integer id);
+
+}
@@ -0,0 +1,89 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.exception.UserChangesExpiredException;
+import com.jvezolles.api.user.exception.UserCursorException;
+import com.jvezolles.api.user.model.UserChangePosition;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * User change token
+ * Used to encode and decode opaque token of a position in changes of users
+ * Token starts with its format, a token of a previous format must sync all users again
+ *
+ * @author Vezolles
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class UserChangeToken {
+
+    /**
+     * Separator of fields in token
+     */
+    private static final String SEPARATOR = ",";
+
+    /**
+     * Format of token, positions in sequence of change
+     */
+    private static final String FORMAT = "s";
+
+    /**
+     * Encode a position in changes as opaque token
+     *
+     * @param position the position in changes
+     * @return the opaque token
+     */
+    public static String encode(UserChangePosition position) {
+
+        String token = FORMAT + SEPARATOR + (position.userSequence() != null ? position.userSequence() + SEPARATOR + position.userId() : SEPARATOR)
+                + SEPARATOR + position.tombstoneSequence() + SEPARATOR + position.tombstoneId();
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode an opaque token as a position in changes
+     *
+     * @param token the opaque token, blank to sync all users
+     * @return the position in changes, null to sync all users
+     * @throws UserCursorException         if token is not valid
+     * @throws UserChangesExpiredException if token is of a previous format, ordered by time
+     */
+    public static UserChangePosition decode(String token) throws UserCursorException, UserChangesExpiredException {
+
+        // Blank token syncs all users
+        if (StringUtils.isBlank(token)) {
+            return null;
+        }
+
+        String[] fields;
+        try {
+            fields = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+
+        } catch (IllegalArgumentException _) {
+            throw new UserCursorException("User change token is not valid");
+        }
+
+        // Token of previous format, ordered by time, can't be converted to a sequence
+        if (fields.length == 4) {
+            throw new UserChangesExpiredException("User changes expired, all users must be synced again");
+        }
+        if (fields.length != 5 || !FORMAT.equals(fields[0])) {
+            throw new UserCursorException("User change token is not valid");
+        }
+
+        try {
+            // No user read yet if user fields are empty
+            boolean isUserRead = !fields[1].isEmpty();
+            return new UserChangePosition(isUserRead ? Long.valueOf(fields[1]) : null, isUserRead ? Long.valueOf(fields[2]) : null,
+                    Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+
+        } catch (NumberFormatException _) {
+            throw new UserCursorException("User change token is not valid");
+        }
+    }
+
+}
@@ -1,14 +1,23 @@
 package com.jvezolles.api.user;
 
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.jvezolles.api.user.dto.UserBulkResultDTO;
+import com.jvezolles.api.user.dto.UserChangesDTO;
+import com.jvezolles.api.user.dto.UserCreationDTO;
 import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.model.UserFilter;
+import com.jvezolles.api.util.Constants;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Size;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -21,23 +30,127 @@ import java.util.List;
 public interface UserController {
 
     /**
-     * Api to get all user's details
+     * Api to get all user's details, by page of size, filtered by country, gender and birthdate range
+     * Next page availability is returned in header X-Has-Next,
+     * and total count in header X-Total-Count if requested, approximate unless count is exact or users are filtered
+     * Not modified without body if the ETag of the page matches If-None-Match, checked from versions of its users before reading them
      *
-     * @param page page number search
-     * @param size size number of element search
+     * @param page        page number search
+     * @param size        size number of element search
+     * @param count       total count requested, exact or approximate, none if null
+     * @param filter      the filter of users, from parameters country, gender, birthdateFrom and birthdateTo
+     * @param ifNoneMatch the ETags already known by client, may be null
      * @return list of ser'information
      */
     @ResponseBody
-    List<UserDTO> getUsers(@RequestParam(required = false) Integer page, @RequestParam(required = false) Integer size);
+    ResponseEntity<List<UserDTO>> getUsers(@RequestParam(required = false) Integer page, @RequestParam(required = false) Integer size,
+                                           @RequestParam(required = false) String count, @ModelAttribute UserFilter filter,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
+
+    /**
+     * Api to get all user's details with only fields requested, by page of size, filtered by country, gender and birthdate range
+     * Only columns of fields requested are read, headers are the same as for all fields
+     *
+     * @param page        page number search
+     * @param size        size number of element search
+     * @param count       total count requested, exact or approximate, none if null
+     * @param filter      the filter of users, from parameters country, gender, birthdateFrom and birthdateTo
+     * @param fields      the fields requested, separated by comma, all fields if blank
+     * @param ifNoneMatch the ETags already known by client, may be null
+     * @return list of user's information, with only fields requested
+     */
+    @ResponseBody
+    ResponseEntity<JsonSerializable> getUsersFields(@RequestParam(required = false) Integer page, @RequestParam(required = false) Integer size,
+                                                    @RequestParam(required = false) String count, @ModelAttribute UserFilter filter, @RequestParam String fields,
+                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
+
+    /**
+     * Api to stream all user's details, without page nor size, filtered by country, gender and birthdate range
+     * Users are written one by one as read, as JSON array or as NDJSON if accepted, with only fields requested if any
+     *
+     * @param accept the accepted media types
+     * @param filter the filter of users, from parameters country, gender, birthdateFrom and birthdateTo
+     * @param fields the fields requested, separated by comma, all fields if null or blank
+     * @return streamed list of user's information
+     */
+    ResponseEntity<StreamingResponseBody> streamUsers(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                      @ModelAttribute UserFilter filter, @RequestParam(required = false) String fields);
+
+    /**
+     * Api to get user's details after a cursor, with keyset pagination
+     * Cursor of next users is returned in header X-Next-Cursor if more users exist
+     * Filters and fields are not supported after a cursor, and rejected
+     *
+     * @param after  opaque cursor of the last user read, blank for first users
+     * @param size   size number of element search
+     * @param filter the filter of users, must be empty
+     * @param fields the fields requested, must be null
+     * @return list of user's information
+     */
+    @ResponseBody
+    ResponseEntity<List<UserDTO>> getUsersAfter(@RequestParam String after, @RequestParam(required = false) Integer size,
+                                                @ModelAttribute UserFilter filter, @RequestParam(required = false) String fields);
+
+    /**
+     * Api to get changes of users since a token, ordered by commit, to sync users
+     * Users created, updated or replaced are returned with their details, users deleted with their username,
+     * changes not committed yet are returned on a next sync
+     *
+     * @param since opaque token returned by last sync, blank to sync all users
+     * @param size  max number of changes, limited by configuration
+     * @return changes of users, with token of next sync
+     */
+    @ResponseBody
+    UserChangesDTO getUserChanges(@RequestParam(required = false) String since, @RequestParam(required = false) Integer size);
+
+    /**
+     * Api to search user's details by username or email, case insensitive, with keyset pagination
+     * Cursor of next users is returned in header X-Next-Cursor if more users exist
+     *
+     * @param q     the text searched
+     * @param match the match of text, prefix by default, or contains with at least 3 characters, case insensitive
+     * @param after opaque cursor of the last user read, blank for first users
+     * @param size  max number of users, limited by configuration
+     * @return list of user's information
+     */
+    @ResponseBody
+    ResponseEntity<List<UserDTO>> searchUsers(@RequestParam String q, @RequestParam(required = false) String match,
+                                              @RequestParam(required = false) String after, @RequestParam(required = false) Integer size);
+
+    /**
+     * Api to subscribe to writes on users, as server-sent events
+     * Events are named created, updated, replaced or deleted, and resumed after Last-Event-ID if still available,
+     * else a reset event asks to sync users again with changes
+     *
+     * @param lastEventId the id of the last event received, null for new events only
+     * @return the emitter of events
+     */
+    SseEmitter getUserEvents(@RequestHeader(value = Constants.LAST_EVENT_ID_HEADER, required = false) String lastEventId);
 
     /**
      * Api to get user's details
+     * Not modified without body if the ETag of the user matches If-None-Match
      *
-     * @param username the username to get details, must be size max = 100
+     * @param username    the username to get details, must be size max = 100
+     * @param ifNoneMatch the ETags already known by client, may be null
      * @return user'information
      */
     @ResponseBody
-    UserDTO getUser(@PathVariable @Valid @Size(max = 100, message = "{user.username.size}") String username);
+    ResponseEntity<UserDTO> getUser(@PathVariable @Valid @Size(max = 100, message = "{user.username.size}") String username,
+                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
+
+    /**
+     * Api to get user's details with only fields requested
+     * Not modified without body if the ETag of the user and fields matches If-None-Match
+     *
+     * @param username    the username to get details, must be size max = 100
+     * @param fields      the fields requested, separated by comma, all fields if blank
+     * @param ifNoneMatch the ETags already known by client, may be null
+     * @return user'information, with only fields requested
+     */
+    @ResponseBody
+    ResponseEntity<JsonSerializable> getUserFields(@PathVariable @Valid @Size(max = 100, message = "{user.username.size}") String username, @RequestParam String fields,
+                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
 
     /**
      * Api to create user
@@ -47,28 +160,76 @@ public interface UserController {
     @ResponseBody
     UserDTO createUser(@RequestBody @Valid UserDTO user);
 
+    /**
+     * Api to create user asynchronously, if client prefers respond-async
+     * User is checked then written later, the location of the creation is returned in header Location
+     *
+     * @param user the user's details to create, must be valid
+     * @return accepted, with location of the creation
+     */
+    ResponseEntity<Void> createUserLater(@RequestBody @Valid UserDTO user);
+
+    /**
+     * Api to get a creation of user asynchronously
+     *
+     * @param id the id of the creation
+     * @return status of the creation, with user once created
+     */
+    @ResponseBody
+    UserCreationDTO getUserCreation(@PathVariable String id);
+
+    /**
+     * Api to create users in bulk, from a JSON array
+     *
+     * @param users the user's details to create
+     * @return result of creation for each user, in the same order
+     */
+    @ResponseBody
+    List<UserBulkResultDTO> createUsers(@RequestBody List<UserDTO> users);
+
+    /**
+     * Api to create users in bulk, from NDJSON with one user by line
+     *
+     * @param users the NDJSON body of user's details to create
+     * @return result of creation for each user, in the same order
+     * @throws IOException if body cannot be read
+     */
+    @ResponseBody
+    List<UserBulkResultDTO> createUsersNdjson(InputStream users) throws IOException;
+
     /**
      * Api to update user
+     * If-Match with the ETag of user updates it only if unchanged since, else precondition failed
      *
-     * @param user the user's details to update, must be valid
+     * @param user    the user's details to update, must be valid
+     * @param ifMatch the ETag of user expected, may be null
+     * @return user'information, with its ETag if version is known
      */
     @ResponseBody
-    UserDTO updateUser(@RequestBody @Valid UserDTO user);
+    ResponseEntity<UserDTO> updateUser(@RequestBody @Valid UserDTO user,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch);
 
     /**
      * Api to replace user
+     * If-Match with the ETag of user replaces it only if unchanged since, else precondition failed
      *
      * @param username the username to replace, must be size max = 100
-     * @param user the user's details to replace, must be valid
+     * @param user     the user's details to replace, must be valid
+     * @param ifMatch  the ETag of user expected, may be null
+     * @return user'information, with its ETag if version is known
      */
     @ResponseBody
-    UserDTO replaceUser(@PathVariable @Valid @Size(max = 100, message = "{user.username.size}") String username, @RequestBody @Valid UserDTO user);
+    ResponseEntity<UserDTO> replaceUser(@PathVariable @Valid @Size(max = 100, message = "{user.username.size}") String username, @RequestBody @Valid UserDTO user,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch);
 
     /**
      * Api to delete user
+     * If-Match with the ETag of user deletes it only if unchanged since, else precondition failed
      *
      * @param username the username to delete, must be size max = 100
+     * @param ifMatch  the ETag of user expected, may be null
      */
-    void deleteUser(@PathVariable @Valid @Size(max = 100, message = "{user.username.size}") String username);
+    void deleteUser(@PathVariable @Valid @Size(max = 100, message = "{user.username.size}") String username,
+                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch);
 
 }
@@ -1,12 +1,52 @@
 package com.jvezolles.api.user;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.jvezolles.api.user.dto.UserBulkResultDTO;
+import com.jvezolles.api.user.dto.UserChangesDTO;
+import com.jvezolles.api.user.dto.UserCreationDTO;
 import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.exception.UserCursorException;
+import com.jvezolles.api.user.exception.UserSearchException;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserBulkResult;
+import com.jvezolles.api.user.model.UserChanges;
+import com.jvezolles.api.user.model.UserFields;
+import com.jvezolles.api.user.model.UserFilter;
+import com.jvezolles.api.user.model.UserSearchMatch;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.user.model.VersionedUser;
+import com.jvezolles.api.util.Constants;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.AllArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * User controller implementation
@@ -28,28 +68,203 @@ public class UserControllerImpl implements UserController {
      */
     private UserService userService;
 
+    /**
+     * ObjectMapper used to write streamed users
+     */
+    private ObjectMapper objectMapper;
+
+    /**
+     * Validator used to valid users created in bulk
+     */
+    private Validator validator;
+
     @Override
     @GetMapping(value = "${jvezolles.api.user.get-all}")
     @ResponseStatus(HttpStatus.OK)
-    public List<UserDTO> getUsers(Integer page, Integer size) {
+    public ResponseEntity<List<UserDTO>> getUsers(Integer page, Integer size, String count, UserFilter filter, String ifNoneMatch) {
+
+        // Call service to get users matching filter, already as DTO, with headers of page, without reading them if not modified
+        HttpHeaders headers = new HttpHeaders();
+        Optional<Slice<UserDTO>> usersFound = getPage(headers, UserFields.ALL, page, size, count, filter, ifNoneMatch);
+
+        return usersFound.map(users -> new ResponseEntity<>(users.getContent(), headers, HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED));
+    }
+
+    @Override
+    @GetMapping(value = "${jvezolles.api.user.get-all}", params = {"fields", "size", "!after"})
+    @ResponseStatus(HttpStatus.OK)
+    public ResponseEntity<JsonSerializable> getUsersFields(Integer page, Integer size, String count, UserFilter filter, String fields, String ifNoneMatch) {
+
+        // Parse fields requested
+        UserFields userFields = UserFields.parse(fields);
+
+        // Call service to get users matching filter, with only their columns, with headers of page, without reading them if not modified
+        HttpHeaders headers = new HttpHeaders();
+        Optional<Slice<UserDTO>> usersFound = getPage(headers, userFields, page, size, count, filter, ifNoneMatch);
+
+        // Return users written with only fields requested
+        return usersFound.map(users -> new ResponseEntity<>(UserFieldsWriter.of(userFields).view(users.getContent()), headers, HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED));
+    }
+
+    @Override
+    @GetMapping(value = "${jvezolles.api.user.get-all}", params = {"!size", "!after"}, produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamUsers(String accept, UserFilter filter, String fields) {
+
+        // Parse fields requested before streaming, to fail with bad request
+        UserFields userFields = UserFields.parse(fields);
+
+        // NDJSON only if explicitly accepted, JSON array by default
+        boolean isNdjson = accept != null && MediaType.parseMediaTypes(accept).stream().anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+
+                if (!isNdjson) {
+                    generator.writeStartArray();
+                }
+
+                // Call service to stream users as DTO, each user is written once read, matching filter and with only fields requested if any,
+                // never loaded as entity so a full export doesn't fill the second-level cache
+                if (userFields.isAll()) {
+                    userService.streamUsers(filter, userFields, user -> writeUser(generator, user, isNdjson));
+                } else {
+                    UserFieldsWriter writer = UserFieldsWriter.of(userFields);
+                    userService.streamUsers(filter, userFields, user -> writeUser(generator, writer, user, isNdjson));
+                }
+
+                if (!isNdjson) {
+                    generator.writeEndArray();
+                }
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(isNdjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @Override
+    @GetMapping(value = "${jvezolles.api.user.get-all}", params = "after")
+    @ResponseStatus(HttpStatus.OK)
+    public ResponseEntity<List<UserDTO>> getUsersAfter(String after, Integer size, UserFilter filter, String fields) {
+
+        // If filter or fields requested, throw error cursor not valid, as they are not applied after a cursor
+        if (!filter.isEmpty() || fields != null) {
+            throw new UserCursorException("User cursor is not valid, filters and fields are not supported after a cursor");
+        }
+
+        // Call service to get users after cursor
+        Window<User> usersFound = userService.getUsersAfter(UserCursor.decode(after), size);
+
+        // Set cursor of next users if more users exist
+        HttpHeaders headers = new HttpHeaders();
+        if (usersFound.hasNext()) {
+            headers.set(Constants.NEXT_CURSOR_HEADER, UserCursor.encode(usersFound.getContent().getLast().getId()));
+        }
+
+        // Return users as DTO
+        return new ResponseEntity<>(usersFound.map(user -> userMapper.asUserDto(user)).getContent(), headers, HttpStatus.OK);
+    }
+
+    @Override
+    @GetMapping(value = "${jvezolles.api.user.get-changes}")
+    @ResponseStatus(HttpStatus.OK)
+    public UserChangesDTO getUserChanges(String since, Integer size) {
+
+        // Call service to get changes since token
+        UserChanges changes = userService.getUserChanges(UserChangeToken.decode(since), size);
+
+        // Return users as DTO, with token of next sync
+        return new UserChangesDTO(changes.users().stream().map(user -> userMapper.asUserDto(user)).toList(), changes.deleted(),
+                UserChangeToken.encode(changes.position()), changes.hasMore());
+    }
+
+    @Override
+    @GetMapping(value = "${jvezolles.api.user.search}")
+    @ResponseStatus(HttpStatus.OK)
+    public ResponseEntity<List<UserDTO>> searchUsers(String q, String match, String after, Integer size) {
+
+        // Parse match of text, prefix if none
+        UserSearchMatch searchMatch = null;
+        if (StringUtils.isNotBlank(match)) {
+            try {
+                searchMatch = UserSearchMatch.valueOf(match.trim().toUpperCase(Locale.ROOT));
+
+            } catch (IllegalArgumentException _) {
+                throw new UserSearchException("User search is not valid, match must be prefix or contains");
+            }
+        }
+
+        // Call service to search users after cursor
+        Window<User> usersFound = userService.searchUsers(q, searchMatch, UserCursor.decode(after), size);
+
+        // Set cursor of next users if more users exist
+        HttpHeaders headers = new HttpHeaders();
+        if (usersFound.hasNext()) {
+            headers.set(Constants.NEXT_CURSOR_HEADER, UserCursor.encode(usersFound.getContent().getLast().getId()));
+        }
+
+        // Return users as DTO
+        return new ResponseEntity<>(usersFound.map(user -> userMapper.asUserDto(user)).getContent(), headers, HttpStatus.OK);
+    }
+
+    @Override
+    @GetMapping(value = "${jvezolles.api.user.get-events}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getUserEvents(String lastEventId) {
+
+        // Parse id of last event received, if any
+        Long lastId = null;
+        if (StringUtils.isNotBlank(lastEventId)) {
+            try {
+                lastId = Long.valueOf(lastEventId.trim());
 
-        // Call service to get user
-        List<User> usersFound = userService.getUsers(page, size);
+            } catch (NumberFormatException _) {
+                throw new UserCursorException("User last event id is not valid");
+            }
+        }
 
-        // Return all user as DTO
-        return usersFound.stream().map(user -> userMapper.asUserDto(user)).toList();
+        // Call service to subscribe, events are sent asynchronously
+        return userService.subscribeUserEvents(lastId);
     }
 
     @Override
     @GetMapping(value = "${jvezolles.api.user.get}")
     @ResponseStatus(HttpStatus.OK)
-    public UserDTO getUser(String username) {
+    public ResponseEntity<UserDTO> getUser(String username, String ifNoneMatch) {
 
-        // Call service to get user
-        User userFound = userService.getUser(username);
+        // Call service to get user, already as DTO with its version
+        VersionedUser userFound = userService.getUser(username);
 
-        // Return user as DTO
-        return userMapper.asUserDto(userFound);
+        // If user not modified, return without body
+        String etag = UserETag.of(userFound.version());
+        if (UserETag.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        return ResponseEntity.ok().eTag(etag).body(userFound.user());
+    }
+
+    @Override
+    @GetMapping(value = "${jvezolles.api.user.get}", params = "fields")
+    @ResponseStatus(HttpStatus.OK)
+    public ResponseEntity<JsonSerializable> getUserFields(String username, String fields, String ifNoneMatch) {
+
+        // Parse fields requested, then call service to get user, whole from cache
+        UserFields userFields = UserFields.parse(fields);
+        VersionedUser userFound = userService.getUser(username);
+
+        // If user not modified, return without body
+        String etag = UserETag.of(userFound.version(), userFields);
+        if (UserETag.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        // Return user written with only fields requested
+        return ResponseEntity.ok().eTag(etag).body(UserFieldsWriter.of(userFields).view(userFound.user()));
     }
 
     @Override
@@ -67,43 +282,225 @@ public class UserControllerImpl implements UserController {
         return userMapper.asUserDto(userCreated);
     }
 
+    @Override
+    @PostMapping(value = "${jvezolles.api.user.create}", headers = Constants.PREFER_HEADER + "=" + Constants.RESPOND_ASYNC)
+    public ResponseEntity<Void> createUserLater(UserDTO user) {
+
+        // Transform DTO to User
+        User userReceived = userMapper.asUser(user);
+
+        // Call service to queue user
+        String id = userService.createUserLater(userReceived);
+
+        // Return accepted, with location of the creation
+        return ResponseEntity.accepted()
+                .location(MvcUriComponentsBuilder.fromMethodName(UserControllerImpl.class, "getUserCreation", id).build().toUri())
+                .header(Constants.PREFERENCE_APPLIED_HEADER, Constants.RESPOND_ASYNC)
+                .build();
+    }
+
+    @Override
+    @GetMapping(value = "${jvezolles.api.user.get-creation}")
+    @ResponseStatus(HttpStatus.OK)
+    public UserCreationDTO getUserCreation(String id) {
+
+        // Call service to get creation
+        CompletableFuture<UserBulkResult> creation = userService.getUserCreation(id);
+
+        // Accepted while pending, else result of creation, user as DTO if created
+        UserBulkResult result = creation.getNow(null);
+        if (result == null) {
+            return new UserCreationDTO(id, HttpStatus.ACCEPTED.value(), null, List.of());
+        }
+
+        return result.isCreated()
+                ? new UserCreationDTO(id, HttpStatus.CREATED.value(), userMapper.asUserDto(result.user()), List.of())
+                : new UserCreationDTO(id, statusOf(result.error()).value(), null, List.of(result.error().getMessage()));
+    }
+
+    @Override
+    @PostMapping(value = "${jvezolles.api.user.create-all}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public List<UserBulkResultDTO> createUsers(List<UserDTO> users) {
+        return createAll(users);
+    }
+
+    @Override
+    @PostMapping(value = "${jvezolles.api.user.create-all}", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public List<UserBulkResultDTO> createUsersNdjson(InputStream users) throws IOException {
+
+        // Read one user by line, a null line is kept as a missing user
+        ObjectReader reader = objectMapper.readerFor(UserDTO.class);
+        List<UserDTO> usersRead = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(users)) {
+            while (parser.nextToken() != null) {
+                usersRead.add(parser.currentToken() == JsonToken.VALUE_NULL ? null : reader.readValue(parser));
+            }
+        }
+
+        return createAll(usersRead);
+    }
+
     @Override
     @PatchMapping(value = "${jvezolles.api.user.update}")
     @ResponseStatus(HttpStatus.CREATED)
-    public UserDTO updateUser(UserDTO user) {
+    public ResponseEntity<UserDTO> updateUser(UserDTO user, String ifMatch) {
 
         // Transform DTO to User
         User userReceived = userMapper.asUser(user);
 
-        // Call service to update user
-        User userUpdated = userService.updateUser(userReceived);
+        // Call service to update user, in version expected if any
+        User userUpdated = userService.updateUser(userReceived, UserETag.parse(ifMatch));
 
-        // Return user as DTO
-        return userMapper.asUserDto(userUpdated);
+        // Return user as DTO, with its ETag if version is known
+        return withETag(userUpdated);
     }
 
     @Override
     @PutMapping(value = "${jvezolles.api.user.replace}")
     @ResponseStatus(HttpStatus.CREATED)
-    public UserDTO replaceUser(String username, UserDTO user) {
+    public ResponseEntity<UserDTO> replaceUser(String username, UserDTO user, String ifMatch) {
 
         // Transform DTO to User
         User userReceived = userMapper.asUser(user);
 
-        // Call service to replace user
-        User userReplaced = userService.replaceUser(username, userReceived);
+        // Call service to replace user, in version expected if any
+        User userReplaced = userService.replaceUser(username, userReceived, UserETag.parse(ifMatch));
 
-        // Return user as DTO
-        return userMapper.asUserDto(userReplaced);
+        // Return user as DTO, with its ETag if version is known
+        return withETag(userReplaced);
     }
 
     @Override
     @DeleteMapping(value = "${jvezolles.api.user.delete}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteUser(String username) {
+    public void deleteUser(String username, String ifMatch) {
+
+        // Call service to delete user, in version expected if any
+        userService.deleteUser(username, UserETag.parse(ifMatch));
+    }
+
+    private ResponseEntity<UserDTO> withETag(User user) {
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.CREATED);
+
+        UserVersion version = UserVersion.of(user);
+        if (version != null) {
+            response.eTag(UserETag.of(version));
+        }
+
+        return response.body(userMapper.asUserDto(user));
+    }
+
+    private void writeUser(JsonGenerator generator, UserDTO user, boolean isNdjson) {
+
+        try {
+            generator.writeObject(user);
+
+            // Each NDJSON user is terminated by a new line
+            if (isNdjson) {
+                generator.writeRaw('\n');
+            }
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeUser(JsonGenerator generator, UserFieldsWriter writer, UserDTO user, boolean isNdjson) {
+
+        try {
+            writer.write(generator, user);
+
+            // Each NDJSON user is terminated by a new line
+            if (isNdjson) {
+                generator.writeRaw('\n');
+            }
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Optional<Slice<UserDTO>> getPage(HttpHeaders headers, UserFields fields, Integer page, Integer size, String count, UserFilter filter, String ifNoneMatch) {
+
+        Slice<UserDTO> users;
+        if (ifNoneMatch != null) {
+            // Set ETag of page from versions of its users, read before users so a change in between is seen on next request
+            Slice<UserVersion> versions = userService.getUserVersions(filter, page, size);
+            setPageHeaders(headers, versions, fields);
+
+            // If page not modified, no body nor count
+            if (UserETag.matches(ifNoneMatch, headers.getETag())) {
+                return Optional.empty();
+            }
+
+            users = userService.getUsers(filter, fields, page, size);
+
+        } else {
+            // No page known by client, users read once with their versions, to set ETag of page
+            Slice<VersionedUser> versionedUsers = userService.getVersionedUsers(filter, fields, page, size);
+            setPageHeaders(headers, versionedUsers.map(VersionedUser::version), fields);
+
+            users = versionedUsers.map(VersionedUser::user);
+        }
+
+        // Set total count if requested
+        if (count != null) {
+            headers.set(Constants.TOTAL_COUNT_HEADER, String.valueOf(userService.countUsers(filter, Constants.EXACT_COUNT.equalsIgnoreCase(count))));
+        }
+
+        return Optional.of(users);
+    }
+
+    private void setPageHeaders(HttpHeaders headers, Slice<UserVersion> versions, UserFields fields) {
+        headers.setETag(UserETag.of(versions, fields));
+        headers.set(Constants.HAS_NEXT_HEADER, String.valueOf(versions.hasNext()));
+    }
+
+    private List<UserBulkResultDTO> createAll(List<UserDTO> users) {
+
+        UserBulkResultDTO[] results = new UserBulkResultDTO[users.size()];
+
+        // Valid each user, keeping index of valid users, a missing user is a bad request
+        List<Integer> indexes = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            if (users.get(i) == null) {
+                results[i] = new UserBulkResultDTO(i, HttpStatus.BAD_REQUEST.value(), null, List.of("User cannot be created, user is missing"));
+                continue;
+            }
+
+            Set<ConstraintViolation<UserDTO>> violations = validator.validate(users.get(i));
+
+            if (violations.isEmpty()) {
+                indexes.add(i);
+            } else {
+                results[i] = new UserBulkResultDTO(i, HttpStatus.BAD_REQUEST.value(), null, violations.stream().map(ConstraintViolation::getMessage).toList());
+            }
+        }
+
+        // Call service to create valid users
+        List<UserBulkResult> usersCreated = userService.createUsers(indexes.stream().map(i -> userMapper.asUser(users.get(i))).toList());
+
+        // Return result of each user, user as DTO if created
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            UserBulkResult result = usersCreated.get(i);
+
+            results[index] = result.isCreated()
+                    ? new UserBulkResultDTO(index, HttpStatus.CREATED.value(), userMapper.asUserDto(result.user()), List.of())
+                    : new UserBulkResultDTO(index, statusOf(result.error()).value(), null, List.of(result.error().getMessage()));
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private HttpStatus statusOf(RuntimeException error) {
 
-        // Call service to delete user
-        userService.deleteUser(username);
+        // Status declared on exception, internal server error by default
+        ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(error.getClass(), ResponseStatus.class);
+        return responseStatus != null ? responseStatus.code() : HttpStatus.INTERNAL_SERVER_ERROR;
     }
 
 }
@@ -0,0 +1,18 @@
+package com.jvezolles.api.user;
+
+/**
+ * User repository for counts
+ * Used to count User entities, exactly or approximately
+ *
+ * @author Vezolles
+ */
+public interface UserCountRepository {
+
+    /**
+     * Count users approximately, from statistics of database catalog if available, else exactly
+     *
+     * @return the approximate number of users
+     */
+    long countApproximately();
+
+}
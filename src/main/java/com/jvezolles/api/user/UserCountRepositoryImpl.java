@@ -0,0 +1,42 @@
+package com.jvezolles.api.user;
+
+import jakarta.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+/**
+ * User repository for counts implementation
+ * On PostgreSQL, approximate count is the number of rows estimated by planner statistics, without scanning table
+ *
+ * @author Vezolles
+ */
+@AllArgsConstructor
+public class UserCountRepositoryImpl implements UserCountRepository {
+
+    /**
+     * EntityManager used to count users
+     */
+    private EntityManager entityManager;
+
+    @Override
+    public long countApproximately() {
+
+        // Read estimated number of rows, negative if table was never analyzed
+        if (entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect() instanceof PostgreSQLDialect) {
+            long estimate = entityManager.unwrap(Session.class).createNativeQuery("select cast(reltuples as bigint) from pg_class where oid = to_regclass('users')", Long.class)
+                    .getResultStream()
+                    .findFirst()
+                    .orElse(-1L);
+
+            if (estimate >= 0) {
+                return estimate;
+            }
+        }
+
+        // Else count exactly
+        return entityManager.createQuery("select count(u) from User u", Long.class).getSingleResult();
+    }
+
+}
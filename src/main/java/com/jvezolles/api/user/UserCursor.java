@@ -0,0 +1,52 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.exception.UserCursorException;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * User cursor
+ * Used to encode and decode opaque cursor for keyset pagination of users
+ *
+ * @author Vezolles
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class UserCursor {
+
+    /**
+     * Encode the id of the last user read as opaque cursor
+     *
+     * @param id the id of the last user read
+     * @return the opaque cursor
+     */
+    public static String encode(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode an opaque cursor as the id of the last user read
+     *
+     * @param cursor the opaque cursor, blank for first users
+     * @return the id of the last user read, null for first users
+     * @throws UserCursorException if cursor is not valid
+     */
+    public static Long decode(String cursor) throws UserCursorException {
+
+        // Blank cursor starts from first users
+        if (StringUtils.isBlank(cursor)) {
+            return null;
+        }
+
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+
+        } catch (IllegalArgumentException _) {
+            throw new UserCursorException("User cursor is not valid");
+        }
+    }
+
+}
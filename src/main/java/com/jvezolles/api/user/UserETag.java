@@ -0,0 +1,170 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.exception.UserPreconditionFailedException;
+import com.jvezolles.api.user.model.UserFields;
+import com.jvezolles.api.user.model.UserVersion;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.Slice;
+
+/**
+ * User ETag
+ * Used to compute strong ETags, of a user from its version, and of a page of users from their versions without reading their fields,
+ * to match them with If-None-Match, and to parse If-Match as the version of user expected
+ *
+ * @author Vezolles
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class UserETag {
+
+    /**
+     * FNV-1a 64 bits offset basis
+     */
+    private static final long OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64 bits prime
+     */
+    private static final long PRIME = 0x100000001b3L;
+
+    /**
+     * Quote around ETag
+     */
+    private static final String QUOTE = "\"";
+
+    /**
+     * Separator of id and version in ETag of a user
+     */
+    private static final String SEPARATOR = "-";
+
+    /**
+     * Wildcard matching any ETag
+     */
+    private static final String ANY = "*";
+
+    /**
+     * Prefix of weak ETag
+     */
+    private static final String WEAK_PREFIX = "W/";
+
+    /**
+     * Compute the ETag of a user, from its version
+     *
+     * @param version the version of the user
+     * @return the quoted ETag
+     */
+    public static String of(UserVersion version) {
+        return QUOTE + Long.toString(version.id(), Character.MAX_RADIX) + SEPARATOR + version.version() + QUOTE;
+    }
+
+    /**
+     * Compute the ETag of a user with only fields requested, from its version and the fields
+     * Not accepted by If-Match, which expects the ETag of the whole user
+     *
+     * @param version the version of the user
+     * @param fields  the fields requested
+     * @return the quoted ETag
+     */
+    public static String of(UserVersion version, UserFields fields) {
+
+        if (fields.isAll()) {
+            return of(version);
+        }
+
+        return QUOTE + Long.toString(version.id(), Character.MAX_RADIX) + SEPARATOR + version.version() + SEPARATOR + fields.mask() + QUOTE;
+    }
+
+    /**
+     * Compute the ETag of a slice of users with fields requested, from their versions, with next users availability
+     * Fields are hashed too if not all, as a field not requested and a null field are written differently
+     *
+     * @param versions the slice of versions of users
+     * @param fields   the fields requested
+     * @return the quoted ETag
+     */
+    public static String of(Slice<UserVersion> versions, UserFields fields) {
+
+        long hash = fields.isAll() ? OFFSET : hash(OFFSET, fields.mask());
+        for (UserVersion version : versions) {
+            hash = mix(hash(hash(hash, version.id()), version.version()));
+        }
+
+        return format(mix(hash ^ (versions.hasNext() ? 1 : 0)));
+    }
+
+    /**
+     * Parse an If-Match header as the version of user expected
+     *
+     * @param ifMatch the If-Match header, one ETag of a user or wildcard, may be null
+     * @return the version expected, null if any version is accepted
+     * @throws UserPreconditionFailedException if If-Match is not one strong ETag of a user
+     */
+    public static UserVersion parse(String ifMatch) throws UserPreconditionFailedException {
+
+        // No condition, or any version accepted
+        if (StringUtils.isBlank(ifMatch) || ANY.equals(ifMatch.trim())) {
+            return null;
+        }
+
+        // Only one strong ETag, quoted
+        String value = ifMatch.trim();
+        int separator = value.indexOf(SEPARATOR);
+        if (value.length() < 2 || !value.startsWith(QUOTE) || !value.endsWith(QUOTE) || separator < 0) {
+            throw new UserPreconditionFailedException("User precondition failed, ETag is not valid");
+        }
+
+        try {
+            return new UserVersion(Long.parseLong(value.substring(1, separator), Character.MAX_RADIX), Long.parseLong(value.substring(separator + 1, value.length() - 1)));
+
+        } catch (NumberFormatException _) {
+            throw new UserPreconditionFailedException("User precondition failed, ETag is not valid");
+        }
+    }
+
+    /**
+     * Check if an If-None-Match header matches an ETag, with weak comparison
+     *
+     * @param ifNoneMatch the If-None-Match header, list of ETags or wildcard, may be null
+     * @param etag        the quoted ETag of current representation
+     * @return true if one of the ETags matches
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+
+            // Wildcard matches any representation, weak ETags are compared as strong ones
+            if (ANY.equals(value) || etag.equals(value.startsWith(WEAK_PREFIX) ? value.substring(WEAK_PREFIX.length()) : value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static long hash(long hash, long value) {
+        return (hash ^ value) * PRIME;
+    }
+
+    private static long mix(long hash) {
+
+        // Finalizer of MurmurHash3, spreading every bit
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+    private static String format(long hash) {
+        return QUOTE + Long.toHexString(hash) + QUOTE;
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.config.UserProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * User eligibility
+ * Ages of majority configured by country are compiled at startup, and the latest birthdate eligible by country
+ * is computed once a day, so a check is one lookup and one date comparison, safe to run in parallel
+ *
+ * @author Vezolles
+ */
+@Component
+public class UserEligibility {
+
+    /**
+     * Cutoffs never computed, always expired
+     */
+    private static final Cutoffs EXPIRED = new Cutoffs(Map.of(), Long.MIN_VALUE);
+
+    /**
+     * Clock used for the date of the day
+     */
+    private final Clock clock;
+
+    /**
+     * Ages of majority by country in lower case
+     */
+    private final Map<String, Integer> agesOfMajority;
+
+    /**
+     * Countries as configured by country in lower case
+     */
+    private final Map<String, String> countries;
+
+    /**
+     * Countries configured with their age of majority, to explain a user not eligible
+     */
+    private final String countriesEligible;
+
+    /**
+     * Cutoffs of the day, replaced at midnight
+     */
+    private volatile Cutoffs cutoffs = EXPIRED;
+
+    /**
+     * Default constructor for UserEligibility
+     *
+     * @param clock          the clock
+     * @param userProperties the user properties, with ages of majority by country
+     */
+    public UserEligibility(Clock clock, UserProperties userProperties) {
+
+        this.clock = clock;
+
+        // Compile ages of majority by country, normalized to lower case
+        Map<String, Integer> ages = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        userProperties.getAgeOfMajority().forEach((country, age) -> {
+            ages.put(country.toLowerCase(Locale.ROOT), age);
+            names.put(country.toLowerCase(Locale.ROOT), country);
+        });
+        this.agesOfMajority = Map.copyOf(ages);
+        this.countries = Map.copyOf(names);
+        this.countriesEligible = new TreeMap<>(userProperties.getAgeOfMajority()).entrySet().stream()
+                .map(country -> country.getKey() + " (" + country.getValue() + ")")
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Check if a user is eligible, adult in a country configured
+     *
+     * @param country   the country of user
+     * @param birthdate the birthdate of user
+     * @return true if user is eligible
+     */
+    public boolean isEligible(String country, LocalDate birthdate) {
+
+        // Get cutoffs of the day, computed again if the day changed before the refresh
+        Cutoffs current = cutoffs;
+        if (clock.millis() >= current.expiresAt()) {
+            current = compute();
+        }
+
+        // Eligible if born on or before cutoff of country
+        LocalDate cutoff = country != null ? current.dates().get(country.toLowerCase(Locale.ROOT)) : null;
+        return cutoff != null && birthdate != null && !birthdate.isAfter(cutoff);
+    }
+
+    /**
+     * Normalize a country to its name configured, whatever its case
+     *
+     * @param country the country of user
+     * @return the name of country configured, else the country unchanged
+     */
+    public String normalize(String country) {
+        return country != null ? countries.getOrDefault(country.toLowerCase(Locale.ROOT), country) : null;
+    }
+
+    /**
+     * Describe the requirement a user of a country must meet to be eligible
+     *
+     * @param country the country of user
+     * @return the age of majority in the country if configured, else the countries configured with their age of majority
+     */
+    public String describe(String country) {
+
+        Integer age = country != null ? agesOfMajority.get(country.toLowerCase(Locale.ROOT)) : null;
+        if (age == null) {
+            return "adult in an eligible country, among " + countriesEligible;
+        }
+
+        return "at least " + age + " years old in " + countries.get(country.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Refresh cutoffs at midnight, for the new day
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void refresh() {
+        compute();
+    }
+
+    private Cutoffs compute() {
+
+        // Date of the day, in zone of clock
+        ZoneId zone = clock.getZone();
+        LocalDate today = LocalDate.ofInstant(clock.instant(), zone);
+
+        // Latest birthdate eligible by country
+        Map<String, LocalDate> dates = new HashMap<>();
+        agesOfMajority.forEach((country, age) -> dates.put(country, today.minusYears(age)));
+
+        // Valid until next midnight
+        Cutoffs computed = new Cutoffs(Map.copyOf(dates), today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+        cutoffs = computed;
+
+        return computed;
+    }
+
+    /**
+     * Latest birthdate eligible by country, for one day
+     *
+     * @param dates     the latest birthdate eligible by country in lower case
+     * @param expiresAt the end of the day, in epoch millis
+     */
+    private record Cutoffs(Map<String, LocalDate> dates, long expiresAt) {
+    }
+
+}
@@ -0,0 +1,337 @@
+package com.jvezolles.api.user;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.config.UserProperties;
+import com.jvezolles.api.user.dto.UserEventDTO;
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserEventType;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * User events
+ * Events on users are published once committed, kept in a short log, and pushed to subscribers as server-sent events
+ * Each event is serialized once for all subscribers, each subscriber has a bounded buffer and is disconnected if too slow
+ * Subscribers hold no thread while idle, events are sent by a virtual thread only while a buffer is not empty
+ *
+ * @author Vezolles
+ */
+@Slf4j
+@Component
+public class UserEvents {
+
+    /**
+     * Name of event sent if events after last event id are no longer available
+     */
+    private static final String RESET_EVENT = "reset";
+
+    /**
+     * Subscribers connected
+     */
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Last events published, by id modulo log size
+     */
+    private final Frame[] events;
+
+    /**
+     * Heartbeat sent to subscribers, as comment
+     */
+    private final Set<DataWithMediaType> heartbeat = SseEmitter.event().comment("").build();
+
+    /**
+     * UserMapper used to map users of events
+     */
+    private final UserMapper userMapper;
+
+    /**
+     * ObjectMapper used to serialize events
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Events configuration
+     */
+    private final UserProperties.Events properties;
+
+    /**
+     * Counter of subscribers disconnected as too slow
+     */
+    private final Counter disconnectedCounter;
+
+    /**
+     * Id of next event, first id after a restart is above ids already sent
+     */
+    private long nextId;
+
+    /**
+     * Executor sending events to subscribers, one virtual thread by subscriber with events waiting
+     */
+    private volatile ExecutorService sender;
+
+    /**
+     * Default constructor for UserEvents
+     *
+     * @param userMapper     the user mapper
+     * @param objectMapper   the object mapper
+     * @param clock          the clock, used for first event id
+     * @param userProperties the user properties, with events configuration
+     * @param meterRegistry  the registry of meters
+     */
+    public UserEvents(UserMapper userMapper, ObjectMapper objectMapper, Clock clock, UserProperties userProperties, MeterRegistry meterRegistry) {
+
+        this.userMapper = userMapper;
+        this.objectMapper = objectMapper;
+        this.properties = userProperties.getEvents();
+
+        this.events = new Frame[properties.getLogSize()];
+        this.nextId = clock.millis() * 1000;
+
+        // Bind subscribers and subscribers disconnected as metrics
+        Gauge.builder(Constants.USER_EVENTS_SUBSCRIBERS, subscribers, Set::size).register(meterRegistry);
+        this.disconnectedCounter = Counter.builder(Constants.USER_EVENTS_DISCONNECTED).register(meterRegistry);
+    }
+
+    /**
+     * Start sending events, events published before are sent once started
+     */
+    @PostConstruct
+    public void start() {
+
+        sender = Executors.newVirtualThreadPerTaskExecutor();
+        subscribers.forEach(this::schedule);
+    }
+
+    /**
+     * Publish an event on a user, once current transaction is committed if any
+     *
+     * @param type     the type of event
+     * @param username the username of the user, before replacement if replaced
+     * @param user     the user after event, null if deleted
+     */
+    public void publish(UserEventType type, String username, User user) {
+
+        // Serialize event now, as user may change after
+        String data = serialize(new UserEventDTO(username, user != null ? userMapper.asUserDto(user) : null));
+
+        // Publish after commit, to not publish changes rolled back
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(type, data);
+                }
+            });
+
+        } else {
+            publish(type, data);
+        }
+    }
+
+    /**
+     * Subscribe to events on users
+     * Events after last event id are sent first if still in log, else a reset event asks to sync users again
+     *
+     * @param lastEventId the id of the last event received, null for new events only
+     * @return the emitter of events
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+
+        Subscriber subscriber = new Subscriber(new SseEmitter(properties.getTimeout().toMillis()), new ArrayBlockingQueue<>(properties.getBufferSize()));
+        subscriber.emitter().onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter().onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter().onError(_ -> subscribers.remove(subscriber));
+
+        // Replay events missed and register, with no event published between
+        synchronized (events) {
+            if (lastEventId != null) {
+                List<Frame> missed = after(lastEventId);
+
+                if (missed != null && missed.size() <= properties.getBufferSize()) {
+                    missed.forEach(frame -> subscriber.buffer().add(frame.data()));
+                } else {
+                    subscriber.buffer().add(SseEmitter.event().id(String.valueOf(nextId - 1)).name(RESET_EVENT).data("").build());
+                }
+            }
+
+            subscribers.add(subscriber);
+        }
+
+        schedule(subscriber);
+
+        return subscriber.emitter();
+    }
+
+    /**
+     * Send a heartbeat to subscribers, subscribers gone are removed on failure
+     */
+    @Scheduled(fixedDelayString = "${jvezolles.user.events.heartbeat-interval:15s}")
+    public void heartbeat() {
+
+        // Skip subscribers with events waiting, they are already sent soon
+        subscribers.forEach(subscriber -> {
+            if (subscriber.buffer().offer(heartbeat)) {
+                schedule(subscriber);
+            }
+        });
+    }
+
+    /**
+     * Close subscriptions, subscribers resume them on another instance
+     */
+    @PreDestroy
+    public void stop() {
+
+        subscribers.forEach(subscriber -> subscriber.emitter().complete());
+        subscribers.clear();
+
+        if (sender != null) {
+            sender.shutdownNow();
+        }
+    }
+
+    private void publish(UserEventType type, String data) {
+
+        List<Subscriber> disconnected = new ArrayList<>();
+
+        synchronized (events) {
+
+            // Keep event in log, replacing the oldest one
+            long id = nextId++;
+            Frame frame = new Frame(id, SseEmitter.event().id(String.valueOf(id)).name(type.eventName()).data(data, MediaType.APPLICATION_JSON).build());
+            events[(int) (id % events.length)] = frame;
+
+            // Buffer event for each subscriber, disconnect subscribers with a full buffer
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.buffer().offer(frame.data())) {
+                    schedule(subscriber);
+                } else {
+                    subscribers.remove(subscriber);
+                    disconnected.add(subscriber);
+                }
+            }
+        }
+
+        // Subscribers disconnected resume from their last event
+        disconnected.forEach(subscriber -> {
+            disconnectedCounter.increment();
+            subscriber.emitter().complete();
+        });
+    }
+
+    private List<Frame> after(long lastEventId) {
+
+        // Events after last event id, null if some are no longer in log or id is unknown
+        long oldestId = Math.max(nextId - events.length, 0);
+        if (lastEventId >= nextId || lastEventId + 1 < oldestId) {
+            return null;
+        }
+
+        List<Frame> frames = new ArrayList<>((int) (nextId - lastEventId - 1));
+        for (long id = lastEventId + 1; id < nextId; id++) {
+            frames.add(events[(int) (id % events.length)]);
+        }
+
+        return frames;
+    }
+
+    private void schedule(Subscriber subscriber) {
+
+        // One sender at most by subscriber, keeping order of events, events stay buffered until started
+        ExecutorService executor = sender;
+        if (executor != null && !subscriber.buffer().isEmpty() && subscriber.sending().compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> send(subscriber));
+
+            } catch (RuntimeException _) {
+                subscriber.sending().set(false);
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+
+        try {
+            Set<DataWithMediaType> data;
+            while ((data = subscriber.buffer().poll()) != null) {
+                subscriber.emitter().send(data);
+            }
+
+        } catch (IOException | IllegalStateException e) {
+            // Subscriber gone or completed
+            subscribers.remove(subscriber);
+            subscriber.buffer().clear();
+            log.debug("User events subscriber gone: {}", e.getMessage());
+
+        } finally {
+            subscriber.sending().set(false);
+        }
+
+        // Send events buffered while finishing
+        if (subscribers.contains(subscriber)) {
+            schedule(subscriber);
+        }
+    }
+
+    private String serialize(UserEventDTO event) {
+
+        try {
+            return objectMapper.writeValueAsString(event);
+
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Event serialized once, sent to each subscriber
+     *
+     * @param id   the id of the event
+     * @param data the event serialized as server-sent event
+     */
+    private record Frame(long id, Set<DataWithMediaType> data) {
+    }
+
+    /**
+     * Subscriber of events
+     *
+     * @param emitter the emitter of events to subscriber
+     * @param buffer  the events waiting to be sent
+     * @param sending true while a sender sends events to subscriber
+     */
+    private record Subscriber(SseEmitter emitter, BlockingQueue<Set<DataWithMediaType>> buffer, AtomicBoolean sending) {
+
+        private Subscriber(SseEmitter emitter, BlockingQueue<Set<DataWithMediaType>> buffer) {
+            this(emitter, buffer, new AtomicBoolean());
+        }
+
+    }
+
+}
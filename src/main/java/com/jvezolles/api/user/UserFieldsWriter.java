@@ -0,0 +1,173 @@
+package com.jvezolles.api.user;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.model.UserField;
+import com.jvezolles.api.user.model.UserFields;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * User fields writer
+ * Writes only the fields requested of user's details as JSON, with names serialized once and one writer by field,
+ * one writer is created by set of fields at startup, without reflection nor filter by request
+ *
+ * @author Vezolles
+ */
+public final class UserFieldsWriter {
+
+    /**
+     * Writers, by mask of fields
+     */
+    private static final UserFieldsWriter[] BY_MASK = new UserFieldsWriter[UserFields.ALL.mask() + 1];
+
+    static {
+        for (int mask = 1; mask < BY_MASK.length; mask++) {
+            BY_MASK[mask] = new UserFieldsWriter(mask);
+        }
+    }
+
+    /**
+     * Writers of fields requested, in order of user's details
+     */
+    private final FieldWriter[] writers;
+
+    private UserFieldsWriter(int mask) {
+
+        this.writers = UserFields.ALL.fields().stream()
+                .filter(field -> (mask & (1 << field.ordinal())) != 0)
+                .map(UserFieldsWriter::writer)
+                .toArray(FieldWriter[]::new);
+    }
+
+    /**
+     * Get the writer of a set of fields
+     *
+     * @param fields the fields requested
+     * @return the writer, created once for this set of fields
+     */
+    public static UserFieldsWriter of(UserFields fields) {
+        return BY_MASK[fields.mask()];
+    }
+
+    /**
+     * Write a user, with only fields requested
+     *
+     * @param generator the JSON generator
+     * @param user      the user's details
+     * @throws IOException if writing fails
+     */
+    public void write(JsonGenerator generator, UserDTO user) throws IOException {
+
+        generator.writeStartObject();
+        for (FieldWriter writer : writers) {
+            writer.write(generator, user);
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * View of a user as JSON, with only fields requested
+     *
+     * @param user the user's details
+     * @return the user, serialized by this writer
+     */
+    public JsonSerializable view(UserDTO user) {
+        return new View(generator -> write(generator, user));
+    }
+
+    /**
+     * View of users as JSON array, with only fields requested
+     *
+     * @param users the user's details
+     * @return the users, serialized by this writer
+     */
+    public JsonSerializable view(List<UserDTO> users) {
+        return new View(generator -> {
+            generator.writeStartArray();
+            for (UserDTO user : users) {
+                write(generator, user);
+            }
+            generator.writeEndArray();
+        });
+    }
+
+    private static FieldWriter writer(UserField field) {
+
+        // Name serialized once, then value of field as UserDTO is serialized
+        SerializedString name = new SerializedString(field.fieldName());
+        return switch (field) {
+            case USERNAME -> string(name, UserDTO::username);
+            case BIRTHDATE -> (generator, user) -> {
+                generator.writeFieldName(name);
+                LocalDate birthdate = user.birthdate();
+                if (birthdate != null) {
+                    generator.writeString(birthdate.toString());
+                } else {
+                    generator.writeNull();
+                }
+            };
+            case COUNTRY -> string(name, UserDTO::country);
+            case PHONE -> string(name, UserDTO::phone);
+            case GENDER -> string(name, UserDTO::gender);
+            case EMAIL -> string(name, UserDTO::email);
+        };
+    }
+
+    private static FieldWriter string(SerializedString name, Function<UserDTO, String> getter) {
+
+        return (generator, user) -> {
+            generator.writeFieldName(name);
+            generator.writeString(getter.apply(user));
+        };
+    }
+
+    /**
+     * Writer of one field of user's details
+     */
+    @FunctionalInterface
+    private interface FieldWriter {
+
+        void write(JsonGenerator generator, UserDTO user) throws IOException;
+
+    }
+
+    /**
+     * Content written as JSON
+     */
+    @FunctionalInterface
+    private interface Content {
+
+        void write(JsonGenerator generator) throws IOException;
+
+    }
+
+    /**
+     * Content serialized by Jackson as is, without introspection
+     *
+     * @param content the content to write
+     */
+    private record View(Content content) implements JsonSerializable {
+
+        @Override
+        public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+            content.write(generator);
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer) throws IOException {
+
+            // Never typed, written as is
+            serialize(generator, serializers);
+        }
+
+    }
+
+}
@@ -0,0 +1,241 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.config.UserProperties;
+import com.jvezolles.api.user.exception.UserCreateException;
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserBulkResult;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * User group commit
+ * Users created concurrently are gathered during a short window, up to a max size, then written in one transaction
+ * Each caller waits for its own user, created or failed
+ *
+ * @author Vezolles
+ */
+@Slf4j
+@Component
+public class UserGroupCommit {
+
+    /**
+     * Max time waiting for a first user, before checking if writer is stopped
+     */
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    /**
+     * Queue of users waiting, bounded by capacity
+     */
+    private final BlockingQueue<Waiting> queue;
+
+    /**
+     * UserService used to write users, by group
+     */
+    private final UserService userService;
+
+    /**
+     * Group commit configuration
+     */
+    private final UserProperties.GroupCommit properties;
+
+    /**
+     * Timer of commits
+     */
+    private final Timer commitTimer;
+
+    /**
+     * Summary of number of users by commit
+     */
+    private final DistributionSummary sizeSummary;
+
+    /**
+     * Background writer
+     */
+    private Thread writer;
+
+    /**
+     * False once stopped, users waiting are still written
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Default constructor for UserGroupCommit
+     *
+     * @param userService    the user service, resolved lazily as it creates users here
+     * @param userProperties the user properties, with group commit configuration
+     * @param meterRegistry  the registry of meters
+     */
+    public UserGroupCommit(@Lazy UserService userService, UserProperties userProperties, MeterRegistry meterRegistry) {
+
+        this.userService = userService;
+        this.properties = userProperties.getGroupCommit();
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+
+        // Bind commit latency and size as metrics
+        this.commitTimer = Timer.builder(Constants.USER_GROUP_COMMIT_TIMER).register(meterRegistry);
+        this.sizeSummary = DistributionSummary.builder(Constants.USER_GROUP_COMMIT_SIZE).register(meterRegistry);
+    }
+
+    /**
+     * Start background writer
+     */
+    @PostConstruct
+    public void start() {
+        writer = Thread.ofPlatform().name("user-group-commit").daemon().start(this::drain);
+    }
+
+    /**
+     * Stop gathering users, and wait for users waiting to be written
+     * Users still queued after shutdown timeout are failed, so no caller stays waiting
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+
+        // No user queued once stopped, under the lock of users queued
+        synchronized (queue) {
+            running = false;
+        }
+
+        if (writer != null && !writer.join(properties.getShutdownTimeout())) {
+            log.warn("Group commit stopped with {} users still queued", queue.size());
+        }
+
+        // Fail users not written in time
+        List<Waiting> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(waiting -> waiting.result().complete(UserBulkResult.failed(new UserCreateException("User cannot be created, not written in time"))));
+    }
+
+    /**
+     * Create a user, with users created concurrently
+     *
+     * @param user the user to create, already checked
+     * @return the user created
+     * @throws UserCreateException if creation fails, or user is still queued after timeout
+     */
+    public User create(User user) throws UserCreateException {
+
+        Waiting waiting = new Waiting(user, new CompletableFuture<>());
+
+        // Queue user while running and queue not full, checked under the same lock as stop, else write it alone
+        boolean queued;
+        synchronized (queue) {
+            queued = running && queue.offer(waiting);
+        }
+        if (!queued) {
+            commit(List.of(waiting));
+        }
+
+        // Wait for result of user, throw its error if creation fails
+        UserBulkResult result = await(waiting);
+        if (!result.isCreated()) {
+            throw result.error();
+        }
+
+        return result.user();
+    }
+
+    private UserBulkResult await(Waiting waiting) throws UserCreateException {
+
+        try {
+            try {
+                return waiting.result().get(properties.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+
+            } catch (TimeoutException _) {
+                // Fail user if still queued, else its group is being written, so wait for its result
+                if (queue.remove(waiting)) {
+                    throw new UserCreateException("User cannot be created, not written in time");
+                }
+                return waiting.result().get();
+            }
+
+        } catch (ExecutionException _) {
+            throw new UserCreateException("User cannot be created");
+
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            throw new UserCreateException("User cannot be created");
+        }
+    }
+
+    private void drain() {
+
+        List<Waiting> group = new ArrayList<>(properties.getMaxSize());
+
+        // Write users until stopped, then until queue is empty
+        while (running || !queue.isEmpty()) {
+            try {
+                Waiting first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                // Gather users arriving during window, up to max size
+                group.add(first);
+                long deadline = System.nanoTime() + properties.getWindow().toNanos();
+                queue.drainTo(group, properties.getMaxSize() - 1);
+                while (group.size() < properties.getMaxSize()) {
+                    Waiting next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+
+                commit(group);
+                group.clear();
+
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+                group.forEach(waiting -> waiting.result().complete(UserBulkResult.failed(new UserCreateException("User cannot be created"))));
+                return;
+            }
+        }
+    }
+
+    private void commit(List<Waiting> group) {
+
+        sizeSummary.record(group.size());
+        commitTimer.record(() -> {
+            try {
+                // Create users in one transaction, and complete each user with its result
+                List<UserBulkResult> results = userService.createUsers(group.stream().map(Waiting::user).toList());
+                for (int i = 0; i < group.size(); i++) {
+                    group.get(i).result().complete(results.get(i));
+                }
+
+            } catch (RuntimeException e) {
+                log.error("Group commit of {} users failed", group.size(), e);
+                group.forEach(waiting -> waiting.result().complete(UserBulkResult.failed(new UserCreateException("User cannot be created"))));
+            }
+        });
+    }
+
+    /**
+     * User waiting for group commit
+     *
+     * @param user   the user to create
+     * @param result the result, completed once user written
+     */
+    private record Waiting(User user, CompletableFuture<UserBulkResult> result) {
+    }
+
+}
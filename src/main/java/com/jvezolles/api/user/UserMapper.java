@@ -3,6 +3,7 @@ package com.jvezolles.api.user;
 import com.jvezolles.api.user.dto.UserDTO;
 import com.jvezolles.api.user.model.User;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
 
 /**
@@ -24,9 +25,14 @@ public interface UserMapper {
 
     /**
      * Convert a userDto as User
+     * Id, version and update time are set by persistence only
      *
      * @param userDto the userDto to convert as User
      * @return the User
      */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "changeSequence", ignore = true)
     User asUser(UserDTO userDto);
 }
@@ -0,0 +1,41 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.model.User;
+
+import java.util.Optional;
+
+/**
+ * User repository by natural id
+ * Used to find User entity by username through second-level cache, and to evict it once written
+ *
+ * @author Vezolles
+ */
+public interface UserNaturalIdRepository {
+
+    /**
+     * Find user by natural id username, from second-level cache if cached, else in database
+     *
+     * @param username the username to find, in lower case
+     * @return an optional user if found
+     */
+    Optional<User> findByNaturalId(String username);
+
+    /**
+     * Find id of user by natural id username, from natural id cache if cached, else in database locking the user row,
+     * so that the id is the one of the user written next in current transaction
+     *
+     * @param username the username to find, in lower case
+     * @return an optional id if found
+     */
+    Optional<Long> findIdByNaturalId(String username);
+
+    /**
+     * Evict user from second-level cache, by natural id and by id, now and once current transaction is completed if any
+     * Only the entries of this user are evicted, never the whole regions
+     *
+     * @param username the username to evict, in lower case
+     * @param id       the id of user, null if no user has this username
+     */
+    void evictByNaturalId(String username, Long id);
+
+}
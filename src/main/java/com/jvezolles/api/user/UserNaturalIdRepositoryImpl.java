@@ -0,0 +1,85 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.util.Constants;
+import jakarta.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+/**
+ * User repository by natural id implementation
+ * Load by natural id resolves username to id, then user, from second-level cache regions
+ * Eviction removes only the entries of the user written, not the whole regions
+ *
+ * @author Vezolles
+ */
+@AllArgsConstructor
+public class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+
+    /**
+     * EntityManager used to load users by natural id
+     */
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<User> findByNaturalId(String username) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(username);
+    }
+
+    @Override
+    public Optional<Long> findIdByNaturalId(String username) {
+
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(User.class);
+        NaturalIdDataAccess naturalIds = persister.getNaturalIdCacheAccessStrategy();
+
+        // Resolve id from natural id cache, else from database, locking user row until written
+        if (naturalIds.get(session, naturalIds.generateCacheKey(username, persister, session)) instanceof Long id) {
+            return Optional.of(id);
+        }
+
+        return entityManager.createNativeQuery("select id from users where username = :username for update", Long.class)
+                .setParameter("username", username)
+                .setHint(HibernateHints.HINT_NATIVE_SPACES, Constants.USER_NO_QUERY_SPACE)
+                .getResultStream()
+                .map(Long.class::cast)
+                .findFirst();
+    }
+
+    @Override
+    public void evictByNaturalId(String username, Long id) {
+
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(User.class);
+        NaturalIdDataAccess naturalIds = persister.getNaturalIdCacheAccessStrategy();
+        Object naturalIdKey = naturalIds.generateCacheKey(username, persister, session);
+
+        // Evict natural id, and user by id if any, never the whole region
+        Runnable evict = () -> {
+            naturalIds.evict(naturalIdKey);
+            if (id != null) {
+                session.getFactory().getCache().evictEntityData(User.class, id);
+            }
+        };
+
+        // Evict now, and again after transaction, as user may be cached again from database before commit
+        evict.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict.run();
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.model.UserFields;
+import com.jvezolles.api.user.model.UserFilter;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.user.model.VersionedUser;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.stream.Stream;
+
+/**
+ * User repository for projections
+ * Used to select only the columns of fields requested, as DTO with other fields null
+ *
+ * @author Vezolles
+ */
+public interface UserProjectionRepository {
+
+    /**
+     * Find user's details matching a filter ordered by id in database, selecting only the columns of fields requested
+     * One more user than page size is read to know if next users exist, without count query
+     *
+     * @param fields   the fields requested
+     * @param filter   the filter of users
+     * @param pageable the page to find, unpaged for all users
+     * @return a slice of user's details, with only fields requested set
+     */
+    Slice<UserDTO> findAllDtoBy(UserFields fields, UserFilter filter, Pageable pageable);
+
+    /**
+     * Find versions of users matching a filter ordered by id in database, selecting only id and version
+     * Same users as the page of details, one more user than page size read to know if next users exist
+     *
+     * @param filter   the filter of users
+     * @param pageable the page to find, unpaged for all users
+     * @return a slice of versions of users
+     */
+    Slice<UserVersion> findAllVersionBy(UserFilter filter, Pageable pageable);
+
+    /**
+     * Find user's details matching a filter ordered by id in database with their versions, selecting only the columns of fields requested, id and version
+     * Used to read a page and its ETag at once, one more user than page size read to know if next users exist
+     *
+     * @param fields   the fields requested
+     * @param filter   the filter of users
+     * @param pageable the page to find, unpaged for all users
+     * @return a slice of user's details with their versions, with only fields requested set
+     */
+    Slice<VersionedUser> findAllVersionedBy(UserFields fields, UserFilter filter, Pageable pageable);
+
+    /**
+     * Stream user's details matching a filter ordered by id from a JDBC cursor in database, selecting only the columns of fields requested
+     * Rows are fetched by bounded chunks, must be consumed in a transaction and closed
+     *
+     * @param fields the fields requested
+     * @param filter the filter of users
+     * @return a stream of user's details, with only fields requested set
+     */
+    Stream<UserDTO> streamDtoBy(UserFields fields, UserFilter filter);
+
+}
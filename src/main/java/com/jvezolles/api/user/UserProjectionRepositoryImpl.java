@@ -0,0 +1,141 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserFields;
+import com.jvezolles.api.user.model.UserFilter;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.user.model.VersionedUser;
+import com.jvezolles.api.util.Constants;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.AllArgsConstructor;
+import org.hibernate.FlushMode;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * User repository for projections implementation
+ * Fields not requested are selected as null literals, so UserDTO is built by its constructor with only requested columns read
+ *
+ * @author Vezolles
+ */
+@AllArgsConstructor
+public class UserProjectionRepositoryImpl implements UserProjectionRepository {
+
+    /**
+     * EntityManager used to select users
+     */
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<UserDTO> findAllDtoBy(UserFields fields, UserFilter filter, Pageable pageable) {
+        return slice(createQuery(fields, filter), pageable);
+    }
+
+    @Override
+    public Slice<UserVersion> findAllVersionBy(UserFilter filter, Pageable pageable) {
+
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserVersion> criteria = builder.createQuery(UserVersion.class);
+        Root<User> root = criteria.from(User.class);
+
+        // Select id and version only
+        criteria.select(builder.construct(UserVersion.class, root.get("id"), root.get("version")));
+
+        return slice(createQuery(criteria, root, builder, filter), pageable);
+    }
+
+    @Override
+    public Slice<VersionedUser> findAllVersionedBy(UserFields fields, UserFilter filter, Pageable pageable) {
+
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+        Root<User> root = criteria.from(User.class);
+
+        // Select columns of fields requested then id and version, flat as a nested UserDTO would shift the order by id onto another column
+        List<Selection<?>> selections = new ArrayList<>(List.of(selections(fields, root, builder)));
+        selections.add(root.get("id"));
+        selections.add(root.get("version"));
+        criteria.multiselect(selections);
+
+        return slice(createQuery(criteria, root, builder, filter), pageable).map(this::asVersionedUser);
+    }
+
+    @Override
+    public Stream<UserDTO> streamDtoBy(UserFields fields, UserFilter filter) {
+        return createQuery(fields, filter)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, Integer.valueOf(Constants.USER_STREAM_FETCH_SIZE))
+                .getResultStream();
+    }
+
+    private <T> Slice<T> slice(TypedQuery<T> query, Pageable pageable) {
+
+        // Read one more user than page size, to know if next users exist
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(query.getResultList(), pageable, false);
+        }
+
+        List<T> users = query.setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = users.size() > pageable.getPageSize();
+
+        return new SliceImpl<>(hasNext ? users.subList(0, pageable.getPageSize()) : users, pageable, hasNext);
+    }
+
+    private TypedQuery<UserDTO> createQuery(UserFields fields, UserFilter filter) {
+
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserDTO> criteria = builder.createQuery(UserDTO.class);
+        Root<User> root = criteria.from(User.class);
+
+        criteria.select(builder.construct(UserDTO.class, selections(fields, root, builder)));
+
+        return createQuery(criteria, root, builder, filter);
+    }
+
+    private VersionedUser asVersionedUser(Tuple tuple) {
+
+        // Columns in order of UserDTO constructor, then id and version
+        UserDTO user = new UserDTO(tuple.get(0, String.class), tuple.get(1, LocalDate.class), tuple.get(2, String.class),
+                tuple.get(3, String.class), tuple.get(4, String.class), tuple.get(5, String.class));
+
+        return new VersionedUser(user, new UserVersion(tuple.get(6, Long.class), tuple.get(7, Long.class)));
+    }
+
+    private Selection<?>[] selections(UserFields fields, Root<User> root, CriteriaBuilder builder) {
+
+        // Select columns of fields requested only, null for others, in order of UserDTO constructor
+        return UserFields.ALL.fields().stream()
+                .map(field -> fields.contains(field) ? root.get(field.fieldName()) : builder.nullLiteral(field.type()))
+                .toArray(Selection<?>[]::new);
+    }
+
+    private <T> TypedQuery<T> createQuery(CriteriaQuery<T> criteria, Root<User> root, CriteriaBuilder builder, UserFilter filter) {
+
+        // Filter users if any criterion, ordered by id
+        if (!filter.isEmpty()) {
+            criteria.where(UserSpecifications.of(filter).toPredicate(root, criteria, builder));
+        }
+        criteria.orderBy(QueryUtils.toOrders(UserSpecifications.sort(filter), root, builder));
+
+        // Nothing flushed before query, no entity loaded
+        return entityManager.createQuery(criteria)
+                .setHint(HibernateHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+}
@@ -1,10 +1,28 @@
 package com.jvezolles.api.user;
 
+import com.jvezolles.api.user.dto.UserDTO;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.util.Constants;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * User repository
@@ -13,14 +31,152 @@ import java.util.Optional;
  * @author Vezolles
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User>, UserNaturalIdRepository, UserCountRepository,
+        UserProjectionRepository {
 
     /**
      * Find user by username in database
+     * Username must be normalized in lower case to use the unique index on username
      *
-     * @param username the username to find
+     * @param username the username to find, in lower case
      * @return an optional user if found
      */
     Optional<User> findByUsername(String username);
 
+    /**
+     * Find all user's details ordered by id in database, selected directly as DTO
+     * No entity is loaded in persistence context, nor flushed before query
+     * One more user than page size is read to know if next users exist, without count query
+     *
+     * @param pageable the page to find, unpaged for all users
+     * @return a slice of user's details, with next users availability
+     */
+    @Query("select new com.jvezolles.api.user.dto.UserDTO(u.username, u.birthdate, u.country, u.phone, u.gender, u.email) "
+            + "from User u order by u.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL"))
+    Slice<UserDTO> findAllDtoBy(Pageable pageable);
+
+    /**
+     * Find existing usernames among usernames in database, with one set-based query
+     *
+     * @param usernames the usernames to find, in lower case
+     * @return the usernames found
+     */
+    @Query("select u.username from User u where u.username in :usernames")
+    Set<String> findUsernamesIn(Collection<String> usernames);
+
+    /**
+     * Update user by username in database, with one native update statement
+     * No second-level cache region is cleared, user must be evicted from cache
+     *
+     * @param user the user's details to update, with username in lower case
+     * @return the number of users updated, 0 if user does not exist
+     */
+    @Modifying
+    @Query(value = "update users set birthdate = :#{#user.birthdate}, country = :#{#user.country}, phone = :#{#user.phone}, "
+            + "gender = :#{#user.gender}, email = :#{#user.email}, version = version + 1, updated_at = :#{#user.updatedAt}, "
+            + "change_sequence = null where username = :#{#user.username}", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = Constants.USER_NO_QUERY_SPACE))
+    int updateByUsername(@Param("user") User user);
+
+    /**
+     * Update user by username in database if in version expected, with one native update statement checking version
+     * No second-level cache region is cleared, user must be evicted from cache
+     *
+     * @param user    the user's details to update, with username in lower case
+     * @param version the version of user expected
+     * @return the number of users updated, 0 if user does not exist or is in another version
+     */
+    @Modifying
+    @Query(value = "update users set birthdate = :#{#user.birthdate}, country = :#{#user.country}, phone = :#{#user.phone}, "
+            + "gender = :#{#user.gender}, email = :#{#user.email}, version = version + 1, "
+            + "updated_at = :#{#user.updatedAt}, change_sequence = null where username = :#{#user.username} and id = :#{#version.id} "
+            + "and version = :#{#version.version}", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = Constants.USER_NO_QUERY_SPACE))
+    int updateByUsernameAndVersion(@Param("user") User user, @Param("version") UserVersion version);
+
+    /**
+     * Delete user by username in database, with one native delete statement
+     * No second-level cache region is cleared, user must be evicted from cache
+     *
+     * @param username the username to delete, in lower case
+     * @return the number of users deleted, 0 if user does not exist
+     */
+    @Modifying
+    @Query(value = "delete from users where username = :username", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = Constants.USER_NO_QUERY_SPACE))
+    int deleteByUsername(@Param("username") String username);
+
+    /**
+     * Delete user by username in database if in version expected, with one native delete statement checking version
+     * No second-level cache region is cleared, user must be evicted from cache
+     *
+     * @param username the username to delete, in lower case
+     * @param version  the version of user expected
+     * @return the number of users deleted, 0 if user does not exist or is in another version
+     */
+    @Modifying
+    @Query(value = "delete from users where username = :username and id = :#{#version.id} and version = :#{#version.version}", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = Constants.USER_NO_QUERY_SPACE))
+    int deleteByUsernameAndVersion(@Param("username") String username, @Param("version") UserVersion version);
+
+    /**
+     * Find users ordered by id from a keyset position in database
+     * Seek on primary key, without offset nor count query
+     *
+     * @param position the keyset position on id to start after
+     * @param limit    the max number of users to find
+     * @return a window of users, with next users availability
+     */
+    Window<User> findAllByOrderByIdAsc(ScrollPosition position, Limit limit);
+
+    /**
+     * Find users ordered by sequence of change then id from a keyset position in database, up to a sequence
+     * Seek on index on sequence of change then id, without offset nor count query, users not sequenced yet are not found
+     *
+     * @param sequence the max sequence of change, included
+     * @param position the keyset position on sequence of change and id to start after
+     * @param limit    the max number of users to find
+     * @return a window of users, with next users availability
+     */
+    Window<User> findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(long sequence, ScrollPosition position, Limit limit);
+
+    /**
+     * Find if some users are written and committed since last sequenced in database
+     * Seek on index on sequence of change, which keeps users not sequenced yet
+     *
+     * @return true if some users are not sequenced yet
+     */
+    boolean existsByChangeSequenceIsNull();
+
+    /**
+     * Set sequence of change of users written and committed since last sequenced in database, with one native update statement
+     * No second-level cache region is cleared, as sequence of change is never read from cache
+     *
+     * @param sequence the sequence of change to set
+     * @return the number of users sequenced
+     */
+    @Modifying
+    @Query(value = "update users set change_sequence = :sequence where change_sequence is null", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = Constants.USER_NO_QUERY_SPACE))
+    int sequenceChanges(@Param("sequence") long sequence);
+
+    /**
+     * Find users whose username or lower case email matches a pattern, ordered by id after an id in database
+     * One branch by column, each on its own index, ordered by id and limited, then merged with UNION ALL,
+     * the branch on email skips users already matched by username, so a user is found once
+     * On PostgreSQL, prefix patterns use pattern indexes and other patterns use trigram indexes
+     *
+     * @param pattern the LIKE pattern in lower case, escaped with backslash
+     * @param after   the id of the last user already read
+     * @param limit   the max number of users to find
+     * @return the users found
+     */
+    @Query(value = "select * from ("
+            + "(select * from users where username like :pattern escape '\\' and id > :after order by id limit :limit) "
+            + "union all (select * from users where lower(email) like :pattern escape '\\' and username not like :pattern escape '\\' "
+            + "and id > :after order by id limit :limit)) u order by id limit :limit", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL"))
+    List<User> findByUsernameOrEmailLike(@Param("pattern") String pattern, @Param("after") long after, @Param("limit") int limit);
+
 }
@@ -1,9 +1,23 @@
 package com.jvezolles.api.user;
 
+import com.jvezolles.api.user.dto.UserDTO;
 import com.jvezolles.api.user.exception.*;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserBulkResult;
+import com.jvezolles.api.user.model.UserChangePosition;
+import com.jvezolles.api.user.model.UserChanges;
+import com.jvezolles.api.user.model.UserFields;
+import com.jvezolles.api.user.model.UserFilter;
+import com.jvezolles.api.user.model.UserSearchMatch;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.user.model.VersionedUser;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * User service
@@ -13,20 +27,99 @@ import java.util.List;
 public interface UserService {
 	
 	/**
-	 * Service to get all user's details
+	 * Service to get all user's details matching a filter, with only fields requested
+	 * @param filter the filter of users
+	 * @param fields the fields requested, others are null
 	 * @param page page number search
 	 * @param size size number of element search
-	 * @return list of user's information
+	 * @return slice of user's information, with next users availability
 	 */
-	List<User> getUsers(Integer page, Integer size);
+	Slice<UserDTO> getUsers(UserFilter filter, UserFields fields, Integer page, Integer size);
+
+	/**
+	 * Service to get versions of all users matching a filter, same users as their details
+	 * @param filter the filter of users
+	 * @param page page number search
+	 * @param size size number of element search
+	 * @return slice of versions of users, with next users availability
+	 */
+	Slice<UserVersion> getUserVersions(UserFilter filter, Integer page, Integer size);
+
+	/**
+	 * Service to get all user's details matching a filter with their versions, with only fields requested
+	 * @param filter the filter of users
+	 * @param fields the fields requested, others are null
+	 * @param page page number search
+	 * @param size size number of element search
+	 * @return slice of user's information with their versions, with next users availability
+	 */
+	Slice<VersionedUser> getVersionedUsers(UserFilter filter, UserFields fields, Integer page, Integer size);
+
+	/**
+	 * Service to count all users matching a filter
+	 * @param filter the filter of users
+	 * @param exact true to count exactly, false to accept an approximate count
+	 * @return the number of users
+	 */
+	long countUsers(UserFilter filter, boolean exact);
+
+	/**
+	 * Service to get user's details after a user, ordered by id
+	 * @param after the id of the last user already read, null for first users
+	 * @param size size number of element search, limited by configuration
+	 * @return window of user's information, with next users availability
+	 * @throws UserCursorException if size is not positive
+	 */
+	Window<User> getUsersAfter(Long after, Integer size) throws UserCursorException;
+
+	/**
+	 * Service to stream user's details matching a filter with only fields requested, one by one as read from database
+	 * @param filter the filter of users
+	 * @param fields the fields requested, others are null
+	 * @param action the action to perform on each user
+	 */
+	void streamUsers(UserFilter filter, UserFields fields, Consumer<UserDTO> action);
+
+	/**
+	 * Service to get changes of users after a position, ordered by sequence of change
+	 * @param since the position of changes already read, null to sync all users
+	 * @param size max number of changes, limited by configuration
+	 * @return changes of users, with position after them
+	 * @throws UserChangesExpiredException if changes after position are no longer available
+	 * @throws UserCursorException if size is not positive
+	 */
+	UserChanges getUserChanges(UserChangePosition since, Integer size) throws UserChangesExpiredException, UserCursorException;
+
+	/**
+	 * Service to give the next sequence of change to writes on users committed since the previous sequencing
+	 * @return the number of users and tombstones sequenced
+	 */
+	int sequenceUserChanges();
+
+	/**
+	 * Service to search users by username or email, ordered by id after a user
+	 * @param text the text searched, case insensitive
+	 * @param match the match of text, prefix if null
+	 * @param after the id of the last user already read, null for first users
+	 * @param size max number of users, limited by configuration
+	 * @return window of user's information, with next users availability
+	 * @throws UserSearchException if text searched or size is not valid
+	 */
+	Window<User> searchUsers(String text, UserSearchMatch match, Long after, Integer size) throws UserSearchException;
+
+	/**
+	 * Service to purge tombstones of users deleted, older than their time to live
+	 * @return the number of tombstones purged
+	 */
+	int purgeUserTombstones();
 	
 	/**
 	 * Service to get user's details
 	 * @param username the username to get details
-	 * @return user'information
+	 * @return user'information, with version
 	 * @throws UserNotFoundException if user doesn't exist
 	 */
-	User getUser(String username) throws UserNotFoundException;
+	VersionedUser getUser(String username) throws UserNotFoundException;
     
 	/**
 	 * Service to create user
@@ -36,28 +129,71 @@ public interface UserService {
 	 */
 	User createUser(User user) throws UserCreateException;
 
+    /**
+     * Service to create users in bulk
+     * @param users the user's details to create
+     * @return result of creation for each user, in the same order
+     */
+    List<UserBulkResult> createUsers(List<User> users);
+
+    /**
+     * Service to create users in bulk, already checked
+     * @param users the user's details to create, already checked
+     * @return result of creation for each user, in the same order
+     */
+    List<UserBulkResult> createCheckedUsers(List<User> users);
+
+    /**
+     * Service to create user asynchronously, written later by batch
+     * @param user the user's details to create
+     * @return the id of the creation
+     * @throws UserQueueFullException if too many users are pending
+     */
+    String createUserLater(User user) throws UserQueueFullException;
+
+    /**
+     * Service to get a creation of user asynchronously
+     * @param id the id of the creation
+     * @return the creation, done once user written
+     * @throws UserNotFoundException if creation doesn't exist or expired
+     */
+    CompletableFuture<UserBulkResult> getUserCreation(String id) throws UserNotFoundException;
+
     /**
      * Service to update user
      * @param user the user's details to update
+     * @param expected the version of user expected, null for any version
      * @return user'information for user updated
      * @throws UserUpdateException if creation fails
+     * @throws UserPreconditionFailedException if user is not in version expected
      */
-    User updateUser(User user) throws UserUpdateException;
+    User updateUser(User user, UserVersion expected) throws UserUpdateException, UserPreconditionFailedException;
 
     /**
      * Service to replace user
      * @param username the username to replace
      * @param user the user's details to replace
+     * @param expected the version of user expected, null for any version
      * @return user'information for user replaced
      * @throws UserReplaceException if creation fails
+     * @throws UserPreconditionFailedException if user is not in version expected
      */
-    User replaceUser(String username, User user) throws UserReplaceException;
+    User replaceUser(String username, User user, UserVersion expected) throws UserReplaceException, UserPreconditionFailedException;
     
 	/**
 	 * Service to delete user
 	 * @param username the username to delete
+	 * @param expected the version of user expected, null for any version
 	 * @throws UserDeleteException if deletion fails
+	 * @throws UserPreconditionFailedException if user is not in version expected
+	 */
+    void deleteUser(String username, UserVersion expected) throws UserDeleteException, UserPreconditionFailedException;
+
+	/**
+	 * Service to subscribe to writes on users
+	 * @param lastEventId the id of the last event received, null for new events only
+	 * @return the emitter of events, as server-sent events
 	 */
-    void deleteUser(String username) throws UserDeleteException;
+	SseEmitter subscribeUserEvents(Long lastEventId);
 
 }
@@ -1,19 +1,40 @@
 package com.jvezolles.api.user;
 
+import com.jvezolles.api.config.UserProperties;
+import com.jvezolles.api.user.dto.UserDTO;
 import com.jvezolles.api.user.exception.*;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserBulkResult;
+import com.jvezolles.api.user.model.UserChangePosition;
+import com.jvezolles.api.user.model.UserChangeSequence;
+import com.jvezolles.api.user.model.UserChanges;
+import com.jvezolles.api.user.model.UserEventType;
+import com.jvezolles.api.user.model.UserFields;
+import com.jvezolles.api.user.model.UserFilter;
+import com.jvezolles.api.user.model.UserSearchMatch;
+import com.jvezolles.api.user.model.UserTombstone;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.user.model.VersionedUser;
 import com.jvezolles.api.util.Constants;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.Clock;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * User service implementation
@@ -26,61 +47,413 @@ import java.util.Optional;
 public class UserServiceImpl implements UserService {
 
     /**
-     * Clock used for LocalDateTime
+     * Clock used for time of writes
      */
     private Clock clock;
 
+    /**
+     * UserEligibility used to check users
+     */
+    private UserEligibility userEligibility;
+
     /**
      * UserRepository used to persist user
      */
     private UserRepository userRepository;
 
     /**
-     * Service to get all user's details
+     * UserTombstoneRepository used to persist users deleted
+     */
+    private UserTombstoneRepository userTombstoneRepository;
+
+    /**
+     * UserChangeSequenceRepository used to sequence changes of users
+     */
+    private UserChangeSequenceRepository userChangeSequenceRepository;
+
+    /**
+     * TransactionTemplate used to insert users by batch
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * UserProperties used to size batches
+     */
+    private UserProperties userProperties;
+
+    /**
+     * UserCache used to get users, evicted on writes
+     */
+    private UserCache userCache;
+
+    /**
+     * UserWriteBehind used to create users asynchronously
+     */
+    private UserWriteBehind userWriteBehind;
+
+    /**
+     * UserGroupCommit used to create users concurrently in one transaction
+     */
+    private UserGroupCommit userGroupCommit;
+
+    /**
+     * UserEvents used to publish writes on users, once committed
+     */
+    private UserEvents userEvents;
+
+    /**
+     * Service to get all user's details matching a filter, with only fields requested
+     * Filter is built as a dynamic query with only criteria set, served by composite indexes on filtered columns,
+     * only columns of fields requested are selected
      *
-     * @return list of user's information
+     * @param filter the filter of users
+     * @param fields the fields requested, others are null
+     * @param page   page number search
+     * @param size   size number of element search
+     * @return slice of user's information, with next users availability
      */
     @Override
-    public List<User> getUsers(Integer page, Integer size) {
+    @Transactional(readOnly = true)
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "get-all"})
+    public Slice<UserDTO> getUsers(UserFilter filter, UserFields fields, Integer page, Integer size) {
 
-        // Creating page search
-        if (size != null) {
-            Pageable pageable = PageRequest.of(page != null ? page : 0, size);
+        // Country filtered whatever its case
+        UserFilter normalized = normalize(filter);
 
-            // Find all users for page
-            return userRepository.findAll(pageable).toList();
+        // Find users matching filter for page ordered by id, selecting only columns of fields requested
+        if (!fields.isAll()) {
+            return userRepository.findAllDtoBy(fields, normalized, size != null ? PageRequest.of(page != null ? page : 0, size) : Pageable.unpaged());
+        }
 
-        } else {
-            // Find all users
-            return userRepository.findAll();
+        // Find users for page, directly as DTO, without count, all users if no size
+        if (normalized.isEmpty()) {
+            return userRepository.findAllDtoBy(size != null ? PageRequest.of(page != null ? page : 0, size) : Pageable.unpaged());
+        }
+
+        // Else find users matching filter for page ordered by id, directly as DTO, without count
+        Sort sort = UserSpecifications.sort(normalized);
+        Pageable pageable = size != null ? PageRequest.of(page != null ? page : 0, size, sort) : Pageable.unpaged(sort);
+        return userRepository.findBy(UserSpecifications.of(normalized), query -> query.as(UserDTO.class).slice(pageable));
+    }
+
+    /**
+     * Service to get versions of all users matching a filter, same users as their details
+     * Only id and version are selected, to compare a page with the one already known by client before reading its users
+     *
+     * @param filter the filter of users
+     * @param page   page number search
+     * @param size   size number of element search
+     * @return slice of versions of users, with next users availability
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "get-versions"})
+    public Slice<UserVersion> getUserVersions(UserFilter filter, Integer page, Integer size) {
+        return userRepository.findAllVersionBy(normalize(filter), size != null ? PageRequest.of(page != null ? page : 0, size) : Pageable.unpaged());
+    }
+
+    /**
+     * Service to get all user's details matching a filter with their versions, with only fields requested
+     * Only columns of fields requested, id and version are selected, to compute the ETag of a page from the users read
+     *
+     * @param filter the filter of users
+     * @param fields the fields requested, others are null
+     * @param page   page number search
+     * @param size   size number of element search
+     * @return slice of user's information with their versions, with next users availability
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "get-all"})
+    public Slice<VersionedUser> getVersionedUsers(UserFilter filter, UserFields fields, Integer page, Integer size) {
+        return userRepository.findAllVersionedBy(fields, normalize(filter), size != null ? PageRequest.of(page != null ? page : 0, size) : Pageable.unpaged());
+    }
+
+    /**
+     * Service to count all users matching a filter
+     *
+     * @param filter the filter of users
+     * @param exact  true to count exactly, false to accept an approximate count
+     * @return the number of users
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "count"})
+    public long countUsers(UserFilter filter, boolean exact) {
+
+        // Count users matching filter exactly, no statistics by filter
+        if (!filter.isEmpty()) {
+            return userRepository.count(UserSpecifications.of(normalize(filter)));
+        }
+
+        // Count exactly only if requested, else from database statistics if available
+        return exact ? userRepository.count() : userRepository.countApproximately();
+    }
+
+    /**
+     * Service to get user's details after a user, ordered by id
+     *
+     * @param after the id of the last user already read, null for first users
+     * @param size  size number of element search, limited by configuration
+     * @return window of user's information, with next users availability
+     * @throws UserCursorException if size is not positive
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "get-after"})
+    public Window<User> getUsersAfter(Long after, Integer size) throws UserCursorException {
+
+        // If size not positive, throw error cursor not valid
+        if (size != null && size < 1) {
+            throw new UserCursorException("User cursor is not valid, size must be positive");
+        }
+
+        // Creating keyset position on id, first users if no user already read
+        ScrollPosition position = after != null ? ScrollPosition.forward(Map.of("id", after)) : ScrollPosition.keyset();
+
+        // Find users after position, up to max size
+        int maxSize = userProperties.getCursor().getMaxSize();
+        return userRepository.findAllByOrderByIdAsc(position, Limit.of(size != null ? Math.min(size, maxSize) : Math.min(Constants.DEFAULT_CURSOR_SIZE, maxSize)));
+    }
+
+    /**
+     * Service to stream user's details matching a filter with only fields requested, one by one as read from database
+     * Only columns of fields requested are selected, as DTO, so no user is kept in persistence context
+     *
+     * @param filter the filter of users
+     * @param fields the fields requested, others are null
+     * @param action the action to perform on each user
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "stream"})
+    public void streamUsers(UserFilter filter, UserFields fields, Consumer<UserDTO> action) {
+
+        // Read users matching filter from database cursor
+        try (Stream<UserDTO> users = userRepository.streamDtoBy(fields, normalize(filter))) {
+            users.forEach(action);
+        }
+    }
+
+    /**
+     * Service to get changes of users after a position, ordered by sequence of change
+     * Only writes already sequenced are read, users and tombstones from their keyset position on their index on sequence,
+     * so cost depends on the number of changes, not on the number of users, and a sync never writes nor waits for a lock
+     *
+     * @param since the position of changes already read, null to sync all users
+     * @param size  max number of changes, limited by configuration
+     * @return changes of users, with position after them
+     * @throws UserChangesExpiredException if changes after position are no longer available
+     * @throws UserCursorException         if size is not positive
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "get-changes"})
+    public UserChanges getUserChanges(UserChangePosition since, Integer size) throws UserChangesExpiredException, UserCursorException {
+
+        UserProperties.Changes properties = userProperties.getChanges();
+
+        // If size not positive, throw error changes not valid
+        if (size != null && size < 1) {
+            throw new UserCursorException("User changes are not valid, size must be positive");
+        }
+
+        // Changes are read up to the last sequence given, committed with the writes it sequenced
+        UserChangeSequence sequence = userChangeSequenceRepository.findById(UserChangeSequence.ID)
+                .orElseThrow(() -> new IllegalStateException("User change sequence not found"));
+        long until = sequence.getLastValue();
+
+        // Sync all users if no position, users deleted until now are not found
+        UserChangePosition position = since != null ? since : UserChangePosition.first(until);
+
+        // If tombstones after position may be purged, throw error changes expired
+        if (position.isExpired(sequence.getPurgedValue())) {
+            throw new UserChangesExpiredException("User changes expired, all users must be synced again");
+        }
+
+        // Find users and tombstones after position
+        Limit limit = Limit.of(size != null ? Math.min(size, properties.getMaxSize()) : properties.getMaxSize());
+        Window<User> usersWindow = userRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(until, position.userSequence() != null
+                ? ScrollPosition.forward(Map.of("changeSequence", position.userSequence(), "id", position.userId()))
+                : ScrollPosition.keyset(), limit);
+        Window<UserTombstone> tombstonesWindow = userTombstoneRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(until,
+                ScrollPosition.forward(Map.of("changeSequence", position.tombstoneSequence(), "id", position.tombstoneId())), limit);
+        List<User> users = usersWindow.getContent();
+        List<UserTombstone> tombstones = tombstonesWindow.getContent();
+
+        // Merge users and tombstones in order of sequence up to limit, the last change of each username is kept,
+        // a tombstone first in the same sequence, as a user still found was written after
+        Map<String, User> usersChanged = new LinkedHashMap<>();
+        Set<String> usersDeleted = new LinkedHashSet<>();
+        int u = 0;
+        int t = 0;
+        while (u + t < limit.max() && (u < users.size() || t < tombstones.size())) {
+            if (t == tombstones.size() || (u < users.size() && users.get(u).getChangeSequence() < tombstones.get(t).getChangeSequence())) {
+                User user = users.get(u++);
+                usersDeleted.remove(user.getUsername());
+                usersChanged.put(user.getUsername(), user);
+                position = position.after(user);
+
+            } else {
+                UserTombstone tombstone = tombstones.get(t++);
+                usersChanged.remove(tombstone.getUsername());
+                usersDeleted.add(tombstone.getUsername());
+                position = position.after(tombstone);
+            }
+        }
+
+        // If all tombstones up to sequence are read, move after them, even without deletion since
+        if (t == tombstones.size() && !tombstonesWindow.hasNext()) {
+            position = position.afterTombstones(until);
+        }
+
+        // More changes if some were not merged, or not found after limit
+        boolean hasMore = u < users.size() || t < tombstones.size() || usersWindow.hasNext() || tombstonesWindow.hasNext();
+
+        return new UserChanges(List.copyOf(usersChanged.values()), List.copyOf(usersDeleted), position, hasMore);
+    }
+
+    /**
+     * Service to search users by username or email, ordered by id after a user
+     * Text is matched as prefix, or inside usernames and emails, with one query on their indexes,
+     * one more user than size is read to know if next users exist
+     *
+     * @param text  the text searched, case insensitive
+     * @param match the match of text, prefix if null
+     * @param after the id of the last user already read, null for first users
+     * @param size  max number of users, limited by configuration
+     * @return window of user's information, with next users availability
+     * @throws UserSearchException if text searched or size is not valid
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "search"})
+    public Window<User> searchUsers(String text, UserSearchMatch match, Long after, Integer size) throws UserSearchException {
+
+        UserProperties.Search properties = userProperties.getSearch();
+
+        // If no text, or text too short to be searched inside, throw error search not valid
+        if (text == null || text.isBlank()) {
+            throw new UserSearchException("User search is not valid, text is empty");
+        }
+        boolean contains = match == UserSearchMatch.CONTAINS;
+        if (contains && text.strip().length() < properties.getContainsMinLength()) {
+            throw new UserSearchException("User search is not valid, text must have at least " + properties.getContainsMinLength() + " characters");
+        }
+
+        // If size not positive, throw error search not valid
+        if (size != null && size < 1) {
+            throw new UserSearchException("User search is not valid, size must be positive");
+        }
+
+        // Creating pattern from text in lower case, with wildcards escaped
+        String escaped = text.strip().toLowerCase(Locale.ROOT).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        String pattern = contains ? "%" + escaped + "%" : escaped + "%";
+
+        // Find users after id, one more than size
+        int limit = size != null ? Math.min(size, properties.getMaxSize()) : Math.min(Constants.DEFAULT_CURSOR_SIZE, properties.getMaxSize());
+        List<User> users = userRepository.findByUsernameOrEmailLike(pattern, after != null ? after : Long.MIN_VALUE, limit + 1);
+
+        // Keep users up to size, next users exist if one more user found
+        List<User> content = users.subList(0, Math.min(limit, users.size()));
+        return Window.from(content, i -> ScrollPosition.forward(Map.of("id", content.get(i).getId())), users.size() > limit);
+    }
+
+    /**
+     * Service to give the next sequence of change to writes on users committed since the previous sequencing, at fixed delay
+     * Sequence is locked only if some writes are not sequenced yet, so nodes sequence writes one at a time, in order of their commit,
+     * and a write not committed yet is sequenced later, so is never ordered before a position already returned
+     *
+     * @return the number of users and tombstones sequenced
+     */
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${jvezolles.user.changes.sequence-interval:1s}")
+    public int sequenceUserChanges() {
+
+        // Nothing to sequence, without lock nor write
+        if (!userRepository.existsByChangeSequenceIsNull() && !userTombstoneRepository.existsByChangeSequenceIsNull()) {
+            return 0;
+        }
+
+        return sequenceChanges(lockSequence());
+    }
+
+    /**
+     * Service to purge tombstones of users deleted, older than their time to live, every day
+     *
+     * @return the number of tombstones purged
+     */
+    @Override
+    @Transactional
+    @Scheduled(cron = "0 30 0 * * *")
+    public int purgeUserTombstones() {
+
+        // Sequence writes committed since the previous sequencing, so each tombstone purged has its sequence
+        UserChangeSequence sequence = lockSequence();
+        sequenceChanges(sequence);
+        Instant before = now().minus(userProperties.getChanges().getTombstoneTimeToLive());
+
+        // Expire positions up to the last sequence of tombstones purged, then delete them with one statement
+        Long purged = userTombstoneRepository.findMaxChangeSequenceByDeletedAtBefore(before);
+        if (purged != null && purged > sequence.getPurgedValue()) {
+            sequence.setPurgedValue(purged);
+        }
+        return userTombstoneRepository.deleteByDeletedAtBefore(before);
+    }
+
+    private UserChangeSequence lockSequence() {
+
+        // Lock sequence until commit, so writes are sequenced one at a time, in order of their commit
+        return userChangeSequenceRepository.findLockedById(UserChangeSequence.ID)
+                .orElseThrow(() -> new IllegalStateException("User change sequence not found"));
+    }
+
+    private int sequenceChanges(UserChangeSequence sequence) {
+
+        // Give next sequence to users and tombstones written and committed since, only if any
+        long next = sequence.getLastValue() + 1;
+        int changes = userRepository.sequenceChanges(next) + userTombstoneRepository.sequenceChanges(next);
+        if (changes > 0) {
+            sequence.setLastValue(next);
         }
+
+        return changes;
     }
 
     /**
      * Service to get user's details
      *
      * @param username the username to get detail
-     * @return user'information
+     * @return user'information, with version
      * @throws UserNotFoundException if user doesn't exist
      */
     @Override
-    public User getUser(String username) throws UserNotFoundException {
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "get"})
+    public VersionedUser getUser(String username) throws UserNotFoundException {
 
-        // Find user if exists, else throw error user not found
-        return userRepository.findByUsername(username.toLowerCase())
+        // Find user from cache, loaded by natural id if not cached, else throw error user not found
+        return userCache.get(username.toLowerCase())
                 .orElseThrow(() -> new UserNotFoundException("User not found"));
     }
 
     /**
      * Service to create user
+     * If group commit is enabled, user is written in one transaction with users created concurrently
      *
      * @param user the user's details to create
      * @return user'information for user created
      * @throws UserCreateException if creation fails
      */
     @Override
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "create"})
     public User createUser(User user) throws UserCreateException {
 
+        // Create user with users created concurrently, if enabled, checked with them
+        if (userProperties.getGroupCommit().isEnabled()) {
+            return userGroupCommit.create(user);
+        }
+
         // Check if user is valid
         checkUser(user);
 
@@ -91,11 +464,20 @@ public class UserServiceImpl implements UserService {
         if (optUserFound.isEmpty()) {
 
             try {
-                // Persist new user
-                return userRepository.save(user);
+                // Persist new user with time of write, and evict user not found from cache
+                user.setUpdatedAt(now());
+                User userCreated = userRepository.save(user);
+                userCache.evict(userCreated.getUsername());
+                userEvents.publish(UserEventType.CREATED, userCreated.getUsername(), userCreated);
+
+                return userCreated;
 
             } catch (IllegalArgumentException _) {
                 throw new UserCreateException("User cannot be created");
+
+            } catch (DataIntegrityViolationException _) {
+                // Unique index on username violated by a concurrent creation
+                throw new UserCreateException("User cannot be created, user already exists");
             }
 
         } else {
@@ -104,41 +486,266 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    /**
+     * Service to create users in bulk
+     * Users are checked in parallel, existing usernames are found with one query by batch,
+     * then users are inserted with JDBC batches, in one transaction by batch
+     *
+     * @param users the user's details to create
+     * @return result of creation for each user, in the same order
+     */
+    @Override
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "create-all"})
+    public List<UserBulkResult> createUsers(List<User> users) {
+
+        UserBulkResult[] results = new UserBulkResult[users.size()];
+
+        // Check users in parallel
+        IntStream.range(0, users.size()).parallel().forEach(i -> {
+            try {
+                checkUser(users.get(i));
+
+            } catch (UserNotEligibleException e) {
+                results[i] = UserBulkResult.failed(e);
+            }
+        });
+
+        return createAll(users, results);
+    }
+
+    /**
+     * Service to create users in bulk, already checked
+     * Users checked when queued are written without being checked again
+     *
+     * @param users the user's details to create, already checked
+     * @return result of creation for each user, in the same order
+     */
+    @Override
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "create-all-checked"})
+    public List<UserBulkResult> createCheckedUsers(List<User> users) {
+        return createAll(users, new UserBulkResult[users.size()]);
+    }
+
+    private List<UserBulkResult> createAll(List<User> users, UserBulkResult[] results) {
+
+        // Keep only first occurrence of each username
+        Map<String, Integer> indexesByUsername = new LinkedHashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            if (results[i] == null && indexesByUsername.putIfAbsent(users.get(i).getUsername(), i) != null) {
+                results[i] = UserBulkResult.failed(new UserCreateException("User cannot be created, user already exists"));
+            }
+        }
+
+        // Create users by batch
+        List<Integer> indexes = new ArrayList<>(indexesByUsername.values());
+        for (int from = 0; from < indexes.size(); from += userProperties.getBatchSize()) {
+            createUsersBatch(users, indexes.subList(from, Math.min(from + userProperties.getBatchSize(), indexes.size())), results);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Service to create user asynchronously
+     * User is checked, then queued to be written later by batch
+     *
+     * @param user the user's details to create
+     * @return the id of the creation
+     * @throws UserQueueFullException if too many users are pending
+     */
     @Override
-    public User updateUser(User user) throws UserUpdateException {
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "create-later"})
+    public String createUserLater(User user) throws UserQueueFullException {
 
         // Check if user is valid
         checkUser(user);
 
-        // Find user by username
-        Optional<User> optUserFound = userRepository.findByUsername(user.getUsername().toLowerCase());
+        // Queue user to be written later
+        return userWriteBehind.submit(user);
+    }
 
-        // If user exist
-        if (optUserFound.isPresent()) {
+    /**
+     * Service to get a creation of user asynchronously
+     *
+     * @param id the id of the creation
+     * @return the creation, done once user written
+     * @throws UserNotFoundException if creation doesn't exist or expired
+     */
+    @Override
+    public CompletableFuture<UserBulkResult> getUserCreation(String id) throws UserNotFoundException {
 
-            try {
-                // Set user id to update
-                user.setId(optUserFound.get().getId());
+        // Find creation, else throw error creation not found
+        return userWriteBehind.get(id)
+                .orElseThrow(() -> new UserNotFoundException("User creation not found"));
+    }
 
-                // Persist updated user
-                return userRepository.save(user);
+    private void createUsersBatch(List<User> users, List<Integer> indexes, UserBulkResult[] results) {
 
-            } catch (IllegalArgumentException _) {
-                throw new UserUpdateException("User cannot be updated");
+        // Find existing users of batch
+        Set<String> usernamesFound = userRepository.findUsernamesIn(indexes.stream().map(i -> users.get(i).getUsername()).toList());
+
+        List<Integer> indexesToCreate = new ArrayList<>(indexes.size());
+        for (Integer i : indexes) {
+            if (usernamesFound.contains(users.get(i).getUsername())) {
+                results[i] = UserBulkResult.failed(new UserCreateException("User cannot be created, user already exists"));
+            } else {
+                indexesToCreate.add(i);
             }
+        }
 
-        } else {
-            // Throw error user not exists
+        try {
+            // Persist new users in one transaction, flushed as JDBC batch at commit,
+            // with the same time of write for all users
+            transactionTemplate.executeWithoutResult(_ -> {
+                Instant now = now();
+                indexesToCreate.forEach(i -> users.get(i).setUpdatedAt(now));
+                userRepository.saveAll(indexesToCreate.stream().map(users::get).toList());
+            });
+            indexesToCreate.forEach(i -> {
+                results[i] = UserBulkResult.created(users.get(i));
+                userCache.evict(users.get(i).getUsername());
+                userEvents.publish(UserEventType.CREATED, users.get(i).getUsername(), users.get(i));
+            });
+
+        } catch (DataAccessException _) {
+
+            // Reset id and version set by rolled back insert, so each user is persisted again as new
+            indexesToCreate.forEach(i -> {
+                users.get(i).setId(null);
+                users.get(i).setVersion(null);
+            });
+
+            // If several users, create each user alone, so one user failing doesn't fail others
+            if (indexesToCreate.size() > 1) {
+                indexesToCreate.forEach(i -> createUsersBatch(users, List.of(i), results));
+            } else {
+                indexesToCreate.forEach(i -> results[i] = UserBulkResult.failed(new UserCreateException("User cannot be created")));
+            }
+        }
+    }
+
+    /**
+     * Service to update user
+     * User is updated by username with one update statement, without reading it,
+     * checking version in the same statement if a version is expected
+     *
+     * @param user     the user's details to update
+     * @param expected the version of user expected, null for any version
+     * @return user'information for user updated, with new version if a version was expected
+     * @throws UserUpdateException             if update fails
+     * @throws UserPreconditionFailedException if user is not in version expected
+     */
+    @Override
+    @Transactional
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "update"})
+    public User updateUser(User user, UserVersion expected) throws UserUpdateException, UserPreconditionFailedException {
+
+        // Check if user is valid
+        checkUser(user);
+
+        // Set time of write
+        user.setUpdatedAt(now());
+
+        int usersUpdated;
+        Long id;
+        try {
+            // Find id of user written, to evict only this user from cache
+            id = idOf(user.getUsername(), expected);
+
+            // Update user by username, in version expected if any, none if no user has this username
+            usersUpdated = id == null ? 0 : expected != null ? userRepository.updateByUsernameAndVersion(user, expected) : userRepository.updateByUsername(user);
+
+        } catch (IllegalArgumentException _) {
+            throw new UserUpdateException("User cannot be updated");
+        }
+
+        // If no user updated, throw error user not in version expected, or user not exists
+        if (usersUpdated == 0) {
+            if (expected != null) {
+                throw new UserPreconditionFailedException("User cannot be updated, user is not in version expected");
+            }
             throw new UserUpdateException("User cannot be updated, user not exists");
         }
+
+        // Evict user from caches, once updated
+        userRepository.evictByNaturalId(user.getUsername(), id);
+        userCache.evict(user.getUsername());
+
+        // Set new version, known only if a version was expected
+        if (expected != null) {
+            user.setId(expected.id());
+            user.setVersion(expected.version() + 1);
+        }
+
+        // Publish user updated, once committed
+        userEvents.publish(UserEventType.UPDATED, user.getUsername(), user);
+
+        return user;
     }
 
+    /**
+     * Service to replace user, in one transaction
+     * User is updated in place if username is unchanged, else deleted then created
+     *
+     * @param username the username to replace
+     * @param user     the user's details to replace
+     * @param expected the version of user expected, null for any version
+     * @return user'information for user replaced, with new version if known
+     * @throws UserReplaceException            if replacement fails
+     * @throws UserPreconditionFailedException if user is not in version expected
+     */
     @Override
-    public User replaceUser(String username, User user) throws UserReplaceException {
+    @Transactional
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "replace"})
+    public User replaceUser(String username, User user, UserVersion expected) throws UserReplaceException, UserPreconditionFailedException {
+
+        String usernameToReplace = username.toLowerCase();
 
         try {
-            deleteUser(username);
-            return createUser(user);
+            // Check if user is valid, and set time of write
+            checkUser(user);
+            user.setUpdatedAt(now());
+
+            // Evict users replaced and replacing from caches, once replaced, by id of user replaced
+            Long id = idOf(usernameToReplace, expected);
+            userRepository.evictByNaturalId(usernameToReplace, id);
+            userCache.evict(usernameToReplace);
+            userCache.evict(user.getUsername());
+
+            // If username is unchanged, update user in place, in version expected if any
+            if (user.getUsername().equals(usernameToReplace)) {
+
+                int usersUpdated = id == null ? 0 : expected != null ? userRepository.updateByUsernameAndVersion(user, expected) : userRepository.updateByUsername(user);
+                checkReplaced(usersUpdated, expected);
+
+                // Set new version, known only if a version was expected
+                if (expected != null) {
+                    user.setId(expected.id());
+                    user.setVersion(expected.version() + 1);
+                }
+
+                // Publish user replaced, once committed
+                userEvents.publish(UserEventType.REPLACED, usernameToReplace, user);
+
+                return user;
+            }
+
+            // Else delete user, in version expected if any, then create it with new username
+            int usersDeleted = id == null ? 0 : expected != null ? userRepository.deleteByUsernameAndVersion(usernameToReplace, expected) : userRepository.deleteByUsername(usernameToReplace);
+            checkReplaced(usersDeleted, expected);
+            userTombstoneRepository.save(new UserTombstone(null, usernameToReplace, user.getUpdatedAt(), null));
+
+            // Persist user, flushed to detect an existing username in transaction, and publish user replaced, once committed
+            User userReplaced = userRepository.saveAndFlush(user);
+            userEvents.publish(UserEventType.REPLACED, usernameToReplace, userReplaced);
+
+            return userReplaced;
+
+        } catch (UserReplaceException | UserPreconditionFailedException e) {
+            throw e;
+
+        } catch (DataIntegrityViolationException _) {
+            throw new UserReplaceException("User cannot be replaced, user already exists");
 
         } catch (Exception e) {
             throw new UserReplaceException("User cannot be replaced, " + e.getMessage());
@@ -147,39 +754,106 @@ public class UserServiceImpl implements UserService {
 
     /**
      * Service to delete user
+     * User is deleted by username with one delete statement, without reading it
      *
      * @param username the username to delete
-     * @throws UserDeleteException if deletion fails
+     * @param expected the version of user expected, null for any version
+     * @throws UserDeleteException             if deletion fails
+     * @throws UserPreconditionFailedException if user is not in version expected
      */
     @Override
-    public void deleteUser(String username) throws UserDeleteException {
-
-        // Find user if exists, else throw error user does not exist
-        User userFound = userRepository.findByUsername(username.toLowerCase())
-                .orElseThrow(() -> new UserDeleteException("User cannot be deleted, user does not exist"));
+    @Transactional
+    @Timed(value = Constants.USER_SERVICE_TIMER, extraTags = {"operation", "delete"})
+    public void deleteUser(String username, UserVersion expected) throws UserDeleteException, UserPreconditionFailedException {
 
+        int usersDeleted;
+        Long id;
         try {
-            // Delete user
-            userRepository.delete(userFound);
+            // Find id of user deleted, to evict only this user from cache
+            id = idOf(username.toLowerCase(), expected);
+
+            // Delete user by username, in version expected if any, none if no user has this username
+            usersDeleted = id == null ? 0 : expected != null
+                    ? userRepository.deleteByUsernameAndVersion(username.toLowerCase(), expected)
+                    : userRepository.deleteByUsername(username.toLowerCase());
 
         } catch (IllegalArgumentException _) {
             throw new UserDeleteException("User cannot be deleted");
         }
+
+        // If no user deleted in version expected, throw error precondition failed
+        if (usersDeleted == 0 && expected != null) {
+            throw new UserPreconditionFailedException("User cannot be deleted, user is not in version expected");
+        }
+
+        // If no user deleted, throw error user does not exist
+        if (usersDeleted == 0) {
+            throw new UserDeleteException("User cannot be deleted, user does not exist");
+        }
+
+        // Write tombstone of user deleted, to sync deletion
+        userTombstoneRepository.save(new UserTombstone(null, username.toLowerCase(), now(), null));
+
+        // Evict user from caches, and publish user deleted, once committed
+        userRepository.evictByNaturalId(username.toLowerCase(), id);
+        userCache.evict(username.toLowerCase());
+        userEvents.publish(UserEventType.DELETED, username.toLowerCase(), null);
+    }
+
+    /**
+     * Service to subscribe to writes on users
+     *
+     * @param lastEventId the id of the last event received, null for new events only
+     * @return the emitter of events, as server-sent events
+     */
+    @Override
+    public SseEmitter subscribeUserEvents(Long lastEventId) {
+
+        // Subscribe, resuming after last event received if any
+        return userEvents.subscribe(lastEventId);
+    }
+
+    private Instant now() {
+
+        // Time truncated to precision of database
+        return clock.instant().truncatedTo(ChronoUnit.MICROS);
     }
 
-    private void checkUser(User user) throws UserNotFrenchAdultException {
+    private Long idOf(String username, UserVersion expected) {
 
-        // Convert dates to local date time
-        LocalDateTime now = LocalDateTime.now(clock);
-        LocalDateTime birthdate = user.getBirthdate().toInstant().atZone(ZoneOffset.UTC).toLocalDateTime();
+        // Id known from version expected, else found by username, locking user until written
+        return expected != null ? Long.valueOf(expected.id()) : userRepository.findIdByNaturalId(username).orElse(null);
+    }
+
+    private void checkReplaced(int usersReplaced, UserVersion expected) throws UserReplaceException, UserPreconditionFailedException {
 
-        // If user is not adult French, throw error user cannot be created, user must be adult French
-        if (ChronoUnit.YEARS.between(birthdate, now) < 18 || !Constants.FRANCE.equalsIgnoreCase(user.getCountry())) {
-            throw new UserNotFrenchAdultException("User must be adult French");
+        // If no user replaced in version expected, throw error precondition failed
+        if (usersReplaced == 0 && expected != null) {
+            throw new UserPreconditionFailedException("User cannot be replaced, user is not in version expected");
         }
 
-        // Format username to lower case
+        // If no user replaced, throw error user does not exist
+        if (usersReplaced == 0) {
+            throw new UserReplaceException("User cannot be replaced, user does not exist");
+        }
+    }
+
+    private void checkUser(User user) throws UserNotEligibleException {
+
+        // If user is not adult in a country eligible, throw error user not eligible, with the age of majority required
+        if (!userEligibility.isEligible(user.getCountry(), user.getBirthdate())) {
+            throw new UserNotEligibleException("User must be " + userEligibility.describe(user.getCountry()));
+        }
+
+        // Format username to lower case, and country to its name configured
         user.setUsername(user.getUsername().toLowerCase());
+        user.setCountry(userEligibility.normalize(user.getCountry()));
+    }
+
+    private UserFilter normalize(UserFilter filter) {
+
+        // Country filtered whatever its case, as users are written with its name configured
+        return filter.country() != null ? filter.withCountry(userEligibility.normalize(filter.country())) : filter;
     }
 
 }
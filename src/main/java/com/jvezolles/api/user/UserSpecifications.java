@@ -0,0 +1,73 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserFilter;
+import jakarta.persistence.criteria.Predicate;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * User specifications
+ * Used to build the query of a filter of users, with only criteria set, so equalities come first for composite indexes
+ *
+ * @author Vezolles
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class UserSpecifications {
+
+    /**
+     * Build the specification of a filter of users
+     *
+     * @param filter the filter of users
+     * @return the specification, matching users with every criterion set
+     */
+    public static Specification<User> of(UserFilter filter) {
+
+        return (root, query, builder) -> {
+            List<Predicate> predicates = new ArrayList<>(4);
+
+            // Equalities on country and gender, then range on birthdate
+            if (filter.country() != null) {
+                predicates.add(builder.equal(root.get("country"), filter.country()));
+            }
+            if (filter.gender() != null) {
+                predicates.add(builder.equal(root.get("gender"), filter.gender()));
+            }
+            if (filter.birthdateFrom() != null) {
+                predicates.add(builder.greaterThanOrEqualTo(root.get("birthdate"), filter.birthdateFrom()));
+            }
+            if (filter.birthdateTo() != null) {
+                predicates.add(builder.lessThanOrEqualTo(root.get("birthdate"), filter.birthdateTo()));
+            }
+
+            return builder.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Build the order of users matching a filter, by id
+     * Columns of equalities set come first, constant so users stay ordered by id, and indexes on them then id are read in order without sort
+     *
+     * @param filter the filter of users
+     * @return the order of users
+     */
+    public static Sort sort(UserFilter filter) {
+
+        List<String> properties = new ArrayList<>(3);
+        if (filter.country() != null) {
+            properties.add("country");
+        }
+        if (filter.gender() != null) {
+            properties.add("gender");
+        }
+        properties.add("id");
+
+        return Sort.by(properties.toArray(String[]::new));
+    }
+
+}
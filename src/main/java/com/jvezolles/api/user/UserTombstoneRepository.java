@@ -0,0 +1,78 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.model.UserTombstone;
+import com.jvezolles.api.util.Constants;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+/**
+ * User tombstone repository
+ * Used for persistance of UserTombstone entity
+ *
+ * @author Vezolles
+ */
+@Repository
+public interface UserTombstoneRepository extends JpaRepository<UserTombstone, Long> {
+
+    /**
+     * Find tombstones ordered by sequence of change then id from a keyset position in database, up to a sequence
+     * Seek on index on sequence of change then id, tombstones not sequenced yet are not found
+     *
+     * @param sequence the max sequence of change, included
+     * @param position the keyset position on sequence of change and id to start after
+     * @param limit    the max number of tombstones to find
+     * @return a window of tombstones, with next tombstones availability
+     */
+    Window<UserTombstone> findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(long sequence, ScrollPosition position, Limit limit);
+
+    /**
+     * Find if some tombstones are written and committed since last sequenced in database
+     * Seek on index on sequence of change, which keeps tombstones not sequenced yet
+     *
+     * @return true if some tombstones are not sequenced yet
+     */
+    boolean existsByChangeSequenceIsNull();
+
+    /**
+     * Set sequence of change of tombstones written and committed since last sequenced in database, with one native update statement
+     * No second-level cache region is cleared, as tombstones are never cached
+     *
+     * @param sequence the sequence of change to set
+     * @return the number of tombstones sequenced
+     */
+    @Modifying
+    @Query(value = "update user_tombstones set change_sequence = :sequence where change_sequence is null", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = Constants.USER_NO_QUERY_SPACE))
+    int sequenceChanges(@Param("sequence") long sequence);
+
+    /**
+     * Find the max sequence of change of tombstones older than a time in database
+     *
+     * @param before the time of deletion before which tombstones are found
+     * @return the max sequence of change, null if no tombstone
+     */
+    @Query("select max(t.changeSequence) from UserTombstone t where t.deletedAt < :before")
+    Long findMaxChangeSequenceByDeletedAtBefore(@Param("before") Instant before);
+
+    /**
+     * Delete tombstones older than a time in database, with one delete statement
+     *
+     * @param before the time of deletion before which tombstones are deleted
+     * @return the number of tombstones deleted
+     */
+    @Modifying
+    @Query("delete from UserTombstone t where t.deletedAt < :before")
+    int deleteByDeletedAtBefore(@Param("before") Instant before);
+
+}
@@ -0,0 +1,258 @@
+package com.jvezolles.api.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jvezolles.api.config.IdProperties;
+import com.jvezolles.api.config.UserProperties;
+import com.jvezolles.api.user.exception.UserCreateException;
+import com.jvezolles.api.user.exception.UserQueueFullException;
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserBulkResult;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * User write-behind
+ * Users created asynchronously wait in a bounded queue, drained by a background writer in batched transactions
+ * The creation of each user is kept for a while, to be read by the client
+ * Creations are kept in memory of the node which accepted them, so their id starts with its node id, to be routed to it
+ *
+ * @author Vezolles
+ */
+@Slf4j
+@Component
+public class UserWriteBehind {
+
+    /**
+     * Max time waiting for a user in queue, before checking if writer is stopped
+     */
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    /**
+     * Queue of users pending
+     */
+    private final BlockingQueue<Pending> queue;
+
+    /**
+     * Creations by id, done once user written
+     */
+    private final Cache<String, CompletableFuture<UserBulkResult>> creations;
+
+    /**
+     * UserService used to write users, by batch
+     */
+    private final UserService userService;
+
+    /**
+     * Node id of the instance, prefix of ids of creations
+     */
+    private final int node;
+
+    /**
+     * Write-behind configuration
+     */
+    private final UserProperties.WriteBehind properties;
+
+    /**
+     * Timer of flushes
+     */
+    private final Timer flushTimer;
+
+    /**
+     * Counter of users rejected
+     */
+    private final Counter rejectedCounter;
+
+    /**
+     * Background writer
+     */
+    private Thread writer;
+
+    /**
+     * False once stopped, pending users are still written
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Lock of running, shared by users queued and exclusive to stop, so no user is queued once stopped
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Default constructor for UserWriteBehind
+     *
+     * @param userService    the user service, resolved lazily as it submits users here
+     * @param userProperties the user properties, with write-behind configuration
+     * @param idProperties   the id properties, with node id
+     * @param meterRegistry  the registry of meters
+     */
+    public UserWriteBehind(@Lazy UserService userService, UserProperties userProperties, IdProperties idProperties, MeterRegistry meterRegistry) {
+
+        this.userService = userService;
+        this.node = idProperties.getNode();
+        this.properties = userProperties.getWriteBehind();
+
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.creations = Caffeine.newBuilder()
+                .maximumSize(properties.getStatusMaxSize())
+                .expireAfterWrite(properties.getStatusTimeToLive())
+                .build();
+
+        // Bind queue depth, flush latency and users rejected as metrics
+        Gauge.builder(Constants.USER_WRITE_BEHIND_QUEUE, queue, BlockingQueue::size).register(meterRegistry);
+        this.flushTimer = Timer.builder(Constants.USER_WRITE_BEHIND_FLUSH).register(meterRegistry);
+        this.rejectedCounter = Counter.builder(Constants.USER_WRITE_BEHIND_REJECTED).register(meterRegistry);
+    }
+
+    /**
+     * Start background writer
+     */
+    @PostConstruct
+    public void start() {
+        writer = Thread.ofPlatform().name("user-write-behind").daemon().start(this::drain);
+    }
+
+    /**
+     * Stop accepting users, and wait for pending users to be written
+     * Users still pending after shutdown timeout are failed, so no creation stays pending
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+
+        // No user queued once stopped, waiting for users being queued
+        lock.writeLock().lock();
+        try {
+            running = false;
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (writer != null && !writer.join(properties.getShutdownTimeout())) {
+            log.warn("Write-behind stopped with {} users still pending", queue.size());
+        }
+
+        // Fail users not written in time
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(pending -> pending.creation().complete(UserBulkResult.failed(new UserCreateException("User cannot be created, not written in time"))));
+    }
+
+    /**
+     * Submit a user to create, waiting for a place if queue is full
+     *
+     * @param user the user to create, already checked
+     * @return the id of the creation, starting with node id
+     * @throws UserQueueFullException if queue is still full after offer timeout, or writer is stopped
+     */
+    public String submit(User user) throws UserQueueFullException {
+
+        // Id of creation starting with node id, as creation is only known by this node
+        String id = node + "-" + UUID.randomUUID();
+        CompletableFuture<UserBulkResult> creation = new CompletableFuture<>();
+        creations.put(id, creation);
+
+        // Enqueue user if running, waiting shortly if full
+        boolean queued = false;
+        lock.readLock().lock();
+        try {
+            queued = running && queue.offer(new Pending(user, creation), properties.getOfferTimeout().toNanos(), TimeUnit.NANOSECONDS);
+
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // If not queued, forget creation and throw error queue full
+        if (!queued) {
+            creations.invalidate(id);
+            rejectedCounter.increment();
+            throw new UserQueueFullException("User cannot be created, too many users pending");
+        }
+
+        return id;
+    }
+
+    /**
+     * Get a creation
+     *
+     * @param id the id of the creation
+     * @return the creation, done once user written, empty if unknown or expired
+     */
+    public Optional<CompletableFuture<UserBulkResult>> get(String id) {
+        return Optional.ofNullable(creations.getIfPresent(id));
+    }
+
+    private void drain() {
+
+        List<Pending> batch = new ArrayList<>(properties.getBatchSize());
+
+        // Write users until stopped, then until queue is empty
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                // Take all users already pending, up to batch size
+                batch.add(first);
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+                flushTimer.record(() -> flush(batch));
+                batch.clear();
+
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+
+        try {
+            // Create users checked when submitted in one transaction, and complete creation of each user with its result
+            List<UserBulkResult> results = userService.createCheckedUsers(batch.stream().map(Pending::user).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).creation().complete(results.get(i));
+            }
+
+        } catch (RuntimeException e) {
+            log.error("Write-behind of {} users failed", batch.size(), e);
+            batch.forEach(pending -> pending.creation().complete(UserBulkResult.failed(new UserCreateException("User cannot be created"))));
+        }
+    }
+
+    /**
+     * User pending in queue
+     *
+     * @param user     the user to create
+     * @param creation the creation, completed once user written
+     */
+    private record Pending(User user, CompletableFuture<UserBulkResult> creation) {
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.jvezolles.api.user.dto;
+
+import java.util.List;
+
+/**
+ * CLass DTO result of a user creation in bulk, for transfer
+ *
+ * @param index    the index of the user in the bulk request
+ * @param status   the http status of the user creation
+ * @param user     the user created, null if creation fails
+ * @param messages the error messages if creation fails, empty if user is created
+ * @author Vezolles
+ */
+public record UserBulkResultDTO(int index,
+                                int status,
+                                UserDTO user,
+                                List<String> messages) {
+
+}
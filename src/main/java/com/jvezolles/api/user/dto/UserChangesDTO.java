@@ -0,0 +1,19 @@
+package com.jvezolles.api.user.dto;
+
+import java.util.List;
+
+/**
+ * CLass DTO changes of users since a token, for transfer
+ *
+ * @param users   the users created, updated or replaced since token
+ * @param deleted the usernames of users deleted since token
+ * @param token   the token to get next changes
+ * @param hasMore true if more changes are already available with next token
+ * @author Vezolles
+ */
+public record UserChangesDTO(List<UserDTO> users,
+                             List<String> deleted,
+                             String token,
+                             boolean hasMore) {
+
+}
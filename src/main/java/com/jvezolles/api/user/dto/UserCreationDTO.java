@@ -0,0 +1,19 @@
+package com.jvezolles.api.user.dto;
+
+import java.util.List;
+
+/**
+ * CLass DTO status of a user creation asynchronously, for transfer
+ *
+ * @param id       the id of the creation
+ * @param status   the http status of the user creation, accepted while pending
+ * @param user     the user created, null if pending or creation fails
+ * @param messages the error messages if creation fails, else empty
+ * @author Vezolles
+ */
+public record UserCreationDTO(String id,
+                              int status,
+                              UserDTO user,
+                              List<String> messages) {
+
+}
@@ -0,0 +1,13 @@
+package com.jvezolles.api.user.dto;
+
+/**
+ * CLass DTO event on a user, for transfer
+ *
+ * @param username the username of the user, before replacement if replaced
+ * @param user     the user's details after event, null if deleted
+ * @author Vezolles
+ */
+public record UserEventDTO(String username,
+                           UserDTO user) {
+
+}
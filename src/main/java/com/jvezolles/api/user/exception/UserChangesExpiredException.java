@@ -0,0 +1,28 @@
+package com.jvezolles.api.user.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.Serial;
+
+/**
+ * Exception used if changes of users since a token are no longer available
+ *
+ * @author Vezolles
+ */
+@ResponseStatus(HttpStatus.GONE)
+public class UserChangesExpiredException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = -3195807314628875129L;
+
+    /**
+     * UserChangesExpiredException default constructor
+     *
+     * @param message exception's message
+     */
+    public UserChangesExpiredException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.jvezolles.api.user.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.Serial;
+
+/**
+ * Exception used if user cursor is not valid
+ *
+ * @author Vezolles
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UserCursorException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 6415029573163852216L;
+
+    /**
+     * UserCursorException default constructor
+     *
+     * @param message exception's message
+     */
+    public UserCursorException(String message) {
+        super(message);
+    }
+
+}
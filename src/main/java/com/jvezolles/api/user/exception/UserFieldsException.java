@@ -0,0 +1,28 @@
+package com.jvezolles.api.user.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.Serial;
+
+/**
+ * Exception used if user fields are not valid
+ *
+ * @author Vezolles
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UserFieldsException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 5317720689154936871L;
+
+    /**
+     * UserFieldsException default constructor
+     *
+     * @param message exception's message
+     */
+    public UserFieldsException(String message) {
+        super(message);
+    }
+
+}
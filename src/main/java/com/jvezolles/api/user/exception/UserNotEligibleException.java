@@ -6,22 +6,22 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import java.io.Serial;
 
 /**
- * Exception used if user is not a French adult
+ * Exception used if user is not eligible, not adult in a country configured
  *
  * @author Vezolles
  */
 @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
-public class UserNotFrenchAdultException extends RuntimeException {
+public class UserNotEligibleException extends RuntimeException {
 
     @Serial
     private static final long serialVersionUID = 4963566993769703058L;
 
     /**
-     * UserNotFrenchAdultException default constructor
+     * UserNotEligibleException default constructor
      *
      * @param message exception's message
      */
-    public UserNotFrenchAdultException(String message) {
+    public UserNotEligibleException(String message) {
         super(message);
     }
 
@@ -0,0 +1,28 @@
+package com.jvezolles.api.user.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.Serial;
+
+/**
+ * Exception used if user is not in the version expected by client
+ *
+ * @author Vezolles
+ */
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class UserPreconditionFailedException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 4963566993769703058L;
+
+    /**
+     * UserPreconditionFailedException default constructor
+     *
+     * @param message exception's message
+     */
+    public UserPreconditionFailedException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.jvezolles.api.user.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.Serial;
+
+/**
+ * Exception used if user cannot be queued for creation, queue being full
+ *
+ * @author Vezolles
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class UserQueueFullException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 4963566993769703058L;
+
+    /**
+     * UserQueueFullException default constructor
+     *
+     * @param message exception's message
+     */
+    public UserQueueFullException(String message) {
+        super(message);
+    }
+
+}
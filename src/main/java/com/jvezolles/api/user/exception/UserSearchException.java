@@ -0,0 +1,28 @@
+package com.jvezolles.api.user.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.Serial;
+
+/**
+ * Exception used if user search is not valid
+ *
+ * @author Vezolles
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UserSearchException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = -2748061530172294316L;
+
+    /**
+     * UserSearchException default constructor
+     *
+     * @param message exception's message
+     */
+    public UserSearchException(String message) {
+        super(message);
+    }
+
+}
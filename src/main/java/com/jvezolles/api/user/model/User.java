@@ -1,21 +1,33 @@
 package com.jvezolles.api.user.model;
 
+import com.jvezolles.api.util.Constants;
+import com.jvezolles.api.util.TimeOrderedId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.io.Serial;
 import java.io.Serializable;
-import java.util.Date;
+import java.time.Instant;
+import java.time.LocalDate;
 
 /**
  * Entity User for persistence
+ * Cached in second-level cache, by id and by username
  *
  * @author Vezolles
  */
 @Entity
 @Table(name = "users")
+@EntityListeners(UserTimeListener.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Constants.USER_CACHE_REGION)
+@NaturalIdCache(region = Constants.USER_NATURAL_ID_CACHE_REGION)
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -26,26 +38,27 @@ public class User implements Serializable {
 
     /**
      * Attribute id with getter and setter
-     * Auto-increment value
+     * Time ordered value generated by the application
      */
     @Id
-    @GeneratedValue
+    @TimeOrderedId
     @Column
     private Long id;
 
     /**
      * Attribute username with getter and setter
+     * Natural id, in lower case, never updated in place
      */
+    @NaturalId
     @Column
     private String username;
 
     /**
      * Attribute birthdate with getter and setter
-     * Format timestamp
+     * Format date
      */
-    @Temporal(TemporalType.TIMESTAMP)
     @Column
-    private Date birthdate;
+    private LocalDate birthdate;
 
     /**
      * Attribute country with getter and setter
@@ -71,4 +84,26 @@ public class User implements Serializable {
     @Column
     private String email;
 
+    /**
+     * Attribute version with getter and setter
+     * Incremented on each update, null until persisted
+     */
+    @Version
+    @Column
+    private Long version;
+
+    /**
+     * Attribute updatedAt with getter and setter
+     * Time of last write, set by the user service on each write, else before insert
+     */
+    @Column
+    private Instant updatedAt;
+
+    /**
+     * Attribute changeSequence with getter and setter
+     * Sequence of last write in changes, null until sequenced by a sync once committed, set by database only
+     */
+    @Column(insertable = false, updatable = false)
+    private Long changeSequence;
+
 }
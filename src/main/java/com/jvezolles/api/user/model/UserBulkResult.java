@@ -0,0 +1,41 @@
+package com.jvezolles.api.user.model;
+
+/**
+ * Result of a user creation in bulk
+ *
+ * @param user  the user created, null if creation fails
+ * @param error the error if creation fails, null if user is created
+ * @author Vezolles
+ */
+public record UserBulkResult(User user, RuntimeException error) {
+
+    /**
+     * Result for a user created
+     *
+     * @param user the user created
+     * @return the result
+     */
+    public static UserBulkResult created(User user) {
+        return new UserBulkResult(user, null);
+    }
+
+    /**
+     * Result for a user creation failed
+     *
+     * @param error the error of the creation
+     * @return the result
+     */
+    public static UserBulkResult failed(RuntimeException error) {
+        return new UserBulkResult(null, error);
+    }
+
+    /**
+     * Is user created
+     *
+     * @return true if user is created, else false
+     */
+    public boolean isCreated() {
+        return error == null;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.jvezolles.api.user.model;
+
+/**
+ * Position of a client in changes of users, one keyset position on users and one on tombstones
+ * Users and tombstones are ordered by sequence of change then id
+ *
+ * @param userSequence      the sequence of change of the last user read, null if no user read
+ * @param userId            the id of the last user read, null if no user read
+ * @param tombstoneSequence the sequence of change of the last tombstone read
+ * @param tombstoneId       the id of the last tombstone read
+ * @author Vezolles
+ */
+public record UserChangePosition(Long userSequence, Long userId, long tombstoneSequence, long tombstoneId) {
+
+    /**
+     * Position of a client syncing all users
+     * Users deleted before are not found, so only tombstones after are read
+     *
+     * @param since the sequence from which tombstones are read
+     * @return the position before first user, and after tombstones up to sequence
+     */
+    public static UserChangePosition first(long since) {
+        return new UserChangePosition(null, null, since, Long.MAX_VALUE);
+    }
+
+    /**
+     * Position after a user read
+     *
+     * @param user the user read
+     * @return the position
+     */
+    public UserChangePosition after(User user) {
+        return new UserChangePosition(user.getChangeSequence(), user.getId(), tombstoneSequence, tombstoneId);
+    }
+
+    /**
+     * Position after a tombstone read
+     *
+     * @param tombstone the tombstone read
+     * @return the position
+     */
+    public UserChangePosition after(UserTombstone tombstone) {
+        return new UserChangePosition(userSequence, userId, tombstone.getChangeSequence(), tombstone.getId());
+    }
+
+    /**
+     * Position after all tombstones up to a sequence, once all of them are read
+     * Keeps the position on tombstones recent without deletion, so it doesn't expire
+     *
+     * @param until the sequence up to which all tombstones are read
+     * @return the position
+     */
+    public UserChangePosition afterTombstones(long until) {
+        return until >= tombstoneSequence ? new UserChangePosition(userSequence, userId, until, Long.MAX_VALUE) : this;
+    }
+
+    /**
+     * Check if tombstones after position may be purged
+     * Tombstones up to the sequence purged may be, so a position inside this sequence is expired too
+     *
+     * @param purged the sequence of the last tombstones purged
+     * @return true if tombstones after position may be purged
+     */
+    public boolean isExpired(long purged) {
+        return tombstoneSequence < purged || (tombstoneSequence == purged && tombstoneId != Long.MAX_VALUE);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.jvezolles.api.user.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Entity UserChangeSequence for persistence
+ * Only one row, locked by each sync to sequence writes committed since the previous one
+ *
+ * @author Vezolles
+ */
+@Entity
+@Table(name = "user_change_sequence")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class UserChangeSequence implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -4620185293358734112L;
+
+    /**
+     * Id of the only row
+     */
+    public static final int ID = 1;
+
+    /**
+     * Attribute id with getter and setter
+     */
+    @Id
+    @Column
+    private Integer id;
+
+    /**
+     * Attribute lastValue with getter and setter
+     * Last sequence given to changes
+     */
+    @Column
+    private long lastValue;
+
+    /**
+     * Attribute purgedValue with getter and setter
+     * Last sequence of tombstones purged, a client not synced up to it must sync all users again
+     */
+    @Column
+    private long purgedValue;
+
+}
@@ -0,0 +1,16 @@
+package com.jvezolles.api.user.model;
+
+import java.util.List;
+
+/**
+ * Changes of users after a position, one change by username
+ *
+ * @param users    the users created, updated or replaced, as of their last write
+ * @param deleted  the usernames of users deleted
+ * @param position the position after these changes
+ * @param hasMore  true if more changes are already available after position
+ * @author Vezolles
+ */
+public record UserChanges(List<User> users, List<String> deleted, UserChangePosition position, boolean hasMore) {
+
+}
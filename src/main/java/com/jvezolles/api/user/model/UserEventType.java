@@ -0,0 +1,41 @@
+package com.jvezolles.api.user.model;
+
+import java.util.Locale;
+
+/**
+ * Type of event on a user, sent as event name in lower case
+ *
+ * @author Vezolles
+ */
+public enum UserEventType {
+
+    /**
+     * User created
+     */
+    CREATED,
+
+    /**
+     * User updated
+     */
+    UPDATED,
+
+    /**
+     * User replaced, possibly with a new username
+     */
+    REPLACED,
+
+    /**
+     * User deleted
+     */
+    DELETED;
+
+    /**
+     * Name of event sent
+     *
+     * @return the type in lower case
+     */
+    public String eventName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.jvezolles.api.user.model;
+
+import java.time.LocalDate;
+
+/**
+ * Field of user's details, in order of user's details
+ * Name is the attribute of User entity and the property of UserDTO
+ *
+ * @author Vezolles
+ */
+public enum UserField {
+
+    /**
+     * Username
+     */
+    USERNAME("username", String.class),
+
+    /**
+     * Birthdate
+     */
+    BIRTHDATE("birthdate", LocalDate.class),
+
+    /**
+     * Country
+     */
+    COUNTRY("country", String.class),
+
+    /**
+     * Phone
+     */
+    PHONE("phone", String.class),
+
+    /**
+     * Gender
+     */
+    GENDER("gender", String.class),
+
+    /**
+     * Email
+     */
+    EMAIL("email", String.class);
+
+    /**
+     * Name of field
+     */
+    private final String fieldName;
+
+    /**
+     * Type of field
+     */
+    private final Class<?> type;
+
+    UserField(String fieldName, Class<?> type) {
+        this.fieldName = fieldName;
+        this.type = type;
+    }
+
+    /**
+     * Name of field
+     *
+     * @return the attribute of User entity and the property of UserDTO
+     */
+    public String fieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Type of field
+     *
+     * @return the type of attribute
+     */
+    public Class<?> type() {
+        return type;
+    }
+
+}
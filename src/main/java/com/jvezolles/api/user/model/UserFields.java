@@ -0,0 +1,135 @@
+package com.jvezolles.api.user.model;
+
+import com.jvezolles.api.user.exception.UserFieldsException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Set of fields of user's details requested, a sparse fieldset
+ * One instance by set of fields, created once, so it can be compared by identity and used as index
+ *
+ * @author Vezolles
+ */
+public final class UserFields {
+
+    /**
+     * Fields, in order of user's details
+     */
+    private static final UserField[] FIELDS = UserField.values();
+
+    /**
+     * Sets of fields, by mask of their ordinals
+     */
+    private static final UserFields[] BY_MASK = new UserFields[1 << FIELDS.length];
+
+    static {
+        for (int mask = 1; mask < BY_MASK.length; mask++) {
+            BY_MASK[mask] = new UserFields(mask);
+        }
+    }
+
+    /**
+     * All fields of user's details
+     */
+    public static final UserFields ALL = BY_MASK[BY_MASK.length - 1];
+
+    /**
+     * Mask of ordinals of fields
+     */
+    private final int mask;
+
+    /**
+     * Fields, in order of user's details
+     */
+    private final List<UserField> fields;
+
+    private UserFields(int mask) {
+
+        this.mask = mask;
+
+        List<UserField> list = new ArrayList<>(FIELDS.length);
+        for (UserField field : FIELDS) {
+            if ((mask & (1 << field.ordinal())) != 0) {
+                list.add(field);
+            }
+        }
+        this.fields = List.copyOf(list);
+    }
+
+    /**
+     * Parse fields requested, comma separated names of fields in any order
+     *
+     * @param names the names of fields, blank for all fields
+     * @return the set of fields
+     * @throws UserFieldsException if a name is not a field of user's details
+     */
+    public static UserFields parse(String names) throws UserFieldsException {
+
+        // Blank for all fields
+        if (StringUtils.isBlank(names)) {
+            return ALL;
+        }
+
+        int mask = 0;
+        for (String name : names.split(",")) {
+            if (StringUtils.isBlank(name)) {
+                continue;
+            }
+
+            try {
+                mask |= 1 << UserField.valueOf(name.trim().toUpperCase(Locale.ROOT)).ordinal();
+
+            } catch (IllegalArgumentException _) {
+                throw new UserFieldsException("User fields are not valid, unknown field " + name.trim());
+            }
+        }
+
+        return mask != 0 ? BY_MASK[mask] : ALL;
+    }
+
+    /**
+     * Mask of ordinals of fields
+     *
+     * @return the mask, one bit by field
+     */
+    public int mask() {
+        return mask;
+    }
+
+    /**
+     * Fields, in order of user's details
+     *
+     * @return the fields
+     */
+    public List<UserField> fields() {
+        return fields;
+    }
+
+    /**
+     * Check if a field is requested
+     *
+     * @param field the field
+     * @return true if requested
+     */
+    public boolean contains(UserField field) {
+        return (mask & (1 << field.ordinal())) != 0;
+    }
+
+    /**
+     * Check if all fields are requested
+     *
+     * @return true if all fields
+     */
+    public boolean isAll() {
+        return this == ALL;
+    }
+
+    @Override
+    public String toString() {
+        return fields.stream().map(UserField::fieldName).toList().toString();
+    }
+
+}
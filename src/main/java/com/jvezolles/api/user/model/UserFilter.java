@@ -0,0 +1,45 @@
+package com.jvezolles.api.user.model;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * Filter of users, each criterion is ignored if null
+ *
+ * @param country       the country of users
+ * @param gender        the gender of users
+ * @param birthdateFrom the min birthdate of users, included
+ * @param birthdateTo   the max birthdate of users, included
+ * @author Vezolles
+ */
+public record UserFilter(String country,
+                         String gender,
+                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate birthdateFrom,
+                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate birthdateTo) {
+
+    /**
+     * Filter keeping all users
+     */
+    public static final UserFilter NONE = new UserFilter(null, null, null, null);
+
+    /**
+     * Check if filter keeps all users
+     *
+     * @return true if no criterion
+     */
+    public boolean isEmpty() {
+        return country == null && gender == null && birthdateFrom == null && birthdateTo == null;
+    }
+
+    /**
+     * Copy filter with another country
+     *
+     * @param country the country of users
+     * @return the filter with country
+     */
+    public UserFilter withCountry(String country) {
+        return new UserFilter(country, gender, birthdateFrom, birthdateTo);
+    }
+
+}
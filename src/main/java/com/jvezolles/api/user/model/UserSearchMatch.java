@@ -0,0 +1,20 @@
+package com.jvezolles.api.user.model;
+
+/**
+ * Match of text searched in usernames and emails
+ *
+ * @author Vezolles
+ */
+public enum UserSearchMatch {
+
+    /**
+     * Username or email starts with text, for type-ahead
+     */
+    PREFIX,
+
+    /**
+     * Username or email contains text
+     */
+    CONTAINS
+
+}
@@ -0,0 +1,35 @@
+package com.jvezolles.api.user.model;
+
+import jakarta.persistence.PrePersist;
+import lombok.AllArgsConstructor;
+
+import java.time.Clock;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Entity listener of User for time of write
+ * Created by Spring with the clock of the user service, so times of write have one source
+ *
+ * @author Vezolles
+ */
+@AllArgsConstructor
+public class UserTimeListener {
+
+    /**
+     * Clock used for time of write, the one of the user service
+     */
+    private Clock clock;
+
+    /**
+     * Set time of last write before insert, if not set by the user service
+     *
+     * @param user the user inserted
+     */
+    @PrePersist
+    void prePersist(User user) {
+        if (user.getUpdatedAt() == null) {
+            user.setUpdatedAt(clock.instant().truncatedTo(ChronoUnit.MICROS));
+        }
+    }
+
+}
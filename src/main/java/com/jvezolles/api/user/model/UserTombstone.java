@@ -0,0 +1,62 @@
+package com.jvezolles.api.user.model;
+
+import com.jvezolles.api.util.TimeOrderedId;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Entity UserTombstone for persistence
+ * Written for each user deleted, kept for a while to sync deletions
+ *
+ * @author Vezolles
+ */
+@Entity
+@Table(name = "user_tombstones")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class UserTombstone implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 7262120957318850348L;
+
+    /**
+     * Attribute id with getter and setter
+     * Time ordered value generated by the application
+     */
+    @Id
+    @TimeOrderedId
+    @Column
+    private Long id;
+
+    /**
+     * Attribute username with getter and setter
+     * Username of user deleted, in lower case
+     */
+    @Column
+    private String username;
+
+    /**
+     * Attribute deletedAt with getter and setter
+     * Time of deletion
+     */
+    @Column
+    private Instant deletedAt;
+
+    /**
+     * Attribute changeSequence with getter and setter
+     * Sequence of deletion in changes, null until sequenced by a sync once committed, set by database only
+     */
+    @Column(insertable = false, updatable = false)
+    private Long changeSequence;
+
+}
@@ -0,0 +1,23 @@
+package com.jvezolles.api.user.model;
+
+/**
+ * Version of a user, identifying one state of one user
+ * A user deleted then created again has another id, so another version
+ *
+ * @param id      the id of the user
+ * @param version the version of the user
+ * @author Vezolles
+ */
+public record UserVersion(long id, long version) {
+
+    /**
+     * Version of a user persisted
+     *
+     * @param user the user persisted, with id and version
+     * @return the version, null if user is not persisted
+     */
+    public static UserVersion of(User user) {
+        return user.getId() != null && user.getVersion() != null ? new UserVersion(user.getId(), user.getVersion()) : null;
+    }
+
+}
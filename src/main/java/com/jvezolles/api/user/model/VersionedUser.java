@@ -0,0 +1,14 @@
+package com.jvezolles.api.user.model;
+
+import com.jvezolles.api.user.dto.UserDTO;
+
+/**
+ * User's details with their version
+ *
+ * @param user    the user's details
+ * @param version the version of the user
+ * @author Vezolles
+ */
+public record VersionedUser(UserDTO user, UserVersion version) {
+
+}
@@ -16,4 +16,119 @@ public final class Constants {
      */
     public static final String FRANCE = "France";
 
+    /**
+     * Constant header for next cursor of keyset pagination
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * Constant header for next page availability of pagination
+     */
+    public static final String HAS_NEXT_HEADER = "X-Has-Next";
+
+    /**
+     * Constant header for total count of users, exact or approximate
+     */
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    /**
+     * Constant value of count parameter for an exact count
+     */
+    public static final String EXACT_COUNT = "exact";
+
+    /**
+     * Constant default size of keyset pagination
+     */
+    public static final int DEFAULT_CURSOR_SIZE = 20;
+
+    /**
+     * Constant JDBC fetch size used to stream users
+     */
+    public static final String USER_STREAM_FETCH_SIZE = "500";
+
+    /**
+     * Constant name of timer for user service operations
+     */
+    public static final String USER_SERVICE_TIMER = "user.service";
+
+    /**
+     * Constant cookie holding time of last write of client, used for read-your-writes
+     */
+    public static final String LAST_WRITE_COOKIE = "last-write";
+
+    /**
+     * Constant second-level cache region of user entities
+     */
+    public static final String USER_CACHE_REGION = "user";
+
+    /**
+     * Constant second-level cache region of user natural ids
+     */
+    public static final String USER_NATURAL_ID_CACHE_REGION = "user-natural-id";
+
+    /**
+     * Constant query space of native writes on users, matching no entity, so no second-level cache region is cleared
+     */
+    public static final String USER_NO_QUERY_SPACE = "";
+
+    /**
+     * Constant name of read-through cache of user service
+     */
+    public static final String USER_SERVICE_CACHE = "user-service";
+
+    /**
+     * Constant header for preferences of client
+     */
+    public static final String PREFER_HEADER = "Prefer";
+
+    /**
+     * Constant preference of client for an asynchronous response
+     */
+    public static final String RESPOND_ASYNC = "respond-async";
+
+    /**
+     * Constant header for preferences applied to response
+     */
+    public static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+
+    /**
+     * Constant name of gauge for users pending in write-behind queue
+     */
+    public static final String USER_WRITE_BEHIND_QUEUE = "user.write-behind.queue";
+
+    /**
+     * Constant name of timer for write-behind flushes
+     */
+    public static final String USER_WRITE_BEHIND_FLUSH = "user.write-behind.flush";
+
+    /**
+     * Constant name of counter for users rejected by write-behind queue
+     */
+    public static final String USER_WRITE_BEHIND_REJECTED = "user.write-behind.rejected";
+
+    /**
+     * Constant name of timer for group commits of users
+     */
+    public static final String USER_GROUP_COMMIT_TIMER = "user.group-commit";
+
+    /**
+     * Constant name of summary for number of users by group commit
+     */
+    public static final String USER_GROUP_COMMIT_SIZE = "user.group-commit.size";
+
+    /**
+     * Constant header for id of the last event received by client
+     */
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    /**
+     * Constant name of gauge for subscribers of user events
+     */
+    public static final String USER_EVENTS_SUBSCRIBERS = "user.events.subscribers";
+
+    /**
+     * Constant name of counter for subscribers of user events disconnected as too slow
+     */
+    public static final String USER_EVENTS_DISCONNECTED = "user.events.disconnected";
+
 }
@@ -0,0 +1,24 @@
+package com.jvezolles.api.util;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Id generated in the JVM by a time ordered id generator
+ * Node id is read from Hibernate setting jvezolles.id.node
+ *
+ * @author Vezolles
+ * @see TimeOrderedIdGenerator
+ */
+@IdGeneratorType(TimeOrderedIdentifierGenerator.class)
+@Retention(RUNTIME)
+@Target({FIELD, METHOD})
+public @interface TimeOrderedId {
+
+}
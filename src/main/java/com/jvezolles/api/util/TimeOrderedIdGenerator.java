@@ -0,0 +1,110 @@
+package com.jvezolles.api.util;
+
+import java.time.Instant;
+import java.util.function.LongSupplier;
+
+/**
+ * Time ordered id generator
+ * Generates unique 64 bits ids in the JVM, without database round trip, with a snowflake layout:
+ * 41 bits of milliseconds since 2020-01-01, 10 bits of node id and 12 bits of sequence by millisecond.
+ * Ids generated later are greater, and ids generated by nodes with distinct node ids never collide.
+ *
+ * @author Vezolles
+ */
+public class TimeOrderedIdGenerator {
+
+    /**
+     * Epoch of generated ids, 2020-01-01 in milliseconds
+     */
+    public static final long EPOCH = Instant.parse("2020-01-01T00:00:00Z").toEpochMilli();
+
+    /**
+     * Number of bits for node id
+     */
+    public static final int NODE_BITS = 10;
+
+    /**
+     * Number of bits for sequence by millisecond
+     */
+    public static final int SEQUENCE_BITS = 12;
+
+    /**
+     * Max node id
+     */
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    /**
+     * Node id, shifted at its position in id
+     */
+    private final long node;
+
+    /**
+     * Clock in milliseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Timestamp of last id generated, since epoch
+     */
+    private long lastTimestamp = -1;
+
+    /**
+     * Sequence of last id generated in last timestamp
+     */
+    private long sequence;
+
+    /**
+     * Default constructor for TimeOrderedIdGenerator, with system clock
+     *
+     * @param node the node id, between 0 and 1023, must be unique by running application
+     */
+    public TimeOrderedIdGenerator(int node) {
+        this(node, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor for TimeOrderedIdGenerator
+     *
+     * @param node  the node id, between 0 and 1023, must be unique by running application
+     * @param clock the clock in milliseconds
+     */
+    public TimeOrderedIdGenerator(int node, LongSupplier clock) {
+
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE);
+        }
+
+        this.node = (long) node << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    /**
+     * Generate next id
+     *
+     * @return the id, greater than all ids previously generated
+     */
+    public synchronized long nextId() {
+
+        // Never go back in time, even if clock does
+        long timestamp = Math.max(clock.getAsLong() - EPOCH, lastTimestamp);
+
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+
+            // Sequence exhausted for this millisecond, borrow next millisecond
+            if (sequence == 0) {
+                timestamp++;
+            }
+
+        } else {
+            sequence = 0;
+        }
+
+        lastTimestamp = timestamp;
+
+        return timestamp << (NODE_BITS + SEQUENCE_BITS) | node | sequence;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.jvezolles.api.util;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.AnnotationBasedGenerator;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.generator.GeneratorCreationContext;
+
+import java.io.Serial;
+import java.lang.reflect.Member;
+import java.util.EnumSet;
+
+/**
+ * Hibernate identifier generator for ids annotated with TimeOrderedId
+ *
+ * @author Vezolles
+ * @see TimeOrderedId
+ */
+public class TimeOrderedIdentifierGenerator implements AnnotationBasedGenerator<TimeOrderedId>, BeforeExecutionGenerator {
+
+    @Serial
+    private static final long serialVersionUID = 5417292735316402818L;
+
+    /**
+     * Hibernate setting for node id
+     */
+    public static final String NODE_SETTING = "jvezolles.id.node";
+
+    /**
+     * Generator of ids, initialized again by Hibernate rather than serialized
+     */
+    private transient TimeOrderedIdGenerator generator;
+
+    /**
+     * Initialize generator for ids annotated with TimeOrderedId
+     *
+     * @param annotation the annotation on id
+     * @param member     the id member
+     * @param context    the generator creation context
+     */
+    @Override
+    public void initialize(TimeOrderedId annotation, Member member, GeneratorCreationContext context) {
+
+        // Read node id from settings
+        Integer node = context.getServiceRegistry()
+                .requireService(ConfigurationService.class)
+                .getSetting(NODE_SETTING, StandardConverters.INTEGER, 0);
+
+        this.generator = new TimeOrderedIdGenerator(node);
+    }
+
+    /**
+     * Generate a value
+     *
+     * @param session      the session
+     * @param owner        the entity for which the id is generated
+     * @param currentValue the current id value
+     * @param eventType    the event type, insert
+     * @return the id generated
+     */
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return generator.nextId();
+    }
+
+    /**
+     * Ids are only generated on insert
+     *
+     * @return insert event type
+     */
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.jvezolles.api;
+
+import liquibase.command.CommandScope;
+import liquibase.command.core.UpdateCommandStep;
+import liquibase.command.core.helpers.DbUrlConnectionArgumentsCommandStep;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests E2E for migration of birthdate from timestamp to date
+ * Users are seeded in the table of first version, with birthdates written at midnight UTC in the time zone of the server,
+ * then the migration is run, to check each birthdate keeps its date
+ *
+ * @author Vezolles
+ */
+class UserBirthdateMigrationE2ETest {
+
+    private Connection connection;
+
+    private Database database;
+
+    /**
+     * Before each test, create table of users as in first version
+     */
+    @BeforeEach
+    void setUp() throws SQLException, LiquibaseException {
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:migration;DB_CLOSE_DELAY=-1", "restapis", "");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+        update("db/changelog/features/create-user-table.yaml");
+    }
+
+    /**
+     * After each test, drop database
+     */
+    @AfterEach
+    void tearDown() throws SQLException {
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        connection.close();
+    }
+
+    /**
+     * Test birthdates written in server's time zone keep their date
+     */
+    @Test
+    void testMigrateBirthdateKeepsDate() throws SQLException, LiquibaseException {
+
+        insert(1L, "utc", LocalDateTime.of(1990, 5, 15, 0, 0));
+        insert(2L, "new_york", LocalDateTime.of(1990, 5, 14, 20, 0));
+        insert(3L, "honolulu", LocalDateTime.of(1990, 5, 14, 14, 0));
+        insert(4L, "paris", LocalDateTime.of(1990, 5, 15, 2, 0));
+        insert(5L, "tokyo", LocalDateTime.of(1990, 5, 15, 9, 0));
+        insert(6L, "unknown", null);
+
+        update("db/changelog/features/alter-user-birthdate-date.yaml");
+
+        assertEquals(LocalDate.of(1990, 5, 15), birthdate(1L));
+        assertEquals(LocalDate.of(1990, 5, 15), birthdate(2L));
+        assertEquals(LocalDate.of(1990, 5, 15), birthdate(3L));
+        assertEquals(LocalDate.of(1990, 5, 15), birthdate(4L));
+        assertEquals(LocalDate.of(1990, 5, 15), birthdate(5L));
+        assertNull(birthdate(6L));
+    }
+
+    /**
+     * Run a changelog on the database
+     *
+     * @param changeLog the changelog file in classpath
+     */
+    private void update(String changeLog) throws LiquibaseException {
+
+        new CommandScope(UpdateCommandStep.COMMAND_NAME)
+                .addArgumentValue(DbUrlConnectionArgumentsCommandStep.DATABASE_ARG, database)
+                .addArgumentValue(UpdateCommandStep.CHANGELOG_FILE_ARG, changeLog)
+                .execute();
+    }
+
+    /**
+     * Insert a user with a birthdate timestamp
+     *
+     * @param id        the id of user
+     * @param username  the username
+     * @param birthdate the timestamp of birthdate, none if null
+     */
+    private void insert(long id, String username, LocalDateTime birthdate) throws SQLException {
+
+        try (PreparedStatement statement = connection.prepareStatement("insert into users (id, username, birthdate) values (?, ?, ?)")) {
+            statement.setLong(1, id);
+            statement.setString(2, username);
+            statement.setObject(3, birthdate);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Read the birthdate of a user
+     *
+     * @param id the id of user
+     * @return the date of birthdate, null if none
+     */
+    private LocalDate birthdate(long id) throws SQLException {
+
+        try (PreparedStatement statement = connection.prepareStatement("select birthdate from users where id = ?")) {
+            statement.setLong(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                assertTrue(resultSet.next());
+                return resultSet.getObject(1, LocalDate.class);
+            }
+        }
+    }
+
+}
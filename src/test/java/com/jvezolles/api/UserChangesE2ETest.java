@@ -0,0 +1,246 @@
+package com.jvezolles.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.user.UserRepository;
+import com.jvezolles.api.user.UserService;
+import com.jvezolles.api.user.UserTombstoneRepository;
+import com.jvezolles.api.user.dto.UserChangesDTO;
+import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests E2E for changes of users
+ * Changes are sequenced in background, so are sequenced before each sync here, to be read just after writes
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserChangesE2ETest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserTombstoneRepository userTombstoneRepository;
+
+    @Autowired
+    private UserService userService;
+
+    private final LocalDate dateArthur = LocalDate.now().minusYears(40);
+    private final LocalDate dateGuenievre = LocalDate.now().minusYears(39);
+
+    /**
+     * Before each test, add users
+     */
+    @BeforeEach
+    void setUp() {
+
+        User user = new User();
+        user.setUsername("arthur");
+        user.setBirthdate(dateArthur);
+        user.setCountry("France");
+        user.setPhone("0611111111");
+        user.setGender("man");
+        user.setEmail("roi@kaamelott.com");
+        userRepository.save(user);
+
+        User user2 = new User();
+        user2.setUsername("guenièvre");
+        user2.setBirthdate(dateGuenievre);
+        user2.setCountry("France");
+        user2.setPhone("0622222222");
+        user2.setGender("female");
+        user2.setEmail("reine@kaamelott.com");
+        userRepository.save(user2);
+    }
+
+    /**
+     * After each test, remove users and tombstones
+     */
+    @AfterEach
+    void tearDown() {
+        userRepository.findAll().forEach(value -> userRepository.delete(value));
+        userTombstoneRepository.deleteAll();
+    }
+
+    /**
+     * Test sync all users, then only users changed since token
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserChanges() throws Exception {
+
+        UserChangesDTO all = getChanges(null, null);
+
+        assertThat(all.users().stream().map(UserDTO::username).toList(), containsInAnyOrder("arthur", "guenièvre"));
+        assertTrue(all.deleted().isEmpty());
+        assertFalse(all.hasMore());
+
+        // Update one user, delete another one
+        UserDTO user = new UserDTO("Arthur", dateArthur, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+        mockMvc.perform(patch("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+        mockMvc.perform(delete("/user/guenièvre"))
+                .andExpect(status().isNoContent());
+
+        UserChangesDTO changes = getChanges(all.token(), null);
+
+        assertThat(changes.users(), contains(new UserDTO("arthur", dateArthur, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com")));
+        assertThat(changes.deleted(), contains("guenièvre"));
+        assertFalse(changes.hasMore());
+
+        // No change since last sync
+        UserChangesDTO noChanges = getChanges(changes.token(), null);
+
+        assertTrue(noChanges.users().isEmpty());
+        assertTrue(noChanges.deleted().isEmpty());
+    }
+
+    /**
+     * Test a write committed after a sync is returned by the next one, even if its time of write is before the sync
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserChangesCommittedLate() throws Exception {
+
+        UserChangesDTO all = getChanges(null, null);
+
+        // User written an hour ago, in a long transaction committed only now
+        User user = new User();
+        user.setUsername("perceval");
+        user.setBirthdate(dateArthur);
+        user.setCountry("France");
+        user.setPhone("0633333333");
+        user.setGender("man");
+        user.setEmail("perceval@kaamelott.com");
+        user.setUpdatedAt(Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MICROS));
+        userRepository.save(user);
+
+        UserChangesDTO changes = getChanges(all.token(), null);
+
+        assertThat(changes.users().stream().map(UserDTO::username).toList(), contains("perceval"));
+        assertTrue(changes.deleted().isEmpty());
+    }
+
+    /**
+     * Test a token of the previous format, ordered by time, must sync all users again
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserChangesTokenPreviousFormat() throws Exception {
+
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString("1700000000000000,1,1700000000000000,2".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(get("/user-changes").param("since", token))
+                .andExpect(status().isGone());
+    }
+
+    /**
+     * Test sync users by pages of one change
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserChangesWithSize() throws Exception {
+
+        UserChangesDTO first = getChanges(null, 1);
+        UserChangesDTO second = getChanges(first.token(), 1);
+        UserChangesDTO last = getChanges(second.token(), 1);
+
+        assertEquals(1, first.users().size());
+        assertTrue(first.hasMore());
+        assertEquals(1, second.users().size());
+        assertNotEquals(first.users(), second.users());
+        assertTrue(last.users().isEmpty());
+        assertFalse(last.hasMore());
+    }
+
+    /**
+     * Test fail if token or size not valid
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserChangesTokenNotValid() throws Exception {
+
+        mockMvc.perform(get("/user-changes").param("since", "not-valid"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user-changes").param("size", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user-changes").param("size", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test get user named changes, not taken for changes of users
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserNamedChanges() throws Exception {
+
+        UserDTO user = new UserDTO("changes", dateArthur, "France", "0633333333", "man", "changes@kaamelott.com");
+        mockMvc.perform(post("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        String content = mockMvc.perform(get("/user/changes"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        assertEquals("changes", objectMapper.readValue(content, UserDTO.class).username());
+    }
+
+    private UserChangesDTO getChanges(String since, Integer size) throws Exception {
+
+        // Sequence writes committed, as done at fixed delay
+        userService.sequenceUserChanges();
+
+        String content = mockMvc.perform(get("/user-changes")
+                        .param("since", since != null ? since : "")
+                        .param("size", size != null ? size.toString() : ""))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        return objectMapper.readValue(content, UserChangesDTO.class);
+    }
+
+}
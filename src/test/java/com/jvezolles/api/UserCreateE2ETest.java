@@ -1,9 +1,19 @@
 package com.jvezolles.api;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.config.IdProperties;
+import com.jvezolles.api.config.UserProperties;
 import com.jvezolles.api.user.UserRepository;
+import com.jvezolles.api.user.UserService;
+import com.jvezolles.api.user.UserWriteBehind;
+import com.jvezolles.api.user.dto.UserBulkResultDTO;
+import com.jvezolles.api.user.dto.UserCreationDTO;
 import com.jvezolles.api.user.dto.UserDTO;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserBulkResult;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +21,8 @@ import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -18,20 +30,31 @@ import org.springframework.test.web.servlet.MvcResult;
 import java.time.Clock;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.util.Date;
-
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.doReturn;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
  * Tests E2E for user
+ * Users created concurrently are written together, with group commit
  *
  * @author Vezolles
  */
-@SpringBootTest
+@SpringBootTest(properties = "jvezolles.user.group-commit.enabled=true")
 @AutoConfigureMockMvc
 class UserCreateE2ETest {
 
@@ -47,9 +70,18 @@ class UserCreateE2ETest {
     @Autowired
     private UserRepository userRepository;
 
-    private final Date dateArthur = Date.from(LocalDate.now().minusYears(40).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final Date dateGuenievre = Date.from(LocalDate.now().minusYears(39).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final Date dateMerlin = Date.from(LocalDate.now().minusYears(70).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserProperties userProperties;
+
+    @Autowired
+    private IdProperties idProperties;
+
+    private final LocalDate dateArthur = LocalDate.now().minusYears(40);
+    private final LocalDate dateGuenievre = LocalDate.now().minusYears(39);
+    private final LocalDate dateMerlin = LocalDate.now().minusYears(70);
 
     private final LocalDate dateGuenievreDTO = LocalDate.now().minusYears(39);
 
@@ -127,6 +159,134 @@ class UserCreateE2ETest {
         assertEquals("karadoc@kaamelott.com", userDTOReceived.email());
     }
 
+    /**
+     * Test creation of users concurrently, written together
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testCreateUsersConcurrently() throws Exception {
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(20)) {
+            List<Future<Integer>> statuses = IntStream.range(0, 20)
+                    .mapToObj(i -> new UserDTO(i == 0 ? "Arthur" : "Chevalier" + i, LocalDate.now().minusYears(30), "France", "0655555555", "man", "chevalier@kaamelott.com"))
+                    .map(user -> executor.submit(() -> mockMvc.perform(post("/user")
+                                    .content(objectMapper.writeValueAsString(user))
+                                    .contentType(MediaType.APPLICATION_JSON))
+                            .andReturn().getResponse().getStatus()))
+                    .toList();
+
+            assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), statuses.getFirst().get());
+            for (Future<Integer> status : statuses.subList(1, statuses.size())) {
+                assertEquals(HttpStatus.CREATED.value(), status.get());
+            }
+        }
+
+        assertEquals(22, userRepository.count());
+    }
+
+    /**
+     * Test creation of users in one batch with a user failing in database, other users still created
+     */
+    @Test
+    void testCreateUsersOneFailing() {
+
+        User karadoc = new User(null, "karadoc", LocalDate.now().minusYears(40), "France", "0644444444", "man", "karadoc@kaamelott.com", null, null, null);
+        User perceval = new User(null, "perceval", LocalDate.now().minusYears(35), "France", "06555555555555555", "man", "perceval@kaamelott.com", null, null, null);
+
+        List<UserBulkResult> results = userService.createUsers(List.of(karadoc, perceval));
+
+        assertTrue(results.get(0).isCreated());
+        assertFalse(results.get(1).isCreated());
+        assertEquals("User cannot be created", results.get(1).error().getMessage());
+        assertTrue(userRepository.findByUsername("karadoc").isPresent());
+        assertTrue(userRepository.findByUsername("perceval").isEmpty());
+    }
+
+    /**
+     * Test creation new user asynchronously, written later
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testCreateUserLater() throws Exception {
+
+        LocalDate dateKaradocDTO = LocalDate.now().minusYears(40);
+        UserDTO user = new UserDTO("Karadoc", dateKaradocDTO, "France", "0644444444", "man", "karadoc@kaamelott.com");
+
+        MvcResult result = mockMvc.perform(post("/user")
+                        .header(Constants.PREFER_HEADER, Constants.RESPOND_ASYNC)
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(Constants.PREFERENCE_APPLIED_HEADER, Constants.RESPOND_ASYNC))
+                .andReturn();
+
+        String location = result.getResponse().getHeader(HttpHeaders.LOCATION);
+        assertNotNull(location);
+        assertThat(location, startsWith("http://localhost/user/creation/0-"));
+
+        // Wait for user to be written
+        UserCreationDTO creation;
+        int attempts = 0;
+        do {
+            Thread.sleep(50);
+            creation = objectMapper.readValue(mockMvc.perform(get(location))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString(), UserCreationDTO.class);
+        } while (creation.status() == HttpStatus.ACCEPTED.value() && ++attempts < 100);
+
+        assertEquals(HttpStatus.CREATED.value(), creation.status());
+        assertEquals("karadoc", creation.user().username());
+        assertTrue(userRepository.findByUsername("karadoc").isPresent());
+    }
+
+    /**
+     * Test creation of users asynchronously in one batch with a user failing in database, other users still created
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testCreateUserLaterOneFailing() throws Exception {
+
+        // Users queued before writer starts, so written in one batch
+        UserWriteBehind userWriteBehind = new UserWriteBehind(userService, userProperties, idProperties, new SimpleMeterRegistry());
+        String karadoc = userWriteBehind.submit(new User(null, "karadoc", LocalDate.now().minusYears(40), "France", "0644444444", "man", "karadoc@kaamelott.com", null, null, null));
+        String perceval = userWriteBehind.submit(new User(null, "perceval", LocalDate.now().minusYears(35), "France", "06555555555555555", "man", "perceval@kaamelott.com", null, null, null));
+
+        userWriteBehind.start();
+        try {
+            assertTrue(userWriteBehind.get(karadoc).orElseThrow().get(5, TimeUnit.SECONDS).isCreated());
+            assertFalse(userWriteBehind.get(perceval).orElseThrow().get(5, TimeUnit.SECONDS).isCreated());
+
+        } finally {
+            userWriteBehind.stop();
+        }
+
+        assertTrue(userRepository.findByUsername("karadoc").isPresent());
+        assertTrue(userRepository.findByUsername("perceval").isEmpty());
+    }
+
+    /**
+     * Test fail if creation user asynchronously not adult
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testCreateUserLaterNotAdult() throws Exception {
+
+        UserDTO user = new UserDTO("Karadoc", LocalDate.now().minusYears(10), "France", "0644444444", "man", "karadoc@kaamelott.com");
+
+        mockMvc.perform(post("/user")
+                        .header(Constants.PREFER_HEADER, Constants.RESPOND_ASYNC)
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isInternalServerError());
+
+        mockMvc.perform(get("/user/creation/unknown"))
+                .andExpect(status().isNotFound());
+    }
+
     /**
      * Test fail if creation user blank
      *
@@ -367,4 +527,95 @@ class UserCreateE2ETest {
                 .andExpect(status().isBadRequest());
     }
 
+    /**
+     * Test creation users in bulk, with result for each user
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testCreateUsers() throws Exception {
+
+        LocalDate dateAdultDTO = LocalDate.now().minusYears(40);
+        List<UserDTO> users = Arrays.asList(
+                new UserDTO("Karadoc", dateAdultDTO, "France", "0644444444", "man", "karadoc@kaamelott.com"),
+                new UserDTO("Guenièvre", dateGuenievreDTO, "France", "0622222222", "female", "reine@kaamelott.com"),
+                new UserDTO("Yvain", LocalDate.now().minusYears(17), "France", "0655555555", "man", "yvain@kaamelott.com"),
+                new UserDTO("Guethenoc", dateAdultDTO, "France", "0687654321", "man", "guethenoc.com"),
+                new UserDTO("karadoc", dateAdultDTO, "France", "0644444444", "man", "karadoc@kaamelott.com"),
+                null);
+
+        MvcResult result = mockMvc.perform(post("/user/bulk")
+                        .content(objectMapper.writeValueAsString(users))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<UserBulkResultDTO> resultsReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(resultsReceived.size(), is(6));
+        assertEquals(201, resultsReceived.get(0).status());
+        assertEquals("karadoc", resultsReceived.get(0).user().username());
+        assertEquals(500, resultsReceived.get(1).status());
+        assertEquals(500, resultsReceived.get(2).status());
+        assertEquals(400, resultsReceived.get(3).status());
+        assertEquals(500, resultsReceived.get(4).status());
+        assertEquals(400, resultsReceived.get(5).status());
+        assertTrue(userRepository.findByUsername("karadoc").isPresent());
+    }
+
+    /**
+     * Test creation users in bulk from NDJSON
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testCreateUsersNdjson() throws Exception {
+
+        LocalDate dateAdultDTO = LocalDate.now().minusYears(40);
+        String users = objectMapper.writeValueAsString(new UserDTO("Karadoc", dateAdultDTO, "France", "0644444444", "man", "karadoc@kaamelott.com"))
+                + "\n" + objectMapper.writeValueAsString(new UserDTO("Perceval", dateAdultDTO, "France", "0666666666", "man", "perceval@kaamelott.com"))
+                + "\n";
+
+        MvcResult result = mockMvc.perform(post("/user/bulk")
+                        .content(users)
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<UserBulkResultDTO> resultsReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(resultsReceived.size(), is(2));
+        assertEquals(201, resultsReceived.get(0).status());
+        assertEquals(201, resultsReceived.get(1).status());
+        assertTrue(userRepository.findByUsername("perceval").isPresent());
+    }
+
+    /**
+     * Test creation users in bulk from NDJSON with a null line, only this user is a bad request
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testCreateUsersNdjsonMissing() throws Exception {
+
+        String users = "null\n" + objectMapper.writeValueAsString(new UserDTO("Karadoc", LocalDate.now().minusYears(40), "France", "0644444444", "man", "karadoc@kaamelott.com"))
+                + "\n";
+
+        MvcResult result = mockMvc.perform(post("/user/bulk")
+                        .content(users)
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<UserBulkResultDTO> resultsReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(resultsReceived.size(), is(2));
+        assertEquals(400, resultsReceived.get(0).status());
+        assertEquals(201, resultsReceived.get(1).status());
+        assertTrue(userRepository.findByUsername("karadoc").isPresent());
+    }
+
 }
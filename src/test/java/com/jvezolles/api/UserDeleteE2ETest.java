@@ -1,8 +1,10 @@
 package com.jvezolles.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.user.UserETag;
 import com.jvezolles.api.user.UserRepository;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserVersion;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,12 +12,12 @@ import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.Clock;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.util.Date;
 
 import static org.mockito.Mockito.doReturn;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -42,9 +44,9 @@ class UserDeleteE2ETest {
     @Autowired
     private UserRepository userRepository;
 
-    private final Date dateArthur = Date.from(LocalDate.now().minusYears(40).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final Date dateGuenievre = Date.from(LocalDate.now().minusYears(39).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final Date dateMerlin = Date.from(LocalDate.now().minusYears(70).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
+    private final LocalDate dateArthur = LocalDate.now().minusYears(40);
+    private final LocalDate dateGuenievre = LocalDate.now().minusYears(39);
+    private final LocalDate dateMerlin = LocalDate.now().minusYears(70);
 
     /**
      * Before each test, add user
@@ -116,6 +118,26 @@ class UserDeleteE2ETest {
                 .andExpect(status().isNotFound());
     }
 
+    /**
+     * Test delete user if match, fail if ETag replaced or not valid
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testDeleteUserIfMatch() throws Exception {
+
+        String etag = UserETag.of(UserVersion.of(userRepository.findByUsername("arthur").orElseThrow()));
+
+        mockMvc.perform(delete("/user/arthur").header(HttpHeaders.IF_MATCH, etag.replace("-0\"", "-1\"")))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete("/user/arthur").header(HttpHeaders.IF_MATCH, "\"not-valid\""))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete("/user/arthur").header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/user/arthur").header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     /**
      * Test fail if deletion user not exist
      *
@@ -0,0 +1,206 @@
+package com.jvezolles.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.user.UserRepository;
+import com.jvezolles.api.user.UserTombstoneRepository;
+import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.util.Constants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests E2E for events of users
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserEventsE2ETest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserTombstoneRepository userTombstoneRepository;
+
+    private final LocalDate dateArthur = LocalDate.now().minusYears(40);
+
+    /**
+     * Before each test, add user
+     */
+    @BeforeEach
+    void setUp() {
+
+        User user = new User();
+        user.setUsername("arthur");
+        user.setBirthdate(dateArthur);
+        user.setCountry("France");
+        user.setPhone("0611111111");
+        user.setGender("man");
+        user.setEmail("roi@kaamelott.com");
+        userRepository.save(user);
+    }
+
+    /**
+     * After each test, remove users and tombstones
+     */
+    @AfterEach
+    void tearDown() {
+        userRepository.findAll().forEach(value -> userRepository.delete(value));
+        userTombstoneRepository.deleteAll();
+    }
+
+    /**
+     * Test receive events of writes on users
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserEvents() throws Exception {
+
+        MvcResult subscription = mockMvc.perform(get("/user-events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Update then delete user
+        UserDTO user = new UserDTO("arthur", dateArthur, "France", "0611223344", "man", "roi@kaamelott.com");
+        mockMvc.perform(patch("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+        mockMvc.perform(delete("/user/arthur"))
+                .andExpect(status().isNoContent());
+
+        String events = waitFor(subscription, "event:deleted");
+
+        assertThat(events, containsString("event:updated\ndata:{\"username\":\"arthur\",\"user\":{\"username\":\"arthur\""));
+        assertThat(events, containsString("\"phone\":\"0611223344\""));
+        assertThat(events, containsString("event:deleted\ndata:{\"username\":\"arthur\",\"user\":null}"));
+        assertTrue(events.indexOf("event:updated") < events.indexOf("event:deleted"));
+    }
+
+    /**
+     * Test resume events after last event received
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserEventsResume() throws Exception {
+
+        MvcResult subscription = mockMvc.perform(get("/user-events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        UserDTO user = new UserDTO("arthur", dateArthur, "France", "0611223344", "man", "roi@kaamelott.com");
+        mockMvc.perform(patch("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        // Id of event received before disconnection
+        Matcher matcher = Pattern.compile("id:(\\d+)\nevent:updated").matcher(waitFor(subscription, "event:updated"));
+        assertTrue(matcher.find());
+
+        mockMvc.perform(delete("/user/arthur"))
+                .andExpect(status().isNoContent());
+
+        // Only events after last event id are sent again
+        MvcResult resumed = mockMvc.perform(get("/user-events").header(Constants.LAST_EVENT_ID_HEADER, matcher.group(1)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String events = waitFor(resumed, "event:deleted");
+
+        assertThat(events, not(containsString("event:updated")));
+        assertThat(events, not(containsString("event:reset")));
+    }
+
+    /**
+     * Test reset if events after last event id are no longer available
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserEventsReset() throws Exception {
+
+        MvcResult subscription = mockMvc.perform(get("/user-events").header(Constants.LAST_EVENT_ID_HEADER, "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        waitFor(subscription, "event:reset");
+    }
+
+    /**
+     * Test fail if last event id not valid
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserEventsLastEventIdNotValid() throws Exception {
+
+        mockMvc.perform(get("/user-events").header(Constants.LAST_EVENT_ID_HEADER, "not-valid"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test get user named events, not taken for events of users
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserNamedEvents() throws Exception {
+
+        UserDTO user = new UserDTO("events", dateArthur, "France", "0633333333", "man", "events@kaamelott.com");
+        mockMvc.perform(post("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/user/events"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"username\":\"events\"")));
+    }
+
+    private String waitFor(MvcResult subscription, String expected) throws Exception {
+
+        // Events are sent asynchronously
+        String events;
+        int attempts = 0;
+        do {
+            Thread.sleep(50);
+            events = subscription.getResponse().getContentAsString();
+        } while (!events.contains(expected) && ++attempts < 100);
+
+        assertThat(events, containsString(expected));
+
+        return events;
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.jvezolles.api;
+
+import com.jvezolles.api.user.UserService;
+import com.jvezolles.api.user.model.UserFields;
+import com.jvezolles.api.user.model.UserFilter;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.Serial;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.containsStringIgnoringCase;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Tests E2E for plans of queries filtering users
+ * Each filter combination is run, then its SQL is explained, to check it uses an index instead of scanning users,
+ * and fields requested are checked to select only their columns
+ *
+ * @author Vezolles
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.jvezolles.api.UserFilterExplainE2ETest$LastSelect")
+class UserFilterExplainE2ETest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * After each test, forget last select of the thread, shared by other tests
+     */
+    @AfterEach
+    void tearDown() {
+        LastSelect.SQL.remove();
+    }
+
+    /**
+     * Test every filter combination uses an index, read in order of id when an equality is set
+     *
+     * @param country       the country filtered, none if null
+     * @param gender        the gender filtered, none if null
+     * @param birthdateFrom the min birthdate filtered, none if null
+     * @param birthdateTo   the max birthdate filtered, none if null
+     * @param index         the index expected
+     * @param sorted        true if users are read in order of id from the index, without sort
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "France, , , , USERS_COUNTRY_ID_IDX, true",
+            "France, man, , , USERS_COUNTRY_GENDER_ID_IDX, true",
+            "France, , 1980-01-01, , USERS_COUNTRY_ID_IDX, true",
+            "France, , , 2000-01-01, USERS_COUNTRY_ID_IDX, true",
+            "France, , 1980-01-01, 2000-01-01, USERS_COUNTRY_ID_IDX, true",
+            "France, man, 1980-01-01, , USERS_COUNTRY_GENDER_ID_IDX, true",
+            "France, man, , 2000-01-01, USERS_COUNTRY_GENDER_ID_IDX, true",
+            "France, man, 1980-01-01, 2000-01-01, USERS_COUNTRY_GENDER_ID_IDX, true",
+            ", man, , , USERS_GENDER_ID_IDX, true",
+            ", man, 1980-01-01, , USERS_GENDER_ID_IDX, true",
+            ", man, , 2000-01-01, USERS_GENDER_ID_IDX, true",
+            ", man, 1980-01-01, 2000-01-01, USERS_GENDER_ID_IDX, true",
+            ", , 1980-01-01, , USERS_BIRTHDATE_IDX, false",
+            ", , , 2000-01-01, USERS_BIRTHDATE_IDX, false",
+            ", , 1980-01-01, 2000-01-01, USERS_BIRTHDATE_IDX, false"
+    })
+    void testGetAllUsersFilteredUsesIndex(String country, String gender, LocalDate birthdateFrom, LocalDate birthdateTo, String index, boolean sorted) {
+
+        UserFilter filter = new UserFilter(country, gender, birthdateFrom, birthdateTo);
+
+        LastSelect.SQL.remove();
+        userService.getUsers(filter, UserFields.ALL, 0, 20);
+        String sql = LastSelect.SQL.get();
+        assertNotNull(sql);
+        assertThat(sql, containsString(" order by "));
+
+        // Bind criteria set in order of query, then page limits
+        List<Object> parameters = new ArrayList<>(Stream.of(country, gender, birthdateFrom, birthdateTo).filter(Objects::nonNull).toList());
+        while (parameters.size() < sql.chars().filter(c -> c == '?').count()) {
+            parameters.add(21);
+        }
+
+        String plan = String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class, parameters.toArray()));
+
+        assertThat(plan, containsString(index));
+        assertThat(plan, not(containsStringIgnoringCase("tableScan")));
+        assertEquals(sorted, plan.contains("/* index sorted */"));
+    }
+
+    /**
+     * Test fields requested select only their columns, with the index of the filter
+     */
+    @Test
+    void testGetAllUsersFieldsSelectsOnlyColumns() {
+
+        LastSelect.SQL.remove();
+        userService.getUsers(new UserFilter(null, "man", null, null), UserFields.parse("username,email"), 0, 20);
+        String sql = LastSelect.SQL.get();
+        assertNotNull(sql);
+
+        String columns = sql.substring(0, sql.indexOf(" from users "));
+        assertThat(columns, containsString("username"));
+        assertThat(columns, containsString("email"));
+        assertThat(columns, not(containsString("phone")));
+        assertThat(columns, not(containsString("country")));
+        assertThat(columns, not(containsString("birthdate")));
+        assertThat(sql, containsString(" order by "));
+
+        String plan = String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class, "man", 21, 0));
+
+        assertThat(plan, containsString("USERS_GENDER_ID_IDX"));
+        assertThat(plan, containsString("/* index sorted */"));
+    }
+
+    /**
+     * Statement inspector keeping the last select on users of the current thread
+     */
+    public static class LastSelect implements StatementInspector {
+
+        @Serial
+        private static final long serialVersionUID = 7205823946214473180L;
+
+        static final ThreadLocal<String> SQL = new ThreadLocal<>();
+
+        @Override
+        public String inspect(String sql) {
+
+            if (sql.startsWith("select") && sql.contains(" from users ")) {
+                SQL.set(sql);
+            }
+
+            return sql;
+        }
+
+    }
+
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jvezolles.api.user.UserRepository;
 import com.jvezolles.api.user.dto.UserDTO;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.util.Constants;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,22 +15,27 @@ import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.json.JsonCompareMode;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.Clock;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.util.Date;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.doReturn;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 /**
  * Tests E2E for user
@@ -52,9 +58,9 @@ class UserQueryE2ETest {
     @Autowired
     private UserRepository userRepository;
 
-    private final Date dateArthur = Date.from(LocalDate.now().minusYears(40).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final Date dateGuenievre = Date.from(LocalDate.now().minusYears(39).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final Date dateMerlin = Date.from(LocalDate.now().minusYears(70).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
+    private final LocalDate dateArthur = LocalDate.now().minusYears(40);
+    private final LocalDate dateGuenievre = LocalDate.now().minusYears(39);
+    private final LocalDate dateMerlin = LocalDate.now().minusYears(70);
 
     private final LocalDate dateArthurDTO = LocalDate.now().minusYears(40);
 
@@ -112,8 +118,13 @@ class UserQueryE2ETest {
     @Test
     void testGetAllUsers() throws Exception {
 
-        MvcResult result = mockMvc.perform(get("/user"))
+        MvcResult asyncResult = mockMvc.perform(get("/user"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andReturn();
 
         List<UserDTO> usersDTOReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
@@ -123,6 +134,32 @@ class UserQueryE2ETest {
         assertThat(usersDTOReceived.size(), is(3));
     }
 
+    /**
+     * Test get all user's details streamed as NDJSON
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetAllUsersNdjson() throws Exception {
+
+        MvcResult asyncResult = mockMvc.perform(get("/user")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        List<String> lines = result.getResponse().getContentAsString().lines().toList();
+
+        assertThat(lines.size(), is(3));
+        for (String line : lines) {
+            assertNotNull(objectMapper.readValue(line, UserDTO.class).username());
+        }
+    }
+
     /**
      * Test get all user's details with page and size
      *
@@ -130,13 +167,15 @@ class UserQueryE2ETest {
      */
     @ParameterizedTest
     @CsvSource({
-            "0, 2, 2",
-            "1, 2, 1"
+            "0, 2, 2, true",
+            "1, 2, 1, false"
     })
-    void testGetAllUsersWithPageAndSize(Integer page, Integer size, int resultSize) throws Exception {
+    void testGetAllUsersWithPageAndSize(Integer page, Integer size, int resultSize, String hasNext) throws Exception {
 
         MvcResult result = mockMvc.perform(get("/user?page=" + page + "&size=" + size))
                 .andExpect(status().isOk())
+                .andExpect(header().string(Constants.HAS_NEXT_HEADER, hasNext))
+                .andExpect(header().doesNotExist(Constants.TOTAL_COUNT_HEADER))
                 .andReturn();
 
         List<UserDTO> usersDTOReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
@@ -146,6 +185,255 @@ class UserQueryE2ETest {
         assertThat(usersDTOReceived.size(), is(resultSize));
     }
 
+    /**
+     * Test get all user's details with page and size, and total count requested
+     *
+     * @throws Exception if error occurs
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "exact",
+            "approximate"
+    })
+    void testGetAllUsersWithCount(String count) throws Exception {
+
+        mockMvc.perform(get("/user?page=0&size=2&count=" + count))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Constants.HAS_NEXT_HEADER, "true"))
+                .andExpect(header().string(Constants.TOTAL_COUNT_HEADER, "3"));
+    }
+
+    /**
+     * Test get all user's details with keyset pagination, following next cursor
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetAllUsersAfterCursor() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/user?after=&size=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(Constants.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        List<UserDTO> usersDTOReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(usersDTOReceived.size(), is(2));
+        assertEquals("arthur", usersDTOReceived.getFirst().username());
+
+        result = mockMvc.perform(get("/user?after=" + result.getResponse().getHeader(Constants.NEXT_CURSOR_HEADER) + "&size=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(Constants.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        usersDTOReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(usersDTOReceived.size(), is(1));
+        assertEquals("merlin", usersDTOReceived.getFirst().username());
+    }
+
+    /**
+     * Test fail if cursor is not valid
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetAllUsersAfterCursorNotValid() throws Exception {
+
+        mockMvc.perform(get("/user?after=not-valid"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user?after=&size=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user?after=&size=-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user?after=&country=France"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user?after=&fields=username"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test get user's details filtered by gender and birthdate range, by page, with count of users filtered
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetAllUsersFiltered() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/user?gender=man&birthdateFrom=" + dateMerlin.plusDays(1) + "&birthdateTo=" + dateArthur
+                        + "&page=0&size=2&count=approximate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Constants.HAS_NEXT_HEADER, "false"))
+                .andExpect(header().string(Constants.TOTAL_COUNT_HEADER, "1"))
+                .andReturn();
+
+        List<UserDTO> usersDTOReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(usersDTOReceived.size(), is(1));
+        assertEquals("arthur", usersDTOReceived.getFirst().username());
+
+        // Filter without size streams all users filtered, country whatever its case
+        MvcResult asyncResult = mockMvc.perform(get("/user?country=france&gender=man"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        result = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(Constants.HAS_NEXT_HEADER))
+                .andReturn();
+
+        usersDTOReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(usersDTOReceived.stream().map(UserDTO::username).toList(), contains("arthur", "merlin"));
+    }
+
+    /**
+     * Test get all user's details with only fields requested, by page or streamed
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetAllUsersFields() throws Exception {
+
+        mockMvc.perform(get("/user?gender=man&page=0&size=1&fields=username,birthdate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Constants.HAS_NEXT_HEADER, "true"))
+                .andExpect(content().json("[{\"username\":\"arthur\",\"birthdate\":\"" + dateArthurDTO + "\"}]", JsonCompareMode.STRICT));
+
+        // Without size, users are streamed with only fields requested
+        MvcResult asyncResult = mockMvc.perform(get("/user?fields=email")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsString().lines().toList(),
+                contains("{\"email\":\"roi@kaamelott.com\"}", "{\"email\":\"reine@kaamelott.com\"}", "{\"email\":\"merlin@kaamelott.com\"}"));
+    }
+
+    /**
+     * Test fail if fields requested not valid
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetAllUsersFieldsNotValid() throws Exception {
+
+        mockMvc.perform(get("/user?size=2&fields=username,password"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user?fields=password"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user/arthur?fields=password"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test search users by prefix of username or email, then next users after cursor
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testSearchUsers() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/user-search?q=R&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(Constants.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        List<UserDTO> usersDTOReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(usersDTOReceived.size(), is(1));
+        assertEquals("arthur", usersDTOReceived.getFirst().username());
+
+        // Guenièvre matches by email
+        result = mockMvc.perform(get("/user-search?q=R&size=1&after=" + result.getResponse().getHeader(Constants.NEXT_CURSOR_HEADER)))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(Constants.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        usersDTOReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(usersDTOReceived.size(), is(1));
+        assertEquals("guenièvre", usersDTOReceived.getFirst().username());
+    }
+
+    /**
+     * Test search users by text inside username or email
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testSearchUsersContains() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/user-search?q=LIN&match=contains"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(Constants.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        List<UserDTO> usersDTOReceived = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(usersDTOReceived.size(), is(1));
+        assertEquals("merlin", usersDTOReceived.getFirst().username());
+
+        // Wildcards are searched as text
+        result = mockMvc.perform(get("/user-search?q=%25_%25&match=CONTAINS"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertEquals("[]", result.getResponse().getContentAsString());
+    }
+
+    /**
+     * Test fail if search is not valid
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testSearchUsersNotValid() throws Exception {
+
+        mockMvc.perform(get("/user-search?q=in&match=contains"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user-search?q="))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user-search?q=arthur&match=exact"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user-search?q=art&size=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user-search?q=art&size=-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test get user named search, not taken for search of users
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserNamedSearch() throws Exception {
+
+        UserDTO user = new UserDTO("search", dateArthurDTO, "France", "0633333333", "man", "search@kaamelott.com");
+        mockMvc.perform(post("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        MvcResult result = mockMvc.perform(get("/user/search"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertEquals("search", objectMapper.readValue(result.getResponse().getContentAsString(), UserDTO.class).username());
+    }
+
     /**
      * Test get user's details
      *
@@ -169,6 +457,26 @@ class UserQueryE2ETest {
         assertEquals("roi@kaamelott.com", userDTOReceived.email());
     }
 
+    /**
+     * Test get user's details with only fields requested
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserFields() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/user/arthur?fields=phone,gender"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"phone\":\"0611111111\",\"gender\":\"man\"}", JsonCompareMode.STRICT))
+                .andReturn();
+
+        // Not modified for same fields only
+        mockMvc.perform(get("/user/arthur?fields=gender,phone").header(HttpHeaders.IF_NONE_MATCH, result.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/user/arthur?fields=phone").header(HttpHeaders.IF_NONE_MATCH, result.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isOk());
+    }
+
     /**
      * Test fail if user not exists
      *
@@ -1,9 +1,13 @@
 package com.jvezolles.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.user.UserETag;
 import com.jvezolles.api.user.UserRepository;
 import com.jvezolles.api.user.dto.UserDTO;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +15,7 @@ import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -18,10 +23,12 @@ import org.springframework.test.web.servlet.MvcResult;
 import java.time.Clock;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.util.Date;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doReturn;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -47,9 +54,12 @@ class UserReplaceE2ETest {
     @Autowired
     private UserRepository userRepository;
 
-    private final Date dateArthur = Date.from(LocalDate.now().minusYears(40).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final Date dateGuenievre = Date.from(LocalDate.now().minusYears(39).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final Date dateMerlin = Date.from(LocalDate.now().minusYears(70).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LocalDate dateArthur = LocalDate.now().minusYears(40);
+    private final LocalDate dateGuenievre = LocalDate.now().minusYears(39);
+    private final LocalDate dateMerlin = LocalDate.now().minusYears(70);
 
     private final LocalDate dateArthurDTO = LocalDate.now().minusYears(40);
 
@@ -124,6 +134,37 @@ class UserReplaceE2ETest {
         assertEquals("0611223344", userDTOReceived.phone());
         assertEquals("man", userDTOReceived.gender());
         assertEquals("leplusgrandroi@kaamelott.com", userDTOReceived.email());
+        assertThat(meterRegistry.get(Constants.USER_SERVICE_TIMER).tag("operation", "replace").timer().count(), greaterThan(0L));
+    }
+
+    /**
+     * Test fail if replace user with an ETag replaced, user is kept
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testReplaceUserIfMatchFailed() throws Exception {
+
+        UserDTO user = new UserDTO("Karadoc", dateArthurDTO, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+        String etag = UserETag.of(UserVersion.of(userRepository.findByUsername("arthur").orElseThrow()));
+        String etagReplaced = etag.replace("-0\"", "-1\"");
+
+        mockMvc.perform(put("/user/arthur")
+                        .header(HttpHeaders.IF_MATCH, etagReplaced)
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+
+        assertTrue(userRepository.findByUsername("arthur").isPresent());
+        assertTrue(userRepository.findByUsername("karadoc").isEmpty());
+
+        mockMvc.perform(put("/user/arthur")
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        assertTrue(userRepository.findByUsername("karadoc").isPresent());
     }
 
     /**
@@ -156,6 +197,24 @@ class UserReplaceE2ETest {
                 .andExpect(status().isInternalServerError());
     }
 
+    /**
+     * Test fail if replace user with an existing username, user is kept
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testReplaceUserExist() throws Exception {
+
+        UserDTO user = new UserDTO("Merlin", dateArthurDTO, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+
+        mockMvc.perform(put("/user/arthur")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isInternalServerError());
+
+        assertTrue(userRepository.findByUsername("arthur").isPresent());
+    }
+
     /**
      * Test fail if replace user not adult
      *
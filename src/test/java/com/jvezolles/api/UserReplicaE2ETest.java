@@ -0,0 +1,195 @@
+package com.jvezolles.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.config.ReplicaRoutingDataSource;
+import com.jvezolles.api.user.dto.UserChangesDTO;
+import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.util.Constants;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests E2E for user with a read replica
+ * Replica is a distinct H2 database, not replicated, to know which database served reads
+ *
+ * @author Vezolles
+ */
+@SpringBootTest(properties = {
+        "jvezolles.datasource.replicas[0].url=" + UserReplicaE2ETest.REPLICA_URL,
+        "jvezolles.datasource.replicas[0].username=restapis",
+        "jvezolles.datasource.replicas[0].driver-class-name=org.h2.Driver",
+        "jvezolles.datasource.read-your-writes-window=5s",
+        "spring.datasource.hikari.maximum-pool-size=7"
+})
+@AutoConfigureMockMvc
+class UserReplicaE2ETest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    private final JdbcTemplate replicaJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "restapis", ""));
+
+    private final LocalDate dateArthur = LocalDate.now().minusYears(40);
+
+    /**
+     * Before each test, add user on primary and another user on replica
+     * Users are inserted with JDBC, to not be in second-level cache
+     */
+    @BeforeEach
+    void setUp() {
+
+        jdbcTemplate.update("insert into users values (1, 'arthur', ?, 'France', '0611111111', 'man', 'roi@kaamelott.com', 0, current_timestamp, null)", dateArthur);
+
+        replicaJdbcTemplate.execute("create table if not exists users (id bigint primary key, username varchar(100) not null, "
+                + "birthdate date, country varchar(100), phone varchar(15), gender varchar(100), email varchar(100), version bigint default 0 not null, "
+                + "updated_at timestamp with time zone default current_timestamp not null, change_sequence bigint)");
+        replicaJdbcTemplate.update("insert into users values (1, 'perceval', ?, 'France', '0655555555', 'man', 'perceval@kaamelott.com', 0, current_timestamp, null)", dateArthur);
+    }
+
+    /**
+     * After each test, remove users on primary and replica
+     */
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from users");
+        replicaJdbcTemplate.update("delete from users");
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    /**
+     * Test get user's details is served by replica
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserFromReplica() throws Exception {
+
+        mockMvc.perform(get("/user/perceval"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/user/arthur"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Test replica pool is configured as primary pool, from spring hikari properties
+     */
+    @Test
+    void testReplicaPoolConfigured() {
+
+        HikariDataSource replica = (HikariDataSource) replicaRoutingDataSource.getResolvedDataSources().get("replica-0");
+
+        assertEquals(7, replica.getMaximumPoolSize());
+        assertEquals("replica-0", replica.getPoolName());
+    }
+
+    /**
+     * Test get user's details after a write of same client is served by primary
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserAfterWriteFromPrimary() throws Exception {
+
+        UserDTO user = new UserDTO("Karadoc", LocalDate.now().minusYears(40), "France", "0644444444", "man", "karadoc@kaamelott.com");
+
+        MvcResult result = mockMvc.perform(post("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(Constants.LAST_WRITE_COOKIE))
+                .andReturn();
+
+        Cookie lastWrite = result.getResponse().getCookie(Constants.LAST_WRITE_COOKIE);
+        assertNotNull(lastWrite);
+
+        // Evict user created from second-level cache, to read it from database
+        entityManagerFactory.getCache().evictAll();
+
+        // User written is loaded from primary once evicted from service cache, even without cookie
+        mockMvc.perform(get("/user/karadoc"))
+                .andExpect(status().isOk());
+
+        // Other users are read from replica, unless client wrote recently
+        mockMvc.perform(get("/user/arthur"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/user/arthur").cookie(lastWrite))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Test get changes of users is served by replica, up to the last sequence it has applied
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserChangesFromReplica() throws Exception {
+
+        // Replica has applied sequence of user of replica, not user of primary yet
+        replicaJdbcTemplate.execute("create table if not exists user_change_sequence (id int primary key, last_value bigint not null, purged_value bigint not null)");
+        replicaJdbcTemplate.execute("create table if not exists user_tombstones (id bigint primary key, username varchar(100) not null, "
+                + "deleted_at timestamp with time zone not null, change_sequence bigint)");
+        replicaJdbcTemplate.update("merge into user_change_sequence values (1, 1, 0)");
+        replicaJdbcTemplate.update("update users set change_sequence = 1");
+
+        MvcResult result = mockMvc.perform(get("/user-changes"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        UserChangesDTO changes = objectMapper.readValue(result.getResponse().getContentAsString(), UserChangesDTO.class);
+
+        assertThat(changes.users().stream().map(UserDTO::username).toList(), contains("perceval"));
+    }
+
+    /**
+     * Test get user's details with an expired write cookie is served by replica
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserAfterWindowFromReplica() throws Exception {
+
+        Cookie lastWrite = new Cookie(Constants.LAST_WRITE_COOKIE, "0");
+
+        mockMvc.perform(get("/user/arthur").cookie(lastWrite))
+                .andExpect(status().isNotFound());
+    }
+
+}
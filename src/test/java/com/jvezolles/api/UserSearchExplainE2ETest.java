@@ -0,0 +1,76 @@
+package com.jvezolles.api;
+
+import com.jvezolles.api.user.UserService;
+import com.jvezolles.api.user.model.UserSearchMatch;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.containsStringIgnoringCase;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Tests E2E for plans of queries searching users
+ * Each match is run, then its SQL is explained, to check each branch of the union reads users in order of id,
+ * stopping at limit, instead of scanning and sorting users
+ *
+ * @author Vezolles
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.jvezolles.api.UserFilterExplainE2ETest$LastSelect")
+class UserSearchExplainE2ETest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Test search by username and by email are two branches, each read in order of id without sort
+     *
+     * @param text    the text searched
+     * @param match   the match of text
+     * @param pattern the pattern bound
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "te, PREFIX, te%",
+            "test, CONTAINS, %test%"
+    })
+    void testSearchUsersUsesIndexByBranch(String text, UserSearchMatch match, String pattern) {
+
+        UserFilterExplainE2ETest.LastSelect.SQL.remove();
+        userService.searchUsers(text, match, null, 20);
+        String sql = UserFilterExplainE2ETest.LastSelect.SQL.get();
+        assertNotNull(sql);
+        assertThat(sql, containsString(" union all "));
+
+        // Bind pattern, id and limit of each branch, then limit of union
+        String plan = String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class,
+                pattern, Long.MIN_VALUE, 21, pattern, pattern, Long.MIN_VALUE, 21, 21));
+
+        assertEquals(2, count(plan, "/* index sorted */"));
+        assertThat(plan, containsString("USERNAME NOT LIKE"));
+        assertThat(plan, not(containsStringIgnoringCase("tableScan")));
+    }
+
+    private static int count(String plan, String text) {
+
+        int count = 0;
+        Matcher matcher = Pattern.compile(Pattern.quote(text)).matcher(plan);
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,421 @@
+package com.jvezolles.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.config.SqlStatisticsFilter;
+import com.jvezolles.api.user.UserRepository;
+import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests E2E for number of SQL statements by user api
+ *
+ * @author Vezolles
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+class UserStatementCountE2ETest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LocalDate dateArthur = LocalDate.now().minusYears(40);
+
+    private final LocalDate dateArthurDTO = LocalDate.now().minusYears(40);
+
+    private Statistics statistics;
+
+    /**
+     * Before each test, add user and reset statistics
+     */
+    @BeforeEach
+    void setUp() {
+
+        User user = new User();
+        user.setUsername("arthur");
+        user.setBirthdate(dateArthur);
+        user.setCountry("France");
+        user.setPhone("0611111111");
+        user.setGender("man");
+        user.setEmail("roi@kaamelott.com");
+        userRepository.save(user);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    /**
+     * After each test, remove user
+     */
+    @AfterEach
+    void tearDown() {
+        userRepository.findAll().forEach(value -> userRepository.delete(value));
+    }
+
+    /**
+     * Test get page of users with one statement, users with their versions, without count
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUsersPageOneStatement() throws Exception {
+
+        mockMvc.perform(get("/user?page=0&size=20"))
+                .andExpect(status().isOk());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Test get page of users modified since ETag known by client with two statements, versions then users, without count
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUsersPageModifiedTwoStatements() throws Exception {
+
+        mockMvc.perform(get("/user?page=0&size=20")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk());
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Test get user twice without statement the second time, from second-level cache
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserCachedNoStatement() throws Exception {
+
+        mockMvc.perform(get("/user/arthur"))
+                .andExpect(status().isOk());
+
+        statistics.clear();
+
+        mockMvc.perform(get("/user/Arthur"))
+                .andExpect(status().isOk());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", Constants.USER_CACHE_REGION).tag("result", "hit").functionCounter().count() > 0);
+    }
+
+    /**
+     * Test get user not modified without statement nor body, once cached
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserNotModifiedNoStatement() throws Exception {
+
+        String etag = mockMvc.perform(get("/user/arthur"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        statistics.clear();
+
+        mockMvc.perform(get("/user/arthur").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Test get page of users not modified with only the statement of versions, then modified after an update
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUsersPageNotModified() throws Exception {
+
+        String etag = mockMvc.perform(get("/user?page=0&size=20"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        statistics.clear();
+
+        mockMvc.perform(get("/user?page=0&size=20").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        UserDTO user = new UserDTO("Arthur", dateArthurDTO, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+        mockMvc.perform(patch("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/user?page=0&size=20").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Test replace user not in natural id cache evicts only this user from second-level cache, found by id in database
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testReplaceUserNotInNaturalIdCacheEvictsOnlyUserWritten() throws Exception {
+
+        User karadoc = new User(null, "karadoc", dateArthur, "France", "0644444444", "man", "karadoc@kaamelott.com", null, null, null);
+        Long karadocId = userRepository.save(karadoc).getId();
+        Long arthurId = userRepository.findByUsername("arthur").orElseThrow().getId();
+
+        mockMvc.perform(get("/user/arthur"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/user/karadoc"))
+                .andExpect(status().isOk());
+
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictNaturalIdData(User.class);
+
+        UserDTO user = new UserDTO("Arthur", dateArthurDTO, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+        mockMvc.perform(put("/user/arthur")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        assertFalse(entityManagerFactory.getCache().contains(User.class, arthurId));
+        assertTrue(entityManagerFactory.getCache().contains(User.class, karadocId));
+    }
+
+    /**
+     * Test get user not found repeatedly with one statement, user not found being cached
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testGetUserNotFoundCachedOneStatement() throws Exception {
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/user/lancelot"))
+                    .andExpect(status().isNotFound());
+        }
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Test update user with one statement
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testUpdateUserOneStatement() throws Exception {
+
+        UserDTO user = new UserDTO("Arthur", dateArthurDTO, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+
+        mockMvc.perform(patch("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(SqlStatisticsFilter.SERVER_TIMING_HEADER, containsString("desc=\"statements: 1\"")));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, meterRegistry.get(SqlStatisticsFilter.SQL_STATEMENTS_METRIC).tag("controller", "UserControllerImpl").tag("method", "updateUser").summary().max());
+    }
+
+    /**
+     * Test update and delete user evict only this user from second-level cache
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testWriteUserEvictsOnlyUserWritten() throws Exception {
+
+        User perceval = new User(null, "perceval", dateArthur, "France", "0655555555", "man", "perceval@kaamelott.com", null, null, null);
+        Long percevalId = userRepository.save(perceval).getId();
+        Long arthurId = userRepository.findByUsername("arthur").orElseThrow().getId();
+
+        mockMvc.perform(get("/user/arthur"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/user/perceval"))
+                .andExpect(status().isOk());
+
+        assertTrue(entityManagerFactory.getCache().contains(User.class, arthurId));
+        assertTrue(entityManagerFactory.getCache().contains(User.class, percevalId));
+
+        // Update evicts only user updated, read again with its new details
+        UserDTO user = new UserDTO("Arthur", dateArthurDTO, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+        mockMvc.perform(patch("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        assertFalse(entityManagerFactory.getCache().contains(User.class, arthurId));
+        assertTrue(entityManagerFactory.getCache().contains(User.class, percevalId));
+
+        mockMvc.perform(get("/user/arthur"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("0611223344")));
+
+        // Delete evicts only user deleted, not found once deleted
+        mockMvc.perform(delete("/user/perceval"))
+                .andExpect(status().isNoContent());
+
+        assertFalse(entityManagerFactory.getCache().contains(User.class, percevalId));
+        assertTrue(entityManagerFactory.getCache().contains(User.class, arthurId));
+
+        mockMvc.perform(get("/user/perceval"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Test update user not exists with one statement
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testUpdateUserNotExistOneStatement() throws Exception {
+
+        UserDTO user = new UserDTO("Lancelot", dateArthurDTO, "France", "0611223344", "man", "lancelot@kaamelott.com");
+
+        mockMvc.perform(patch("/user")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isInternalServerError());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Test stream users with statements of the async thread recorded once the async dispatch completed
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testStreamUsersStatementsRecordedAfterAsyncDispatch() throws Exception {
+
+        DistributionSummary before = meterRegistry.find(SqlStatisticsFilter.SQL_STATEMENTS_METRIC).tag("controller", "UserControllerImpl").tag("method", "streamUsers").summary();
+        long countBefore = before == null ? 0 : before.count();
+        double totalBefore = before == null ? 0 : before.totalAmount();
+
+        MvcResult asyncResult = mockMvc.perform(get("/user"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk());
+
+        DistributionSummary summary = meterRegistry.get(SqlStatisticsFilter.SQL_STATEMENTS_METRIC).tag("controller", "UserControllerImpl").tag("method", "streamUsers").summary();
+        assertTrue(statistics.getPrepareStatementCount() > 0);
+        assertEquals(countBefore + 1, summary.count());
+        assertEquals(totalBefore + statistics.getPrepareStatementCount(), summary.totalAmount());
+    }
+
+    /**
+     * Test replace user with same username with one statement
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testReplaceUserOneStatement() throws Exception {
+
+        UserDTO user = new UserDTO("Arthur", dateArthurDTO, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+
+        mockMvc.perform(put("/user/arthur")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Test replace user with new username with three statements, delete, tombstone and insert
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testReplaceUserNewUsernameThreeStatements() throws Exception {
+
+        UserDTO user = new UserDTO("Pendragon", dateArthurDTO, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+
+        mockMvc.perform(put("/user/arthur")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertTrue(userRepository.findByUsername("arthur").isEmpty());
+        assertTrue(userRepository.findByUsername("pendragon").isPresent());
+    }
+
+    /**
+     * Test delete user with two statements, delete and tombstone
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testDeleteUserTwoStatements() throws Exception {
+
+        mockMvc.perform(delete("/user/arthur"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(SqlStatisticsFilter.SERVER_TIMING_HEADER, containsString("desc=\"statements: 2\"")));
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    /**
+     * Test delete user not exists with one statement
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testDeleteUserNotExistOneStatement() throws Exception {
+
+        mockMvc.perform(delete("/user/lancelot"))
+                .andExpect(status().isInternalServerError());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+}
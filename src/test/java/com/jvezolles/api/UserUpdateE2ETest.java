@@ -1,9 +1,11 @@
 package com.jvezolles.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.user.UserETag;
 import com.jvezolles.api.user.UserRepository;
 import com.jvezolles.api.user.dto.UserDTO;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserVersion;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +13,7 @@ import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -18,9 +21,9 @@ import org.springframework.test.web.servlet.MvcResult;
 import java.time.Clock;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.doReturn;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
@@ -47,9 +50,9 @@ class UserUpdateE2ETest {
     @Autowired
     private UserRepository userRepository;
 
-    private final Date dateArthur = Date.from(LocalDate.now().minusYears(40).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final Date dateGuenievre = Date.from(LocalDate.now().minusYears(39).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final Date dateMerlin = Date.from(LocalDate.now().minusYears(70).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
+    private final LocalDate dateArthur = LocalDate.now().minusYears(40);
+    private final LocalDate dateGuenievre = LocalDate.now().minusYears(39);
+    private final LocalDate dateMerlin = LocalDate.now().minusYears(70);
 
     private final LocalDate dateArthurDTO = LocalDate.now().minusYears(40);
 
@@ -126,6 +129,53 @@ class UserUpdateE2ETest {
         assertEquals("leplusgrandroi@kaamelott.com", userDTOReceived.email());
     }
 
+    /**
+     * Test update user if match, then fail with the ETag replaced
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testUpdateUserIfMatch() throws Exception {
+
+        UserDTO user = new UserDTO("Arthur", dateArthurDTO, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+        String etag = UserETag.of(UserVersion.of(userRepository.findByUsername("arthur").orElseThrow()));
+
+        MvcResult result = mockMvc.perform(patch("/user")
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        String etagUpdated = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etagUpdated);
+        assertNotEquals(etag, etagUpdated);
+        assertEquals(etagUpdated, UserETag.of(UserVersion.of(userRepository.findByUsername("arthur").orElseThrow())));
+
+        mockMvc.perform(patch("/user")
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    /**
+     * Test fail if update user with an ETag not valid
+     *
+     * @throws Exception if error occurs
+     */
+    @Test
+    void testUpdateUserIfMatchNotValid() throws Exception {
+
+        UserDTO user = new UserDTO("Arthur", dateArthurDTO, "France", "0611223344", "man", "leplusgrandroi@kaamelott.com");
+
+        mockMvc.perform(patch("/user")
+                        .header(HttpHeaders.IF_MATCH, "W/\"1-0\"")
+                        .content(objectMapper.writeValueAsString(user))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     /**
      * Test fail if update user blank
      *
@@ -0,0 +1,63 @@
+package com.jvezolles.api.config;
+
+import com.jvezolles.api.util.TimeOrderedIdentifierGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests for IdConfig
+ *
+ * @author Vezolles
+ */
+class IdConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(TestConfig.class);
+
+    @Test
+    void testNodeMissingFailsAtStartup() {
+
+        contextRunner.run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Test
+    void testNodeOutOfRangeFailsAtStartup() {
+
+        contextRunner.withPropertyValues("jvezolles.id.node=1024")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Test
+    void testNodeSetToHibernate() {
+
+        contextRunner.withPropertyValues("jvezolles.id.node=3")
+                .run(context -> {
+                    assertNull(context.getStartupFailure());
+
+                    Map<String, Object> properties = new HashMap<>();
+                    context.getBean(HibernatePropertiesCustomizer.class).customize(properties);
+                    assertEquals(3, properties.get(TimeOrderedIdentifierGenerator.NODE_SETTING));
+                });
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(IdProperties.class)
+    @Import(IdConfig.class)
+    static class TestConfig {
+    }
+
+}
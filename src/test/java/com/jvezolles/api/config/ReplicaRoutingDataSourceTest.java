@@ -0,0 +1,153 @@
+package com.jvezolles.api.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Unit tests for ReplicaRoutingDataSource
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource replica0;
+
+    @Mock
+    private DataSource replica1;
+
+    @Mock
+    private Connection connection;
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReplicaRoutingDataSource.clearPrimary();
+    }
+
+    @Test
+    void testReadOnlyRoutedToReplicasInTurn() {
+
+        ReplicaRoutingDataSource dataSource = routingDataSource();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(dataSource.determineCurrentLookupKey(), is("replica-0"));
+        assertThat(dataSource.determineCurrentLookupKey(), is("replica-1"));
+        assertThat(dataSource.determineCurrentLookupKey(), is("replica-0"));
+    }
+
+    @Test
+    void testReadWriteRoutedToPrimary() {
+
+        ReplicaRoutingDataSource dataSource = routingDataSource();
+
+        assertThat(dataSource.determineCurrentLookupKey(), is(ReplicaRoutingDataSource.PRIMARY));
+    }
+
+    @Test
+    void testPrimaryForcedRoutedToPrimary() {
+
+        ReplicaRoutingDataSource dataSource = routingDataSource();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        ReplicaRoutingDataSource.forcePrimary();
+
+        assertThat(dataSource.determineCurrentLookupKey(), is(ReplicaRoutingDataSource.PRIMARY));
+    }
+
+    @Test
+    void testUnhealthyReplicaNotRouted() throws SQLException {
+
+        doReturn(connection).when(replica0).getConnection();
+        doReturn(true).when(connection).isValid(anyInt());
+        doThrow(new SQLException("Connection refused")).when(replica1).getConnection();
+
+        ReplicaRoutingDataSource dataSource = routingDataSource();
+        dataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(dataSource.getHealthyReplicas(), is(List.of("replica-0")));
+        assertThat(dataSource.determineCurrentLookupKey(), is("replica-0"));
+        assertThat(dataSource.determineCurrentLookupKey(), is("replica-0"));
+    }
+
+    @Test
+    void testNoHealthyReplicaRoutedToPrimary() throws SQLException {
+
+        doThrow(new SQLException("Connection refused")).when(replica0).getConnection();
+        doReturn(connection).when(replica1).getConnection();
+        doReturn(false).when(connection).isValid(anyInt());
+
+        ReplicaRoutingDataSource dataSource = routingDataSource();
+        dataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(dataSource.getHealthyReplicas(), is(List.of()));
+        assertThat(dataSource.determineCurrentLookupKey(), is(ReplicaRoutingDataSource.PRIMARY));
+    }
+
+    @Test
+    void testReplicaNotAnsweringNotRouted() throws SQLException {
+
+        doReturn(connection).when(replica0).getConnection();
+        doReturn(true).when(connection).isValid(anyInt());
+        doAnswer(_ -> {
+            Thread.sleep(Duration.ofSeconds(30));
+            return connection;
+        }).when(replica1).getConnection();
+
+        ReplicaRoutingDataSource dataSource = routingDataSource();
+        long start = System.nanoTime();
+        dataSource.checkReplicas();
+
+        assertThat(dataSource.getHealthyReplicas(), is(List.of("replica-0")));
+        assertThat(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0, is(true));
+    }
+
+    @Test
+    void testCloseClosesReplicas() throws IOException {
+
+        DataSource closeableReplica = mock(DataSource.class, withSettings().extraInterfaces(Closeable.class));
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary, Map.of("replica-0", closeableReplica), Duration.ofSeconds(1));
+
+        dataSource.close();
+
+        verify((Closeable) closeableReplica).close();
+    }
+
+    private ReplicaRoutingDataSource routingDataSource() {
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", replica0);
+        replicas.put("replica-1", replica1);
+
+        return new ReplicaRoutingDataSource(primary, replicas, Duration.ofSeconds(1));
+    }
+
+}
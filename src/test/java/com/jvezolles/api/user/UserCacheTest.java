@@ -0,0 +1,154 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.config.ReplicaRoutingDataSource;
+import com.jvezolles.api.config.UserProperties;
+import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.user.model.VersionedUser;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for UserCache
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private UserCache userCache;
+
+    private final LocalDate date = LocalDate.of(2002, 1, 8);
+    private final User user = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
+    private final UserDTO userDTO = new UserDTO("test", LocalDate.of(2002, 1, 8), "France", "0612345678", "man", "test@test.com");
+    private final VersionedUser versionedUser = new VersionedUser(userDTO, new UserVersion(1L, 0L));
+
+    @BeforeEach
+    void setUp() {
+        userCache = new UserCache(userRepository, Mappers.getMapper(UserMapper.class), transactionManager, new UserProperties(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoutingDataSource.clearPrimary();
+    }
+
+    @Test
+    void testGetUserLoadedOnce() {
+
+        when(userRepository.findByNaturalId("test")).thenReturn(Optional.of(user));
+
+        assertEquals(Optional.of(versionedUser), userCache.get("test"));
+        assertEquals(Optional.of(versionedUser), userCache.get("test"));
+
+        verify(userRepository, times(1)).findByNaturalId("test");
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", Constants.USER_SERVICE_CACHE).tag("result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", Constants.USER_SERVICE_CACHE).tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void testGetUserNotFoundCached() {
+
+        when(userRepository.findByNaturalId("testnotfound")).thenReturn(Optional.empty());
+
+        assertTrue(userCache.get("testnotfound").isEmpty());
+        assertTrue(userCache.get("testnotfound").isEmpty());
+
+        verify(userRepository, times(1)).findByNaturalId("testnotfound");
+    }
+
+    @Test
+    void testEvictUser() {
+
+        when(userRepository.findByNaturalId("test")).thenReturn(Optional.empty()).thenReturn(Optional.of(user));
+
+        assertTrue(userCache.get("test").isEmpty());
+        userCache.evict("test");
+
+        assertEquals(Optional.of(versionedUser), userCache.get("test"));
+        verify(userRepository, times(2)).findByNaturalId("test");
+    }
+
+    @Test
+    void testEvictUserLoadedFromPrimary() {
+
+        List<Boolean> primaryForced = new ArrayList<>();
+        when(userRepository.findByNaturalId("test")).thenAnswer(_ -> {
+            primaryForced.add(ReplicaRoutingDataSource.isPrimaryForced());
+            return Optional.of(user);
+        });
+
+        // Loaded from replica, then from primary once evicted, then cached
+        userCache.get("test");
+        userCache.evict("test");
+        userCache.get("test");
+        userCache.get("test");
+
+        assertEquals(List.of(false, true), primaryForced);
+        assertFalse(ReplicaRoutingDataSource.isPrimaryForced());
+    }
+
+    @Test
+    void testEvictUserAfterTransaction() {
+
+        when(userRepository.findByNaturalId("test")).thenReturn(Optional.empty()).thenReturn(Optional.of(user));
+        assertTrue(userCache.get("test").isEmpty());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userCache.evict("test");
+
+            // Not evicted until transaction is completed
+            assertTrue(userCache.get("test").isEmpty());
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), 0);
+
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(Optional.of(versionedUser), userCache.get("test"));
+    }
+
+    @Test
+    void testGetUserPrimaryForcedReplacesCached() {
+
+        when(userRepository.findByNaturalId("test")).thenReturn(Optional.empty()).thenReturn(Optional.of(user));
+        assertTrue(userCache.get("test").isEmpty());
+
+        ReplicaRoutingDataSource.forcePrimary();
+        assertEquals(Optional.of(versionedUser), userCache.get("test"));
+        ReplicaRoutingDataSource.clearPrimary();
+
+        assertEquals(Optional.of(versionedUser), userCache.get("test"));
+        verify(userRepository, times(2)).findByNaturalId("test");
+    }
+
+}
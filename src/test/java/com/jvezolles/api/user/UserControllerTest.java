@@ -1,26 +1,67 @@
 package com.jvezolles.api.user;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.user.dto.UserBulkResultDTO;
+import com.jvezolles.api.user.dto.UserChangesDTO;
+import com.jvezolles.api.user.dto.UserCreationDTO;
 import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.exception.UserChangesExpiredException;
+import com.jvezolles.api.user.exception.UserCreateException;
+import com.jvezolles.api.user.exception.UserCursorException;
+import com.jvezolles.api.user.exception.UserFieldsException;
+import com.jvezolles.api.user.exception.UserNotEligibleException;
+import com.jvezolles.api.user.exception.UserPreconditionFailedException;
+import com.jvezolles.api.user.exception.UserSearchException;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserBulkResult;
+import com.jvezolles.api.user.model.UserChangePosition;
+import com.jvezolles.api.user.model.UserChanges;
+import com.jvezolles.api.user.model.UserFields;
+import com.jvezolles.api.user.model.UserFilter;
+import com.jvezolles.api.user.model.UserSearchMatch;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.user.model.VersionedUser;
+import com.jvezolles.api.util.Constants;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.Test;
 import org.mapstruct.factory.Mappers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
-
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.time.ZoneOffset;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 /**
  * Unit tests for UserController
@@ -36,39 +77,293 @@ class UserControllerTest {
     @Mock
     private UserService userService;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     @InjectMocks
-    private UserController userController = new UserControllerImpl(userMapper, userService);
-
-    private final Date date = Date.from(LocalDate.of(2002, 1, 8).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final User userWithoutId = new User(null, "test", date, "France", "0612345678", "man", "test@test.com");
-    private final User user = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com");
-    private final User userUpdated = new User(1L, "test2", date, "France", "0612345678", "female", "test@test.com");
-    private final User user2 = new User(2L, "test2", date, "France", "0612345678", "man", "test@test.com");
-    private final User user3 = new User(3L, "test3", date, "France", "0612345678", "man", "test@test.com");
+    private UserController userController = new UserControllerImpl(userMapper, userService, objectMapper, validator);
+
+    private final LocalDate date = LocalDate.of(2002, 1, 8);
+    private final User userWithoutId = new User(null, "test", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+    private final User user = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
+    private final User userUpdated = new User(1L, "test2", date, "France", "0612345678", "female", "test@test.com", 0L, null, null);
+    private final User user2 = new User(2L, "test2", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
+    private final User user3 = new User(3L, "test3", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
     private final LocalDate dateDTO = LocalDate.of(2002, 1, 8);
     private final UserDTO userDTO = new UserDTO("test", dateDTO, "France", "0612345678", "man", "test@test.com");
     private final UserDTO userDTO2 = new UserDTO("test2", dateDTO, "France", "0612345678", "man", "test@test.com");
     private final UserDTO userDTO3 = new UserDTO("test3", dateDTO, "France", "0612345678", "man", "test@test.com");
+    private final List<UserVersion> versions = List.of(new UserVersion(1L, 0L), new UserVersion(2L, 0L), new UserVersion(3L, 0L));
 
     @Test
     void testGetAllUser() {
 
-        when(userService.getUsers(1, 3)).thenReturn(List.of(user, user2, user3));
+        when(userService.getVersionedUsers(UserFilter.NONE, UserFields.ALL, 1, 3)).thenReturn(versionedUsers(PageRequest.of(1, 3), true));
 
-        List<UserDTO> result = userController.getUsers(1, 3);
+        ResponseEntity<List<UserDTO>> result = userController.getUsers(1, 3, null, UserFilter.NONE, null);
 
-        verify(userService).getUsers(1, 3);
-        assertNotNull(result);
-        assertThat(result.size(), is(3));
-        assertThat(result, contains(userDTO, userDTO2, userDTO3));
+        verify(userService).getVersionedUsers(UserFilter.NONE, UserFields.ALL, 1, 3);
+        verify(userService, never()).getUserVersions(any(), any(), any());
+        verify(userService, never()).getUsers(any(), any(), any(), any());
+        assertEquals(UserETag.of(new SliceImpl<>(versions, PageRequest.of(1, 3), true), UserFields.ALL), result.getHeaders().getETag());
+        verify(userService, never()).countUsers(any(), anyBoolean());
+        assertNotNull(result.getBody());
+        assertThat(result.getBody(), contains(userDTO, userDTO2, userDTO3));
+        assertEquals("true", result.getHeaders().getFirst(Constants.HAS_NEXT_HEADER));
+        assertNull(result.getHeaders().getFirst(Constants.TOTAL_COUNT_HEADER));
+    }
+
+    @Test
+    void testGetAllUserWithCount() {
+
+        when(userService.getVersionedUsers(UserFilter.NONE, UserFields.ALL, 0, 3)).thenReturn(versionedUsers(PageRequest.of(0, 3), false));
+        when(userService.countUsers(UserFilter.NONE, false)).thenReturn(3L);
+        when(userService.countUsers(UserFilter.NONE, true)).thenReturn(3L);
+
+        ResponseEntity<List<UserDTO>> approximate = userController.getUsers(0, 3, "approximate", UserFilter.NONE, null);
+        ResponseEntity<List<UserDTO>> exact = userController.getUsers(0, 3, "exact", UserFilter.NONE, null);
+
+        verify(userService).countUsers(UserFilter.NONE, false);
+        verify(userService).countUsers(UserFilter.NONE, true);
+        assertEquals("false", approximate.getHeaders().getFirst(Constants.HAS_NEXT_HEADER));
+        assertEquals("3", approximate.getHeaders().getFirst(Constants.TOTAL_COUNT_HEADER));
+        assertEquals("3", exact.getHeaders().getFirst(Constants.TOTAL_COUNT_HEADER));
+    }
+
+    @Test
+    void testStreamUsers() throws IOException {
+
+        streamUsersFromService();
+
+        ResponseEntity<StreamingResponseBody> result = userController.streamUsers(null, UserFilter.NONE, null);
+
+        assertNotNull(result.getBody());
+        assertEquals(MediaType.APPLICATION_JSON, result.getHeaders().getContentType());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        result.getBody().writeTo(outputStream);
+
+        List<UserDTO> users = objectMapper.readValue(outputStream.toByteArray(), new TypeReference<>() {
+        });
+        assertThat(users, contains(userDTO, userDTO2, userDTO3));
+    }
+
+    @Test
+    void testStreamUsersNdjson() throws IOException {
+
+        streamUsersFromService();
+
+        ResponseEntity<StreamingResponseBody> result = userController.streamUsers(MediaType.APPLICATION_NDJSON_VALUE, UserFilter.NONE, null);
+
+        assertNotNull(result.getBody());
+        assertEquals(MediaType.APPLICATION_NDJSON, result.getHeaders().getContentType());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        result.getBody().writeTo(outputStream);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines.length, is(3));
+        assertEquals(userDTO, objectMapper.readValue(lines[0], UserDTO.class));
+        assertEquals(userDTO2, objectMapper.readValue(lines[1], UserDTO.class));
+        assertEquals(userDTO3, objectMapper.readValue(lines[2], UserDTO.class));
+    }
+
+    @Test
+    void testGetAllUsersFiltered() {
+
+        UserFilter filter = new UserFilter("France", "man", LocalDate.of(2000, 1, 1), LocalDate.of(2002, 12, 31));
+        when(userService.getVersionedUsers(filter, UserFields.ALL, null, null)).thenReturn(new SliceImpl<>(List.of(new VersionedUser(userDTO2, new UserVersion(2L, 0L)))));
+        when(userService.countUsers(filter, false)).thenReturn(1L);
+
+        ResponseEntity<List<UserDTO>> result = userController.getUsers(null, null, "approximate", filter, null);
+
+        verify(userService).getVersionedUsers(filter, UserFields.ALL, null, null);
+        verify(userService).countUsers(filter, false);
+        assertThat(result.getBody(), contains(userDTO2));
+        assertEquals("1", result.getHeaders().getFirst(Constants.TOTAL_COUNT_HEADER));
+    }
+
+    @Test
+    void testGetAllUsersFields() throws IOException {
+
+        UserFields fields = UserFields.parse("username,email");
+        UserDTO userFields = new UserDTO("test", null, null, null, null, "test@test.com");
+        SliceImpl<UserVersion> userVersions = new SliceImpl<>(List.of(new UserVersion(1L, 0L)), PageRequest.of(0, 3), false);
+        when(userService.getUserVersions(UserFilter.NONE, 0, 3)).thenReturn(userVersions);
+        when(userService.getVersionedUsers(UserFilter.NONE, fields, 0, 3)).thenReturn(new SliceImpl<>(List.of(new VersionedUser(userFields, new UserVersion(1L, 0L))), PageRequest.of(0, 3), false));
+
+        ResponseEntity<JsonSerializable> result = userController.getUsersFields(0, 3, null, UserFilter.NONE, "email, username", null);
+        String etag = result.getHeaders().getETag();
+        ResponseEntity<JsonSerializable> notModified = userController.getUsersFields(0, 3, null, UserFilter.NONE, "username,email", etag);
+
+        verify(userService).getVersionedUsers(UserFilter.NONE, fields, 0, 3);
+        verify(userService).getUserVersions(UserFilter.NONE, 0, 3);
+        verify(userService, never()).getUsers(any(), any(), any(), any());
+        assertEquals("[{\"username\":\"test\",\"email\":\"test@test.com\"}]", objectMapper.writeValueAsString(result.getBody()));
+        assertEquals("false", result.getHeaders().getFirst(Constants.HAS_NEXT_HEADER));
+        assertNotEquals(UserETag.of(userVersions, UserFields.ALL), etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+    }
+
+    @Test
+    void testGetAllUsersFieldsNotValid() {
+
+        try {
+            userController.getUsersFields(0, 3, null, UserFilter.NONE, "username,password", null);
+            fail();
+
+        } catch (UserFieldsException e) {
+            assertEquals("User fields are not valid, unknown field password", e.getMessage());
+        }
+
+        verify(userService, never()).getUsers(any(), any(), any(), any());
+    }
+
+    @Test
+    void testStreamUsersFields() throws IOException {
+
+        UserFields fields = UserFields.parse("username,birthdate");
+        doAnswer(invocation -> {
+            Consumer<UserDTO> action = invocation.getArgument(2);
+            List.of(userDTO, userDTO2).forEach(user -> action.accept(new UserDTO(user.username(), user.birthdate(), null, null, null, null)));
+            return null;
+        }).when(userService).streamUsers(eq(UserFilter.NONE), eq(fields), any());
+
+        ResponseEntity<StreamingResponseBody> result = userController.streamUsers(MediaType.APPLICATION_NDJSON_VALUE, UserFilter.NONE, "username,birthdate");
+
+        assertNotNull(result.getBody());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        result.getBody().writeTo(outputStream);
+
+        assertEquals("{\"username\":\"test\",\"birthdate\":\"2002-01-08\"}\n{\"username\":\"test2\",\"birthdate\":\"2002-01-08\"}\n",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testGetUsersAfter() {
+
+        when(userService.getUsersAfter(1L, 2)).thenReturn(Window.from(List.of(user2, user3), ScrollPosition::offset, true));
+
+        ResponseEntity<List<UserDTO>> result = userController.getUsersAfter(UserCursor.encode(1L), 2, UserFilter.NONE, null);
+
+        verify(userService).getUsersAfter(1L, 2);
+        assertNotNull(result.getBody());
+        assertThat(result.getBody(), contains(userDTO2, userDTO3));
+        assertEquals(UserCursor.encode(3L), result.getHeaders().getFirst(Constants.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void testSearchUsers() {
+
+        when(userService.searchUsers("te", UserSearchMatch.PREFIX, 1L, 2)).thenReturn(Window.from(List.of(user2, user3), ScrollPosition::offset, true));
+        when(userService.searchUsers("test", null, null, null)).thenReturn(Window.from(List.of(user), ScrollPosition::offset, false));
+
+        ResponseEntity<List<UserDTO>> result = userController.searchUsers("te", "Prefix", UserCursor.encode(1L), 2);
+        ResponseEntity<List<UserDTO>> last = userController.searchUsers("test", null, null, null);
+
+        assertThat(result.getBody(), contains(userDTO2, userDTO3));
+        assertEquals(UserCursor.encode(3L), result.getHeaders().getFirst(Constants.NEXT_CURSOR_HEADER));
+        assertThat(last.getBody(), contains(userDTO));
+        assertNull(last.getHeaders().getFirst(Constants.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void testSearchUsersMatchNotValid() {
+
+        assertThrows(UserSearchException.class, () -> userController.searchUsers("test", "exact", null, null));
+        verify(userService, never()).searchUsers(any(), any(), any(), any());
+    }
+
+    @Test
+    void testGetUsersAfterLast() {
+
+        when(userService.getUsersAfter(null, 3)).thenReturn(Window.from(List.of(user, user2, user3), ScrollPosition::offset, false));
+
+        ResponseEntity<List<UserDTO>> result = userController.getUsersAfter("", 3, UserFilter.NONE, null);
+
+        verify(userService).getUsersAfter(null, 3);
+        assertNotNull(result.getBody());
+        assertThat(result.getBody(), contains(userDTO, userDTO2, userDTO3));
+        assertNull(result.getHeaders().getFirst(Constants.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void testGetUsersAfterCursorNotValid() {
+
+        assertThrows(UserCursorException.class, () -> userController.getUsersAfter("not-valid", 3, UserFilter.NONE, null));
+        assertThrows(UserCursorException.class, () -> userController.getUsersAfter("", 3, new UserFilter("France", null, null, null), null));
+        assertThrows(UserCursorException.class, () -> userController.getUsersAfter("", 3, UserFilter.NONE, "username"));
+    }
+
+    @Test
+    void testGetUserChanges() {
+
+        UserChangePosition position = new UserChangePosition(5L, 1L, 4L, 2L);
+        UserChangePosition next = new UserChangePosition(6L, 3L, 4L, 2L);
+        when(userService.getUserChanges(position, 2)).thenReturn(new UserChanges(List.of(user3), List.of("test2"), next, true));
+
+        UserChangesDTO result = userController.getUserChanges(UserChangeToken.encode(position), 2);
+
+        verify(userService).getUserChanges(position, 2);
+        assertThat(result.users(), contains(userDTO3));
+        assertThat(result.deleted(), contains("test2"));
+        assertEquals(next, UserChangeToken.decode(result.token()));
+        assertTrue(result.hasMore());
+    }
+
+    @Test
+    void testGetUserChangesAll() {
+
+        UserChangePosition next = UserChangePosition.first(7L);
+        when(userService.getUserChanges(null, null)).thenReturn(new UserChanges(List.of(), List.of(), next, false));
+
+        UserChangesDTO result = userController.getUserChanges(" ", null);
+
+        verify(userService).getUserChanges(null, null);
+        assertEquals(next, UserChangeToken.decode(result.token()));
+        assertFalse(result.hasMore());
+    }
+
+    @Test
+    void testGetUserChangesTokenNotValid() {
+
+        assertThrows(UserCursorException.class, () -> userController.getUserChanges("not-valid", 2));
+        assertThrows(UserCursorException.class, () -> userController.getUserChanges(UserCursor.encode(1L), 2));
+        assertThrows(UserChangesExpiredException.class, () -> userController.getUserChanges(
+                Base64.getUrlEncoder().withoutPadding().encodeToString("1,1,1,2".getBytes(StandardCharsets.UTF_8)), 2));
+    }
+
+    @Test
+    void testGetUserEvents() {
+
+        SseEmitter emitter = new SseEmitter();
+        when(userService.subscribeUserEvents(12L)).thenReturn(emitter);
+        when(userService.subscribeUserEvents(null)).thenReturn(emitter);
+
+        assertEquals(emitter, userController.getUserEvents(" 12"));
+        assertEquals(emitter, userController.getUserEvents(null));
+        verify(userService).subscribeUserEvents(12L);
+        verify(userService).subscribeUserEvents(null);
+    }
+
+    @Test
+    void testGetUserEventsLastEventIdNotValid() {
+
+        assertThrows(UserCursorException.class, () -> userController.getUserEvents("not-valid"));
+        verify(userService, never()).subscribeUserEvents(any());
     }
 
     @Test
     void testGetUser() {
 
-        when(userService.getUser("test")).thenReturn(user);
+        when(userService.getUser("test")).thenReturn(new VersionedUser(userDTO, new UserVersion(1L, 0L)));
 
-        UserDTO result = userController.getUser("test");
+        ResponseEntity<UserDTO> response = userController.getUser("test", null);
+        UserDTO result = response.getBody();
 
         verify(userService).getUser("test");
         assertNotNull(result);
@@ -78,6 +373,67 @@ class UserControllerTest {
         assertEquals("0612345678", result.phone());
         assertEquals("man", result.gender());
         assertEquals("test@test.com", result.email());
+        assertEquals("\"1-0\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testGetUserNotModified() {
+
+        UserDTO userDTOUpdated = new UserDTO("test", dateDTO, "France", "0612345678", "female", "test@test.com");
+        VersionedUser versionedUser = new VersionedUser(userDTO, new UserVersion(1L, 0L));
+        when(userService.getUser("test")).thenReturn(versionedUser, versionedUser, versionedUser, new VersionedUser(userDTOUpdated, new UserVersion(1L, 1L)));
+
+        ResponseEntity<UserDTO> result = userController.getUser("test", null);
+        String etag = result.getHeaders().getETag();
+        ResponseEntity<UserDTO> notModified = userController.getUser("test", etag);
+        ResponseEntity<UserDTO> notModifiedWeak = userController.getUser("test", "\"other\", W/" + etag);
+        ResponseEntity<UserDTO> modified = userController.getUser("test", etag);
+
+        assertNotNull(etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+        assertEquals(etag, notModified.getHeaders().getETag());
+        assertEquals(HttpStatus.NOT_MODIFIED, notModifiedWeak.getStatusCode());
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertNotEquals(etag, modified.getHeaders().getETag());
+        assertEquals(userDTOUpdated, modified.getBody());
+    }
+
+    @Test
+    void testGetUserFields() throws IOException {
+
+        when(userService.getUser("test")).thenReturn(new VersionedUser(userDTO, new UserVersion(1L, 0L)));
+
+        ResponseEntity<JsonSerializable> result = userController.getUserFields("test", "country,gender", null);
+        ResponseEntity<JsonSerializable> all = userController.getUserFields("test", "", null);
+        ResponseEntity<JsonSerializable> notModified = userController.getUserFields("test", "gender,country", result.getHeaders().getETag());
+
+        assertEquals("{\"country\":\"France\",\"gender\":\"man\"}", objectMapper.writeValueAsString(result.getBody()));
+        assertNotEquals("\"1-0\"", result.getHeaders().getETag());
+        assertEquals(objectMapper.writeValueAsString(userDTO), objectMapper.writeValueAsString(all.getBody()));
+        assertEquals("\"1-0\"", all.getHeaders().getETag());
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+    }
+
+    @Test
+    void testGetAllUserNotModified() {
+
+        when(userService.getVersionedUsers(UserFilter.NONE, UserFields.ALL, 0, 3)).thenReturn(versionedUsers(PageRequest.of(0, 3), true));
+        when(userService.getUserVersions(UserFilter.NONE, 0, 3)).thenReturn(new SliceImpl<>(versions, PageRequest.of(0, 3), true));
+        when(userService.getUserVersions(UserFilter.NONE, 1, 3)).thenReturn(new SliceImpl<>(versions, PageRequest.of(1, 3), false));
+        when(userService.getUsers(UserFilter.NONE, UserFields.ALL, 1, 3)).thenReturn(new SliceImpl<>(List.of(userDTO, userDTO2, userDTO3), PageRequest.of(1, 3), false));
+
+        String etag = userController.getUsers(0, 3, null, UserFilter.NONE, null).getHeaders().getETag();
+        ResponseEntity<List<UserDTO>> notModified = userController.getUsers(0, 3, "exact", UserFilter.NONE, etag);
+        ResponseEntity<List<UserDTO>> lastPage = userController.getUsers(1, 3, null, UserFilter.NONE, etag);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+        verify(userService, never()).getUsers(UserFilter.NONE, UserFields.ALL, 0, 3);
+        verify(userService).getUsers(UserFilter.NONE, UserFields.ALL, 1, 3);
+        verify(userService, never()).countUsers(any(), anyBoolean());
+        assertEquals(HttpStatus.OK, lastPage.getStatusCode());
+        assertNotEquals(etag, lastPage.getHeaders().getETag());
     }
 
     @Test
@@ -90,32 +446,121 @@ class UserControllerTest {
         verify(userService).createUser(userWithoutId);
     }
 
+    @Test
+    void testCreateUsers() {
+
+        UserDTO userDTONotValid = new UserDTO("test2", dateDTO, "France", "0612345678", "man", "test.com");
+        when(userService.createUsers(List.of(userWithoutId, userWithoutId))).thenReturn(List.of(UserBulkResult.created(user), UserBulkResult.failed(new UserCreateException("User cannot be created, user already exists"))));
+
+        List<UserBulkResultDTO> result = userController.createUsers(List.of(userDTO, userDTONotValid, userDTO));
+
+        verify(userService).createUsers(List.of(userWithoutId, userWithoutId));
+        assertThat(result.size(), is(3));
+        assertEquals(new UserBulkResultDTO(0, 201, userDTO, List.of()), result.get(0));
+        assertEquals(400, result.get(1).status());
+        assertThat(result.get(1).messages().size(), is(1));
+        assertEquals(new UserBulkResultDTO(2, 500, null, List.of("User cannot be created, user already exists")), result.get(2));
+    }
+
+    @Test
+    void testCreateUsersMissing() {
+
+        when(userService.createUsers(List.of(userWithoutId))).thenReturn(List.of(UserBulkResult.created(user)));
+
+        List<UserBulkResultDTO> result = userController.createUsers(Arrays.asList(null, userDTO));
+
+        verify(userService).createUsers(List.of(userWithoutId));
+        assertThat(result, contains(new UserBulkResultDTO(0, 400, null, List.of("User cannot be created, user is missing")), new UserBulkResultDTO(1, 201, userDTO, List.of())));
+    }
+
+    @Test
+    void testCreateUsersNdjson() throws IOException {
+
+        when(userService.createUsers(List.of(userWithoutId))).thenReturn(List.of(UserBulkResult.created(user)));
+
+        List<UserBulkResultDTO> result = userController.createUsersNdjson(new ByteArrayInputStream((objectMapper.writeValueAsString(userDTO) + "\n").getBytes(StandardCharsets.UTF_8)));
+
+        verify(userService).createUsers(List.of(userWithoutId));
+        assertThat(result, contains(new UserBulkResultDTO(0, 201, userDTO, List.of())));
+    }
+
+    @Test
+    void testGetUserCreation() {
+
+        when(userService.getUserCreation("pending")).thenReturn(new CompletableFuture<>());
+        when(userService.getUserCreation("created")).thenReturn(CompletableFuture.completedFuture(UserBulkResult.created(user)));
+        when(userService.getUserCreation("failed")).thenReturn(CompletableFuture.completedFuture(UserBulkResult.failed(new UserNotEligibleException("User must be at least 18 years old in France"))));
+
+        assertEquals(new UserCreationDTO("pending", 202, null, List.of()), userController.getUserCreation("pending"));
+        assertEquals(new UserCreationDTO("created", 201, userDTO, List.of()), userController.getUserCreation("created"));
+        assertEquals(new UserCreationDTO("failed", 500, null, List.of("User must be at least 18 years old in France")), userController.getUserCreation("failed"));
+    }
+
     @Test
     void testUpdateUser() {
 
-        when(userService.updateUser(userWithoutId)).thenReturn(userUpdated);
+        when(userService.updateUser(userWithoutId, null)).thenReturn(userUpdated);
+
+        ResponseEntity<UserDTO> result = userController.updateUser(userDTO, null);
+
+        verify(userService).updateUser(userWithoutId, null);
+        assertEquals(HttpStatus.CREATED, result.getStatusCode());
+        assertEquals("\"1-0\"", result.getHeaders().getETag());
+    }
+
+    @Test
+    void testUpdateUserIfMatch() {
 
-        userController.updateUser(userDTO);
+        when(userService.updateUser(userWithoutId, new UserVersion(1L, 0L))).thenReturn(userUpdated);
 
-        verify(userService).updateUser(userWithoutId);
+        userController.updateUser(userDTO, "\"1-0\"");
+
+        verify(userService).updateUser(userWithoutId, new UserVersion(1L, 0L));
+    }
+
+    @Test
+    void testUpdateUserIfMatchNotValid() {
+
+        assertThrows(UserPreconditionFailedException.class, () -> userController.updateUser(userDTO, "W/\"1-0\""));
+        assertThrows(UserPreconditionFailedException.class, () -> userController.updateUser(userDTO, "\"1-0\", \"1-1\""));
+        assertThrows(UserPreconditionFailedException.class, () -> userController.updateUser(userDTO, "\"not-valid\""));
+        verify(userService, never()).updateUser(any(), any());
     }
 
     @Test
     void testReplaceUser() {
 
-        when(userService.replaceUser("test", userWithoutId)).thenReturn(userUpdated);
+        when(userService.replaceUser("test", userWithoutId, null)).thenReturn(userWithoutId);
 
-        userController.replaceUser("test", userDTO);
+        ResponseEntity<UserDTO> result = userController.replaceUser("test", userDTO, "*");
 
-        verify(userService).replaceUser("test", userWithoutId);
+        verify(userService).replaceUser("test", userWithoutId, null);
+        assertNull(result.getHeaders().getETag());
     }
 
     @Test
     void testDeleteUser() {
 
-        userController.deleteUser("test");
+        userController.deleteUser("test", null);
+        userController.deleteUser("test", "\"1-0\"");
+
+        verify(userService).deleteUser("test", null);
+        verify(userService).deleteUser("test", new UserVersion(1L, 0L));
+    }
+
+    private Slice<VersionedUser> versionedUsers(PageRequest pageRequest, boolean hasNext) {
+
+        List<UserDTO> users = List.of(userDTO, userDTO2, userDTO3);
+        return new SliceImpl<>(IntStream.range(0, users.size()).mapToObj(i -> new VersionedUser(users.get(i), versions.get(i))).toList(), pageRequest, hasNext);
+    }
+
+    private void streamUsersFromService() {
 
-        verify(userService).deleteUser("test");
+        doAnswer(invocation -> {
+            Consumer<UserDTO> action = invocation.getArgument(2);
+            List.of(userDTO, userDTO2, userDTO3).forEach(action);
+            return null;
+        }).when(userService).streamUsers(eq(UserFilter.NONE), eq(UserFields.ALL), any());
     }
 
 }
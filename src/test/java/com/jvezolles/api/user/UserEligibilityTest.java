@@ -0,0 +1,98 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.config.UserProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for UserEligibility
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserEligibilityTest {
+
+    @Mock
+    private Clock clock;
+
+    private UserEligibility userEligibility;
+
+    @BeforeEach
+    void setUp() {
+
+        setToday(LocalDate.of(2020, 1, 8));
+        doReturn(ZoneOffset.UTC).when(clock).getZone();
+        when(clock.millis()).thenAnswer(_ -> clock.instant().toEpochMilli());
+
+        UserProperties userProperties = new UserProperties();
+        userProperties.setAgeOfMajority(Map.of("France", 18, "United States", 21));
+        userEligibility = new UserEligibility(clock, userProperties);
+    }
+
+    @Test
+    void testEligibleOnAgeOfMajority() {
+
+        assertTrue(userEligibility.isEligible("France", LocalDate.of(2002, 1, 8)));
+        assertTrue(userEligibility.isEligible("FRANCE", LocalDate.of(1970, 1, 1)));
+        assertFalse(userEligibility.isEligible("France", LocalDate.of(2002, 1, 9)));
+    }
+
+    @Test
+    void testEligibleByCountry() {
+
+        assertFalse(userEligibility.isEligible("united states", LocalDate.of(2002, 1, 8)));
+        assertTrue(userEligibility.isEligible("united states", LocalDate.of(1999, 1, 8)));
+        assertFalse(userEligibility.isEligible("Spain", LocalDate.of(1970, 1, 1)));
+        assertFalse(userEligibility.isEligible(null, LocalDate.of(1970, 1, 1)));
+        assertFalse(userEligibility.isEligible("France", null));
+    }
+
+    @Test
+    void testDescribe() {
+
+        assertEquals("at least 21 years old in United States", userEligibility.describe("united states"));
+        assertEquals("adult in an eligible country, among France (18), United States (21)", userEligibility.describe("Spain"));
+        assertEquals("adult in an eligible country, among France (18), United States (21)", userEligibility.describe(null));
+    }
+
+    @Test
+    void testNormalize() {
+
+        assertEquals("United States", userEligibility.normalize("united STATES"));
+        assertEquals("France", userEligibility.normalize("France"));
+        assertEquals("Spain", userEligibility.normalize("Spain"));
+        assertNull(userEligibility.normalize(null));
+    }
+
+    @Test
+    void testEligibleNextDay() {
+
+        assertFalse(userEligibility.isEligible("France", LocalDate.of(2002, 1, 9)));
+
+        // Day changed, before refresh at midnight
+        setToday(LocalDate.of(2020, 1, 9));
+        assertTrue(userEligibility.isEligible("France", LocalDate.of(2002, 1, 9)));
+
+        // Refreshed at midnight, then computed only once a day
+        setToday(LocalDate.of(2020, 1, 10));
+        userEligibility.refresh();
+        assertTrue(userEligibility.isEligible("France", LocalDate.of(2002, 1, 10)));
+        assertTrue(userEligibility.isEligible("France", LocalDate.of(2002, 1, 10)));
+        verify(clock, times(3)).getZone();
+    }
+
+    private void setToday(LocalDate today) {
+        doReturn(today.atStartOfDay(ZoneOffset.UTC).toInstant()).when(clock).instant();
+    }
+
+}
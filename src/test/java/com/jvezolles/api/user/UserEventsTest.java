@@ -0,0 +1,128 @@
+package com.jvezolles.api.user;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvezolles.api.config.UserProperties;
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserEventType;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for UserEvents
+ * Events are not sent, as not started, so they stay buffered for each subscriber
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserEventsTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Clock clock = Clock.fixed(Instant.parse("2020-01-08T00:00:00Z"), ZoneOffset.UTC);
+
+    private final long firstId = clock.millis() * 1000;
+
+    private UserEvents userEvents;
+
+    private final User user = new User(1L, "test", LocalDate.of(2002, 1, 8), "France", "0612345678", "man", "test@test.com", 0L, null, null);
+
+    @BeforeEach
+    void setUp() {
+
+        UserProperties userProperties = new UserProperties();
+        userProperties.getEvents().setBufferSize(2);
+        userProperties.getEvents().setLogSize(3);
+        userEvents = new UserEvents(Mappers.getMapper(UserMapper.class), new ObjectMapper().findAndRegisterModules(), clock, userProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userEvents.stop();
+    }
+
+    @Test
+    void testPublishSlowSubscriberDisconnected() {
+
+        userEvents.subscribe(null);
+        assertEquals(1, meterRegistry.get(Constants.USER_EVENTS_SUBSCRIBERS).gauge().value());
+
+        // Third event overflows buffer of subscriber
+        userEvents.publish(UserEventType.CREATED, "test", user);
+        userEvents.publish(UserEventType.UPDATED, "test", user);
+        assertEquals(0, meterRegistry.get(Constants.USER_EVENTS_DISCONNECTED).counter().count());
+
+        userEvents.publish(UserEventType.DELETED, "test", null);
+        assertEquals(1, meterRegistry.get(Constants.USER_EVENTS_DISCONNECTED).counter().count());
+        assertEquals(0, meterRegistry.get(Constants.USER_EVENTS_SUBSCRIBERS).gauge().value());
+    }
+
+    @Test
+    void testSubscribeReplay() {
+
+        userEvents.publish(UserEventType.CREATED, "test", user);
+        userEvents.publish(UserEventType.UPDATED, "test", user);
+
+        // Events after last event id are replayed, filling buffer of subscriber, no event for subscriber up to date
+        userEvents.subscribe(firstId - 1);
+        userEvents.subscribe(firstId + 1);
+        userEvents.publish(UserEventType.DELETED, "test", null);
+
+        assertEquals(1, meterRegistry.get(Constants.USER_EVENTS_DISCONNECTED).counter().count());
+        assertEquals(1, meterRegistry.get(Constants.USER_EVENTS_SUBSCRIBERS).gauge().value());
+    }
+
+    @Test
+    void testSubscribeReset() {
+
+        for (int i = 0; i < 4; i++) {
+            userEvents.publish(UserEventType.UPDATED, "test", user);
+        }
+
+        // Events no longer in log, or more than buffer, are replaced by one reset event
+        userEvents.subscribe(firstId - 1);
+        userEvents.subscribe(firstId);
+        userEvents.subscribe(firstId + 10);
+        userEvents.publish(UserEventType.DELETED, "test", null);
+
+        assertEquals(0, meterRegistry.get(Constants.USER_EVENTS_DISCONNECTED).counter().count());
+        assertEquals(3, meterRegistry.get(Constants.USER_EVENTS_SUBSCRIBERS).gauge().value());
+    }
+
+    @Test
+    void testPublishAfterCommit() {
+
+        userEvents.subscribe(null);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            for (int i = 0; i < 3; i++) {
+                userEvents.publish(UserEventType.UPDATED, "test", user);
+            }
+
+            // Nothing published before commit
+            assertEquals(1, meterRegistry.get(Constants.USER_EVENTS_SUBSCRIBERS).gauge().value());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(0, meterRegistry.get(Constants.USER_EVENTS_SUBSCRIBERS).gauge().value());
+
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+}
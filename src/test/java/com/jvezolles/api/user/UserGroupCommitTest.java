@@ -0,0 +1,231 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.config.UserProperties;
+import com.jvezolles.api.user.exception.UserCreateException;
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserBulkResult;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for UserGroupCommit
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserGroupCommitTest {
+
+    private static final int USERS = 200;
+
+    @Mock
+    private UserService userService;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final UserProperties userProperties = new UserProperties();
+
+    private UserGroupCommit userGroupCommit;
+
+    private final LocalDate date = LocalDate.of(2002, 1, 8);
+
+    @BeforeEach
+    void setUp() {
+
+        userProperties.getGroupCommit().setWindow(Duration.ofMillis(20));
+        userProperties.getGroupCommit().setMaxSize(50);
+        userGroupCommit = new UserGroupCommit(userService, userProperties, meterRegistry);
+        userGroupCommit.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        userGroupCommit.stop();
+    }
+
+    @Test
+    void testCreateConcurrentUsersGrouped() throws Exception {
+
+        // Each user is created, except users with an odd number already existing
+        when(userService.createUsers(anyList())).thenAnswer(invocation -> invocation.<List<User>>getArgument(0).stream()
+                .map(user -> Integer.parseInt(user.getUsername().substring(4)) % 2 == 0
+                        ? UserBulkResult.created(user)
+                        : UserBulkResult.failed(new UserCreateException("User cannot be created, user already exists")))
+                .toList());
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(USERS)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<User>> futures = IntStream.range(0, USERS)
+                    .mapToObj(i -> executor.submit(() -> {
+                        start.await();
+                        return userGroupCommit.create(new User(null, "user" + i, date, "France", "0612345678", "man", "test@test.com", null, null, null));
+                    }))
+                    .toList();
+            start.countDown();
+
+            for (int i = 0; i < USERS; i++) {
+                if (i % 2 == 0) {
+                    assertEquals("user" + i, futures.get(i).get(5, TimeUnit.SECONDS).getUsername());
+                } else {
+                    ExecutionException exception = assertThrows(ExecutionException.class, futures.get(i)::get);
+                    assertEquals("User cannot be created, user already exists", exception.getCause().getMessage());
+                }
+            }
+        }
+
+        // Far fewer commits than users, none above max size
+        long commits = meterRegistry.get(Constants.USER_GROUP_COMMIT_TIMER).timer().count();
+        assertTrue(commits < USERS / 10, "commits: " + commits);
+        assertTrue(meterRegistry.get(Constants.USER_GROUP_COMMIT_SIZE).summary().max() <= 50);
+        assertEquals(USERS, meterRegistry.get(Constants.USER_GROUP_COMMIT_SIZE).summary().totalAmount());
+    }
+
+    @Test
+    void testCreateCommitFailed() {
+
+        when(userService.createUsers(anyList())).thenThrow(new IllegalStateException("database down"));
+        User user = new User(null, "test", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+
+        UserCreateException exception = assertThrows(UserCreateException.class, () -> userGroupCommit.create(user));
+        assertEquals("User cannot be created", exception.getMessage());
+    }
+
+    @Test
+    void testCreateTimeoutQueued() throws Exception {
+
+        // First user blocks writer, so second user stays queued
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch committed = new CountDownLatch(1);
+        when(userService.createUsers(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            committed.await();
+            return invocation.<List<User>>getArgument(0).stream().map(UserBulkResult::created).toList();
+        });
+        userProperties.getGroupCommit().setWindow(Duration.ZERO);
+        User user = new User(null, "test", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        User user2 = new User(null, "test2", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<User> first = executor.submit(() -> userGroupCommit.create(user));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            try {
+                userProperties.getGroupCommit().setTimeout(Duration.ofMillis(50));
+                UserCreateException exception = assertThrows(UserCreateException.class, () -> userGroupCommit.create(user2));
+                assertEquals("User cannot be created, not written in time", exception.getMessage());
+
+            } finally {
+                committed.countDown();
+            }
+
+            // User failed is never written
+            assertSame(user, first.get(5, TimeUnit.SECONDS));
+        }
+        verify(userService).createUsers(List.of(user));
+        verify(userService, never()).createUsers(List.of(user2));
+    }
+
+    @Test
+    void testCreateTimeoutWriting() throws Exception {
+
+        // User is gathered, but written after timeout
+        when(userService.createUsers(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return List.of(UserBulkResult.created(invocation.<List<User>>getArgument(0).getFirst()));
+        });
+        userProperties.getGroupCommit().setTimeout(Duration.ofMillis(50));
+        User user = new User(null, "test", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+
+        assertSame(user, userGroupCommit.create(user));
+    }
+
+    @Test
+    void testCreateQueueFull() throws InterruptedException {
+
+        // Queue of one user, without writer so user stays queued
+        userGroupCommit.stop();
+        userProperties.getGroupCommit().setCapacity(1);
+        userProperties.getGroupCommit().setTimeout(Duration.ofMillis(500));
+        userGroupCommit = new UserGroupCommit(userService, userProperties, meterRegistry);
+        User user = new User(null, "test", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        User user2 = new User(null, "test2", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        when(userService.createUsers(List.of(user2))).thenReturn(List.of(UserBulkResult.created(user2)));
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<User> first = executor.submit(() -> userGroupCommit.create(user));
+            Thread.sleep(100);
+
+            // Second user written alone, as queue is full
+            assertSame(user2, userGroupCommit.create(user2));
+
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertEquals("User cannot be created, not written in time", exception.getCause().getMessage());
+        }
+        verify(userService, never()).createUsers(List.of(user));
+    }
+
+    @Test
+    void testStopTimeout() throws Exception {
+
+        // Writer blocked past shutdown timeout, user queued meanwhile is failed
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch committed = new CountDownLatch(1);
+        when(userService.createUsers(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            committed.await();
+            return invocation.<List<User>>getArgument(0).stream().map(UserBulkResult::created).toList();
+        });
+        userProperties.getGroupCommit().setWindow(Duration.ZERO);
+        userProperties.getGroupCommit().setShutdownTimeout(Duration.ofMillis(50));
+        User user = new User(null, "test", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        User user2 = new User(null, "test2", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<User> first = executor.submit(() -> userGroupCommit.create(user));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            Future<User> second = executor.submit(() -> userGroupCommit.create(user2));
+
+            try {
+                // Wait for second user to be queued, then stop
+                Thread.sleep(50);
+                userGroupCommit.stop();
+
+                ExecutionException exception = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+                assertEquals("User cannot be created, not written in time", exception.getCause().getMessage());
+
+            } finally {
+                committed.countDown();
+            }
+
+            assertSame(user, first.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testCreateAfterStop() throws InterruptedException {
+
+        User user = new User(null, "test", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        when(userService.createUsers(List.of(user))).thenReturn(List.of(UserBulkResult.created(user)));
+
+        userGroupCommit.stop();
+
+        assertSame(user, userGroupCommit.create(user));
+        verify(userService).createUsers(List.of(user));
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.user.dto.UserDTO;
+import com.jvezolles.api.user.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark tests for UserRepository
+ * Lookup by username must stay flat when the table grows
+ * Tests tagged benchmark measure wall-clock times, and run only with -Dexcluded.test.groups=none -Dgroups=benchmark
+ *
+ * @author Vezolles
+ */
+@Slf4j
+@SpringBootTest
+class UserRepositoryBenchmarkTest {
+
+    private static final long ID_OFFSET = 1_000_000_000L;
+    private static final int[] TABLE_SIZES = {1_000, 10_000, 50_000};
+    private static final int LOOKUPS = 2_000;
+    private static final int PAGE_SIZE = 20;
+    private static final String BENCHMARK = "benchmark";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * After each test, remove user
+     */
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from users where id >= ? and id < ?", ID_OFFSET, ID_OFFSET + TABLE_SIZES[TABLE_SIZES.length - 1]);
+    }
+
+    /**
+     * Test lookup by username uses the unique index on username
+     */
+    @Test
+    void testFindByUsernameUsesIndex() {
+
+        String plan = jdbcTemplate.queryForObject("explain select * from users where username = 'bench'", String.class);
+
+        assertThat(plan.toLowerCase(), containsString("users_username_idx"));
+    }
+
+    /**
+     * Test lookup latency by username stays flat as the table grows
+     * Wall-clock benchmark, excluded by default, use of index is tested by its plan
+     */
+    @Test
+    @Tag(BENCHMARK)
+    void testFindByUsernameLatency() {
+
+        long[] latencies = new long[TABLE_SIZES.length];
+        int inserted = 0;
+
+        for (int i = 0; i < TABLE_SIZES.length; i++) {
+
+            // Grow table to expected size
+            insertUsers(inserted, TABLE_SIZES[i]);
+            inserted = TABLE_SIZES[i];
+
+            latencies[i] = medianLookupNanos(inserted);
+        }
+
+        // A sequential scan grows linearly with the table, an index lookup does not
+        assertThat(latencies[latencies.length - 1], lessThan(latencies[0] * 10));
+    }
+
+    /**
+     * Test page of users as DTO projection of repository allocates less than as entities mapped to DTO
+     * Allocation is compared rather than wall-clock time, which depends on the load of the machine
+     * Benchmark, excluded by default, as it pages many times through a thousand users
+     */
+    @Test
+    @Tag(BENCHMARK)
+    void testFindAllDtoAllocation() {
+
+        insertUsers(0, TABLE_SIZES[0]);
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        // Page of entities mapped to DTO, as read before projections, against the DTO projection used by service
+        IntFunction<List<UserDTO>> entityPage = page -> readOnly.execute(_ -> userRepository.findAll(PageRequest.of(page, PAGE_SIZE)).stream()
+                .map(user -> userMapper.asUserDto(user))
+                .toList());
+        IntFunction<List<UserDTO>> dtoPage = page -> readOnly.execute(_ -> userRepository.findAllDtoBy(PageRequest.of(page, PAGE_SIZE)).getContent());
+
+        // Warm up both paths before measure
+        measure(entityPage);
+        measure(dtoPage);
+
+        long[] entity = measure(entityPage);
+        long[] dto = measure(dtoPage);
+
+        log.info("Page of users as entities : {} bytes, {} ns per request", entity[0], entity[1]);
+        log.info("Page of users as DTO : {} bytes, {} ns per request", dto[0], dto[1]);
+
+        // Entities are also hydrated, with loaded state snapshots and persistence context entries
+        assertThat(dto[0], lessThan(entity[0]));
+    }
+
+    private long[] measure(IntFunction<List<UserDTO>> lookup) {
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] samples = new long[LOOKUPS];
+
+        long allocatedBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < LOOKUPS; i++) {
+
+            long start = System.nanoTime();
+            List<UserDTO> users = lookup.apply(i % (TABLE_SIZES[0] / PAGE_SIZE));
+            samples[i] = System.nanoTime() - start;
+
+            assertThat(users.size(), is(PAGE_SIZE));
+        }
+        long allocated = threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        Arrays.sort(samples);
+        return new long[]{allocated / LOOKUPS, samples[LOOKUPS / 2]};
+    }
+
+    private void insertUsers(int from, int to) {
+
+        LocalDate birthdate = LocalDate.of(1980, 1, 1);
+        List<Object[]> rows = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            rows.add(new Object[]{ID_OFFSET + i, "bench" + i, birthdate, "France", "0600000000", "man", "bench" + i + "@test.com"});
+        }
+
+        jdbcTemplate.batchUpdate("insert into users (id, username, birthdate, country, phone, gender, email) values (?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    private long medianLookupNanos(int tableSize) {
+
+        long[] samples = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+
+            String username = "bench" + (i * 7919 % tableSize);
+
+            long start = System.nanoTime();
+            Optional<User> user = userRepository.findByUsername(username);
+            samples[i] = System.nanoTime() - start;
+
+            assertTrue(user.isPresent());
+        }
+
+        Arrays.sort(samples);
+        return samples[LOOKUPS / 2];
+    }
+
+}
@@ -1,27 +1,54 @@
 package com.jvezolles.api.user;
 
+import com.jvezolles.api.config.UserProperties;
+import com.jvezolles.api.user.dto.UserDTO;
 import com.jvezolles.api.user.exception.*;
 import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserBulkResult;
+import com.jvezolles.api.user.model.UserChangePosition;
+import com.jvezolles.api.user.model.UserChangeSequence;
+import com.jvezolles.api.user.model.UserChanges;
+import com.jvezolles.api.user.model.UserFields;
+import com.jvezolles.api.user.model.UserFilter;
+import com.jvezolles.api.user.model.UserEventType;
+import com.jvezolles.api.user.model.UserSearchMatch;
+import com.jvezolles.api.user.model.UserTombstone;
+import com.jvezolles.api.user.model.UserVersion;
+import com.jvezolles.api.user.model.VersionedUser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -32,83 +59,514 @@ import static org.mockito.Mockito.*;
 @SpringBootTest
 class UserServiceTest {
 
-    @Mock
-    private Clock clock;
+    @Spy
+    private Clock clock = Clock.fixed(LocalDate.of(2020, 1, 8).atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+
+    @Spy
+    private UserEligibility userEligibility = new UserEligibility(clock, new UserProperties());
 
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserTombstoneRepository userTombstoneRepository;
+
+    @Mock
+    private UserChangeSequenceRepository userChangeSequenceRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private UserProperties userProperties = new UserProperties();
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private UserWriteBehind userWriteBehind;
+
+    @Mock
+    private UserGroupCommit userGroupCommit;
+
+    @Mock
+    private UserEvents userEvents;
+
     @InjectMocks
-    private UserService userService = new UserServiceImpl(clock, userRepository);
+    private UserService userService = new UserServiceImpl(clock, userEligibility, userRepository, userTombstoneRepository, userChangeSequenceRepository, transactionTemplate, userProperties, userCache, userWriteBehind, userGroupCommit, userEvents);
 
-    private final Date date = Date.from(LocalDate.of(2002, 1, 8).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-    private final User user = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com");
-    private final User user2 = new User(2L, "test2", date, "France", "0612345678", "man", "test@test.com");
-    private final User user3 = new User(3L, "test3", date, "France", "0612345678", "man", "test@test.com");
+    private final LocalDate date = LocalDate.of(2002, 1, 8);
+    private final User user = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
+    private final User user2 = new User(2L, "test2", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
+    private final User user3 = new User(3L, "test3", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
+    private final UserDTO userDTO = new UserDTO("test", LocalDate.of(2002, 1, 8), "France", "0612345678", "man", "test@test.com");
+    private final UserDTO userDTO2 = new UserDTO("test2", LocalDate.of(2002, 1, 8), "France", "0612345678", "man", "test@test.com");
+    private final UserDTO userDTO3 = new UserDTO("test3", LocalDate.of(2002, 1, 8), "France", "0612345678", "man", "test@test.com");
 
     @BeforeEach
     void setUp() {
-
-        Clock fixedClock = Clock.fixed(LocalDate.of(2020, 1, 8).atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
-        doReturn(fixedClock.instant()).when(clock).instant();
-        doReturn(fixedClock.getZone()).when(clock).getZone();
         when(userRepository.findByUsername("test")).thenReturn(Optional.of(user));
     }
 
     @Test
     void testGetAllUser() {
 
-        Page<User> users = new PageImpl<>(List.of(user, user2, user3));
-        when(userRepository.findAll(PageRequest.of(1, 3))).thenReturn(users);
+        when(userRepository.findAllDtoBy(PageRequest.of(1, 3))).thenReturn(new SliceImpl<>(List.of(userDTO, userDTO2, userDTO3), PageRequest.of(1, 3), true));
 
-        List<User> result = userService.getUsers(1, 3);
+        Slice<UserDTO> result = userService.getUsers(UserFilter.NONE, UserFields.ALL, 1, 3);
 
-        verify(userRepository).findAll(PageRequest.of(1, 3));
+        verify(userRepository).findAllDtoBy(PageRequest.of(1, 3));
+        verify(userRepository, never()).count();
         assertNotNull(result);
-        assertThat(result.size(), is(3));
-        assertThat(result, contains(user, user2, user3));
+        assertTrue(result.hasNext());
+        assertThat(result.getContent(), contains(userDTO, userDTO2, userDTO3));
+    }
+
+    @Test
+    void testGetAllUserFields() {
+
+        UserFields fields = UserFields.parse("username,country");
+        UserFilter filter = new UserFilter("France", null, null, null);
+        UserDTO userFields = new UserDTO("test", null, "France", null, null, null);
+        when(userRepository.findAllDtoBy(fields, filter, PageRequest.of(1, 3))).thenReturn(new SliceImpl<>(List.of(userFields), PageRequest.of(1, 3), false));
+
+        Slice<UserDTO> result = userService.getUsers(filter, fields, 1, 3);
+
+        verify(userRepository).findAllDtoBy(fields, filter, PageRequest.of(1, 3));
+        verify(userRepository, never()).findAllDtoBy(any());
+        verify(userRepository, never()).findBy(ArgumentMatchers.<Specification<User>>any(), any());
+        assertThat(result.getContent(), contains(userFields));
+    }
+
+    @Test
+    void testGetUserVersions() {
+
+        UserFilter filter = new UserFilter("France", null, null, null);
+        when(userRepository.findAllVersionBy(filter, PageRequest.of(1, 3))).thenReturn(new SliceImpl<>(List.of(new UserVersion(1L, 0L)), PageRequest.of(1, 3), true));
+
+        Slice<UserVersion> result = userService.getUserVersions(filter, 1, 3);
+
+        verify(userRepository).findAllVersionBy(filter, PageRequest.of(1, 3));
+        verify(userRepository, never()).findAllDtoBy(any(), any(), any());
+        assertTrue(result.hasNext());
+        assertThat(result.getContent(), contains(new UserVersion(1L, 0L)));
+    }
+
+    @Test
+    void testGetVersionedUsers() {
+
+        VersionedUser versionedUser = new VersionedUser(userDTO, new UserVersion(1L, 0L));
+        when(userRepository.findAllVersionedBy(UserFields.ALL, new UserFilter("France", null, null, null), PageRequest.of(1, 3)))
+                .thenReturn(new SliceImpl<>(List.of(versionedUser), PageRequest.of(1, 3), true));
+
+        Slice<VersionedUser> result = userService.getVersionedUsers(new UserFilter("france", null, null, null), UserFields.ALL, 1, 3);
+
+        verify(userRepository, never()).findAllDtoBy(any(), any(), any());
+        verify(userRepository, never()).findAllVersionBy(any(), any());
+        assertTrue(result.hasNext());
+        assertThat(result.getContent(), contains(versionedUser));
+    }
+
+    @Test
+    void testGetUserVersionsCountryNormalized() {
+
+        when(userRepository.findAllVersionBy(any(), any())).thenReturn(new SliceImpl<>(List.of()));
+
+        userService.getUserVersions(new UserFilter("france", "man", null, null), 0, 20);
+
+        verify(userRepository).findAllVersionBy(new UserFilter("France", "man", null, null), PageRequest.of(0, 20));
     }
 
     @Test
     void testGetAllUserNoPage() {
 
-        Page<User> users = new PageImpl<>(List.of(user, user2, user3));
-        when(userRepository.findAll(PageRequest.of(0, 3))).thenReturn(users);
+        when(userRepository.findAllDtoBy(PageRequest.of(0, 3))).thenReturn(new SliceImpl<>(List.of(userDTO, userDTO2, userDTO3)));
 
-        List<User> result = userService.getUsers(null, 3);
+        Slice<UserDTO> result = userService.getUsers(UserFilter.NONE, UserFields.ALL, null, 3);
 
-        verify(userRepository).findAll(PageRequest.of(0, 3));
+        verify(userRepository).findAllDtoBy(PageRequest.of(0, 3));
         assertNotNull(result);
-        assertThat(result.size(), is(3));
-        assertThat(result, contains(user, user2, user3));
+        assertThat(result.getContent(), contains(userDTO, userDTO2, userDTO3));
     }
 
     @Test
     void testGetAllUserNoPageNoSize() {
 
-        when(userRepository.findAll()).thenReturn(List.of(user, user2, user3));
+        when(userRepository.findAllDtoBy(Pageable.unpaged())).thenReturn(new SliceImpl<>(List.of(userDTO, userDTO2, userDTO3)));
 
-        List<User> result = userService.getUsers(null, null);
+        Slice<UserDTO> result = userService.getUsers(UserFilter.NONE, UserFields.ALL, null, null);
 
-        verify(userRepository).findAll();
+        verify(userRepository).findAllDtoBy(Pageable.unpaged());
         assertNotNull(result);
-        assertThat(result.size(), is(3));
-        assertThat(result, contains(user, user2, user3));
+        assertThat(result.getContent(), contains(userDTO, userDTO2, userDTO3));
+    }
+
+    @Test
+    void testGetAllUserFiltered() {
+
+        UserFilter filter = new UserFilter("France", null, LocalDate.of(2000, 1, 1), null);
+        when(userRepository.findBy(ArgumentMatchers.<Specification<User>>any(), any())).thenReturn(new SliceImpl<>(List.of(userDTO2)));
+
+        Slice<UserDTO> result = userService.getUsers(filter, UserFields.ALL, null, 3);
+
+        verify(userRepository).findBy(ArgumentMatchers.<Specification<User>>any(), any());
+        verify(userRepository, never()).findAllDtoBy(any());
+        assertThat(result.getContent(), contains(userDTO2));
+    }
+
+    @Test
+    void testCountUsersFiltered() {
+
+        when(userRepository.count(ArgumentMatchers.<Specification<User>>any())).thenReturn(1L);
+
+        assertEquals(1L, userService.countUsers(new UserFilter(null, "man", null, null), false));
+        verify(userRepository, never()).countApproximately();
+        verify(userRepository, never()).count();
+    }
+
+    @Test
+    void testCountUsersExact() {
+
+        when(userRepository.count()).thenReturn(3L);
+
+        assertEquals(3L, userService.countUsers(UserFilter.NONE, true));
+        verify(userRepository, never()).countApproximately();
+    }
+
+    @Test
+    void testCountUsersApproximate() {
+
+        when(userRepository.countApproximately()).thenReturn(3L);
+
+        assertEquals(3L, userService.countUsers(UserFilter.NONE, false));
+        verify(userRepository, never()).count();
+    }
+
+    @Test
+    void testGetUsersAfter() {
+
+        Window<User> users = Window.from(List.of(user2, user3), ScrollPosition::offset, true);
+        when(userRepository.findAllByOrderByIdAsc(ScrollPosition.forward(Map.of("id", 1L)), Limit.of(2))).thenReturn(users);
+
+        Window<User> result = userService.getUsersAfter(1L, 2);
+
+        verify(userRepository).findAllByOrderByIdAsc(ScrollPosition.forward(Map.of("id", 1L)), Limit.of(2));
+        assertNotNull(result);
+        assertTrue(result.hasNext());
+        assertThat(result.getContent(), contains(user2, user3));
+    }
+
+    @Test
+    void testGetUsersAfterFirstDefaultSize() {
+
+        Window<User> users = Window.from(List.of(user, user2, user3), ScrollPosition::offset, false);
+        when(userRepository.findAllByOrderByIdAsc(ScrollPosition.keyset(), Limit.of(20))).thenReturn(users);
+
+        Window<User> result = userService.getUsersAfter(null, null);
+
+        verify(userRepository).findAllByOrderByIdAsc(ScrollPosition.keyset(), Limit.of(20));
+        assertNotNull(result);
+        assertFalse(result.hasNext());
+        assertThat(result.getContent(), contains(user, user2, user3));
+    }
+
+    @Test
+    void testGetUsersAfterMaxSize() {
+
+        when(userRepository.findAllByOrderByIdAsc(ScrollPosition.keyset(), Limit.of(500))).thenReturn(Window.from(List.of(user), ScrollPosition::offset, false));
+
+        userService.getUsersAfter(null, 100_000_000);
+
+        verify(userRepository).findAllByOrderByIdAsc(ScrollPosition.keyset(), Limit.of(500));
+    }
+
+    @Test
+    void testGetUsersAfterSizeNotValid() {
+
+        try {
+            userService.getUsersAfter(null, 0);
+            fail();
+
+        } catch (UserCursorException e) {
+            assertEquals("User cursor is not valid, size must be positive", e.getMessage());
+        }
+
+        verify(userRepository, never()).findAllByOrderByIdAsc(any(), any());
+    }
+
+    @Test
+    void testSearchUsers() {
+
+        when(userRepository.findByUsernameOrEmailLike("te%", 1L, 3)).thenReturn(List.of(user2, user3, user));
+
+        Window<User> result = userService.searchUsers(" Te ", null, 1L, 2);
+
+        verify(userRepository).findByUsernameOrEmailLike("te%", 1L, 3);
+        assertTrue(result.hasNext());
+        assertThat(result.getContent(), contains(user2, user3));
+    }
+
+    @Test
+    void testSearchUsersContainsMaxSize() {
+
+        userProperties.getSearch().setMaxSize(2);
+        when(userRepository.findByUsernameOrEmailLike("%t\\_\\%\\\\%", Long.MIN_VALUE, 3)).thenReturn(List.of(user, user2));
+
+        Window<User> result = userService.searchUsers("T_%\\", UserSearchMatch.CONTAINS, null, 10);
+
+        verify(userRepository).findByUsernameOrEmailLike("%t\\_\\%\\\\%", Long.MIN_VALUE, 3);
+        assertFalse(result.hasNext());
+        assertThat(result.getContent(), contains(user, user2));
+    }
+
+    @Test
+    void testSearchUsersNotValid() {
+
+        try {
+            userService.searchUsers(" ", null, null, null);
+            fail();
+
+        } catch (UserSearchException e) {
+            assertEquals("User search is not valid, text is empty", e.getMessage());
+        }
+
+        try {
+            userService.searchUsers("te", UserSearchMatch.CONTAINS, null, null);
+            fail();
+
+        } catch (UserSearchException e) {
+            assertEquals("User search is not valid, text must have at least 3 characters", e.getMessage());
+        }
+
+        try {
+            userService.searchUsers("test", null, null, 0);
+            fail();
+
+        } catch (UserSearchException e) {
+            assertEquals("User search is not valid, size must be positive", e.getMessage());
+        }
+
+        verify(userRepository, never()).findByUsernameOrEmailLike(any(), anyLong(), anyInt());
+    }
+
+    @Test
+    void testStreamUsersFields() {
+
+        UserFields fields = UserFields.parse("username");
+        UserDTO userFields = new UserDTO("test", null, null, null, null, null);
+        when(userRepository.streamDtoBy(fields, UserFilter.NONE)).thenReturn(Stream.of(userFields));
+
+        List<UserDTO> result = new ArrayList<>();
+        userService.streamUsers(UserFilter.NONE, fields, result::add);
+
+        verify(userRepository).streamDtoBy(fields, UserFilter.NONE);
+        assertThat(result, contains(userFields));
+    }
+
+    @Test
+    void testGetUserChanges() {
+
+        User userChanged = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com", 1L, null, 5L);
+        User userChanged2 = new User(2L, "test2", date, "France", "0612345678", "man", "test@test.com", 0L, null, 7L);
+        UserTombstone tombstone = new UserTombstone(10L, "test", clock.instant(), 6L);
+        UserTombstone tombstone2 = new UserTombstone(11L, "test3", clock.instant(), 8L);
+
+        when(userChangeSequenceRepository.findById(UserChangeSequence.ID)).thenReturn(Optional.of(new UserChangeSequence(UserChangeSequence.ID, 8L, 0L)));
+        when(userRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(eq(8L), any(), eq(Limit.of(3))))
+                .thenReturn(Window.from(List.of(userChanged, userChanged2), ScrollPosition::offset, false));
+        when(userTombstoneRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(eq(8L), any(), eq(Limit.of(3))))
+                .thenReturn(Window.from(List.of(tombstone, tombstone2), ScrollPosition::offset, false));
+
+        UserChanges result = userService.getUserChanges(new UserChangePosition(4L, 0L, 4L, 0L), 3);
+
+        // User deleted after its update is only deleted, last tombstone is after limit
+        verify(userRepository).findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(8L, ScrollPosition.forward(Map.of("changeSequence", 4L, "id", 0L)), Limit.of(3));
+        assertThat(result.users(), contains(userChanged2));
+        assertThat(result.deleted(), contains("test"));
+        assertEquals(new UserChangePosition(7L, 2L, 6L, 10L), result.position());
+        assertTrue(result.hasMore());
+    }
+
+    @Test
+    void testGetUserChangesSameSequence() {
+
+        User userCreated = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com", 0L, null, 5L);
+        UserTombstone tombstone = new UserTombstone(10L, "test", clock.instant(), 5L);
+
+        when(userChangeSequenceRepository.findById(UserChangeSequence.ID)).thenReturn(Optional.of(new UserChangeSequence(UserChangeSequence.ID, 5L, 0L)));
+        when(userRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(anyLong(), any(), any()))
+                .thenReturn(Window.from(List.of(userCreated), ScrollPosition::offset, false));
+        when(userTombstoneRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(anyLong(), any(), any()))
+                .thenReturn(Window.from(List.of(tombstone), ScrollPosition::offset, false));
+
+        UserChanges result = userService.getUserChanges(new UserChangePosition(4L, 0L, 4L, 0L), null);
+
+        // User deleted then created again in the same sequence is created, as it is still found
+        assertThat(result.users(), contains(userCreated));
+        assertTrue(result.deleted().isEmpty());
+        assertEquals(new UserChangePosition(5L, 1L, 5L, Long.MAX_VALUE), result.position());
+    }
+
+    @Test
+    void testGetUserChangesNotSequencing() {
+
+        when(userChangeSequenceRepository.findById(UserChangeSequence.ID)).thenReturn(Optional.of(new UserChangeSequence(UserChangeSequence.ID, 8L, 0L)));
+        when(userRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(anyLong(), any(), any()))
+                .thenReturn(Window.from(List.of(), ScrollPosition::offset, false));
+        when(userTombstoneRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(anyLong(), any(), any()))
+                .thenReturn(Window.from(List.of(), ScrollPosition::offset, false));
+
+        userService.getUserChanges(new UserChangePosition(8L, 1L, 8L, Long.MAX_VALUE), null);
+
+        // Changes are read up to last sequence, without lock nor write
+        verify(userRepository).findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(eq(8L), any(), any());
+        verify(userChangeSequenceRepository, never()).findLockedById(any());
+        verify(userRepository, never()).sequenceChanges(anyLong());
+        verify(userTombstoneRepository, never()).sequenceChanges(anyLong());
+    }
+
+    @Test
+    void testSequenceUserChanges() {
+
+        UserChangeSequence sequence = new UserChangeSequence(UserChangeSequence.ID, 8L, 0L);
+        when(userRepository.existsByChangeSequenceIsNull()).thenReturn(true);
+        when(userChangeSequenceRepository.findLockedById(UserChangeSequence.ID)).thenReturn(Optional.of(sequence));
+        when(userRepository.sequenceChanges(9L)).thenReturn(2);
+
+        assertEquals(2, userService.sequenceUserChanges());
+
+        // Writes committed since previous sequencing are given next sequence
+        verify(userTombstoneRepository).sequenceChanges(9L);
+        assertEquals(9L, sequence.getLastValue());
+    }
+
+    @Test
+    void testSequenceUserChangesNone() {
+
+        assertEquals(0, userService.sequenceUserChanges());
+
+        // Nothing to sequence, sequence is not locked
+        verify(userChangeSequenceRepository, never()).findLockedById(any());
+        verify(userRepository, never()).sequenceChanges(anyLong());
+    }
+
+    @Test
+    void testGetUserChangesAll() {
+
+        when(userChangeSequenceRepository.findById(UserChangeSequence.ID)).thenReturn(Optional.of(new UserChangeSequence(UserChangeSequence.ID, 8L, 0L)));
+        when(userRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(anyLong(), any(), any()))
+                .thenReturn(Window.from(List.of(user), ScrollPosition::offset, false));
+        when(userTombstoneRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(anyLong(), any(), any()))
+                .thenReturn(Window.from(List.of(), ScrollPosition::offset, false));
+
+        UserChanges result = userService.getUserChanges(null, 1000);
+
+        // All users, and only tombstones after last sequence, up to max size
+        verify(userRepository).findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(8L, ScrollPosition.keyset(), Limit.of(500));
+        verify(userTombstoneRepository).findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(8L,
+                ScrollPosition.forward(Map.of("changeSequence", 8L, "id", Long.MAX_VALUE)), Limit.of(500));
+        assertThat(result.users(), contains(user));
+        assertTrue(result.deleted().isEmpty());
+        assertFalse(result.hasMore());
+    }
+
+    @Test
+    void testGetUserChangesNoDeletion() {
+
+        when(userChangeSequenceRepository.findById(UserChangeSequence.ID)).thenReturn(Optional.of(new UserChangeSequence(UserChangeSequence.ID, 8L, 0L)));
+        when(userRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(anyLong(), any(), any()))
+                .thenReturn(Window.from(List.of(), ScrollPosition::offset, false));
+        when(userTombstoneRepository.findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(anyLong(), any(), any()))
+                .thenReturn(Window.from(List.of(), ScrollPosition::offset, false));
+
+        UserChanges result = userService.getUserChanges(new UserChangePosition(3L, 1L, 3L, 1L), null);
+
+        // Without deletion, position on tombstones moves up to last sequence
+        assertEquals(new UserChangePosition(3L, 1L, 8L, Long.MAX_VALUE), result.position());
+
+        // So a client synced regularly doesn't expire once tombstones before its first sync are purged
+        when(userChangeSequenceRepository.findById(UserChangeSequence.ID)).thenReturn(Optional.of(new UserChangeSequence(UserChangeSequence.ID, 9L, 8L)));
+        UserChanges later = userService.getUserChanges(result.position(), null);
+
+        assertTrue(later.users().isEmpty());
+        assertTrue(later.deleted().isEmpty());
+    }
+
+    @Test
+    void testGetUserChangesSizeNotValid() {
+
+        try {
+            userService.getUserChanges(null, 0);
+            fail();
+
+        } catch (UserCursorException e) {
+            assertEquals("User changes are not valid, size must be positive", e.getMessage());
+        }
+
+        verify(userChangeSequenceRepository, never()).findById(any());
+        verify(userRepository, never()).findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(anyLong(), any(), any());
+    }
+
+    @Test
+    void testGetUserChangesExpired() {
+
+        when(userChangeSequenceRepository.findById(UserChangeSequence.ID)).thenReturn(Optional.of(new UserChangeSequence(UserChangeSequence.ID, 8L, 5L)));
+
+        // Position before tombstones purged, or inside their last sequence
+        for (UserChangePosition position : List.of(new UserChangePosition(3L, 1L, 4L, Long.MAX_VALUE), new UserChangePosition(3L, 1L, 5L, 1L))) {
+            try {
+                userService.getUserChanges(position, null);
+                fail();
+
+            } catch (UserChangesExpiredException e) {
+                assertEquals("User changes expired, all users must be synced again", e.getMessage());
+            }
+        }
+
+        verify(userRepository, never()).findByChangeSequenceLessThanEqualOrderByChangeSequenceAscIdAsc(anyLong(), any(), any());
+    }
+
+    @Test
+    void testPurgeUserTombstones() {
+
+        Instant before = clock.instant().minus(Duration.ofDays(30));
+        UserChangeSequence sequence = new UserChangeSequence(UserChangeSequence.ID, 8L, 2L);
+        when(userChangeSequenceRepository.findLockedById(UserChangeSequence.ID)).thenReturn(Optional.of(sequence));
+        when(userTombstoneRepository.findMaxChangeSequenceByDeletedAtBefore(before)).thenReturn(5L);
+        when(userTombstoneRepository.deleteByDeletedAtBefore(before)).thenReturn(2);
+
+        assertEquals(2, userService.purgeUserTombstones());
+
+        // Positions up to last sequence of tombstones purged expire
+        assertEquals(5L, sequence.getPurgedValue());
+    }
+
+    @Test
+    void testPurgeUserTombstonesNone() {
+
+        UserChangeSequence sequence = new UserChangeSequence(UserChangeSequence.ID, 8L, 2L);
+        when(userChangeSequenceRepository.findLockedById(UserChangeSequence.ID)).thenReturn(Optional.of(sequence));
+
+        assertEquals(0, userService.purgeUserTombstones());
+        assertEquals(2L, sequence.getPurgedValue());
     }
 
     @Test
     void testGetUser() {
 
-        User result = userService.getUser("test");
+        when(userCache.get("test")).thenReturn(Optional.of(new VersionedUser(userDTO, new UserVersion(1L, 0L))));
+
+        VersionedUser versionedUser = userService.getUser("test");
+        UserDTO result = versionedUser.user();
 
         assertNotNull(result);
-        assertEquals(1L, result.getId().longValue());
-        assertEquals("test", result.getUsername());
-        assertEquals(date, result.getBirthdate());
-        assertEquals("France", result.getCountry());
-        assertEquals("0612345678", result.getPhone());
-        assertEquals("man", result.getGender());
-        assertEquals("test@test.com", result.getEmail());
+        assertEquals("test", result.username());
+        assertEquals(LocalDate.of(2002, 1, 8), result.birthdate());
+        assertEquals("France", result.country());
+        assertEquals("0612345678", result.phone());
+        assertEquals("man", result.gender());
+        assertEquals("test@test.com", result.email());
+        assertEquals(new UserVersion(1L, 0L), versionedUser.version());
     }
 
     @Test
@@ -126,13 +584,15 @@ class UserServiceTest {
     @Test
     void testCreateUser() {
 
-        User userCreation = new User(2L, "testcreation", date, "France", "0612345678", "man", "test@test.com");
+        User userCreation = new User(2L, "testcreation", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
 
         when(userRepository.save(userCreation)).thenReturn(userCreation);
 
         User result = userService.createUser(userCreation);
 
         verify(userRepository).save(userCreation);
+        verify(userCache).evict("testcreation");
+        verify(userEvents).publish(UserEventType.CREATED, "testcreation", userCreation);
         assertNotNull(result);
         assertEquals(2L, result.getId().longValue());
         assertEquals("testcreation", result.getUsername());
@@ -143,6 +603,19 @@ class UserServiceTest {
         assertEquals("test@test.com", result.getEmail());
     }
 
+    @Test
+    void testCreateUserCountryNormalized() {
+
+        User userCreation = new User(null, "TestCreation", date, "FRANCE", "0612345678", "man", "test@test.com", null, null, null);
+
+        when(userRepository.save(userCreation)).thenReturn(userCreation);
+
+        User result = userService.createUser(userCreation);
+
+        assertEquals("testcreation", result.getUsername());
+        assertEquals("France", result.getCountry());
+    }
+
     @Test
     void testCreateUserExist() {
 
@@ -158,7 +631,7 @@ class UserServiceTest {
     @Test
     void testCreateUserIllegalArgument() {
 
-        User userIllegalArgument = new User(3L, "testillegalargument", date, "France", "0612345678", "man", "test@test.com");
+        User userIllegalArgument = new User(3L, "testillegalargument", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
 
         doThrow(new IllegalArgumentException()).when(userRepository).save(userIllegalArgument);
 
@@ -171,79 +644,290 @@ class UserServiceTest {
         }
     }
 
+    @Test
+    void testCreateUserDuplicate() {
+
+        User userDuplicate = new User(3L, "testduplicate", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
+
+        doThrow(new DataIntegrityViolationException("users_username_idx")).when(userRepository).save(userDuplicate);
+
+        try {
+            userService.createUser(userDuplicate);
+            fail();
+
+        } catch (UserCreateException e) {
+            assertEquals("User cannot be created, user already exists", e.getMessage());
+        }
+    }
+
     @Test
     void testCreateUserNotAdult() {
 
-        Date dateNotAdult = Date.from(LocalDate.of(2002, 1, 9).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-        User userNotAdult = new User(4L, "testnotadult", dateNotAdult, "France", "0612345678", "man", "test@test.com");
+        LocalDate dateNotAdult = LocalDate.of(2002, 1, 9);
+        User userNotAdult = new User(4L, "testnotadult", dateNotAdult, "France", "0612345678", "man", "test@test.com", 0L, null, null);
 
         try {
             userService.createUser(userNotAdult);
             fail();
 
-        } catch (UserNotFrenchAdultException e) {
-            assertEquals("User must be adult French", e.getMessage());
+        } catch (UserNotEligibleException e) {
+            assertEquals("User must be at least 18 years old in France", e.getMessage());
         }
     }
 
     @Test
     void testCreateUserNotFrench() {
 
-        Date dateNotFrench = Date.from(LocalDate.of(2002, 1, 8).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-        User userNotFrench = new User(5L, "testnotadult", dateNotFrench, "Spain", "0612345678", "man", "test@test.com");
+        LocalDate dateNotFrench = LocalDate.of(2002, 1, 8);
+        User userNotFrench = new User(5L, "testnotadult", dateNotFrench, "Spain", "0612345678", "man", "test@test.com", 0L, null, null);
 
         try {
             userService.createUser(userNotFrench);
             fail();
 
-        } catch (UserNotFrenchAdultException e) {
-            assertEquals("User must be adult French", e.getMessage());
+        } catch (UserNotEligibleException e) {
+            assertEquals("User must be adult in an eligible country, among France (18)", e.getMessage());
+        }
+    }
+
+    @Test
+    void testCreateUsers() {
+
+        userProperties.setBatchSize(2);
+        User userCreation = new User(null, "TestCreation", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        User userCreation2 = new User(null, "testcreation2", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        User userCreation3 = new User(null, "testcreation3", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        User userDuplicate = new User(null, "testcreation", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        User userExist = new User(null, "test", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        User userNotFrench = new User(null, "testnotfrench", date, "Spain", "0612345678", "man", "test@test.com", null, null, null);
+
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(userRepository.findUsernamesIn(List.of("testcreation", "testcreation2"))).thenReturn(Set.of());
+        when(userRepository.findUsernamesIn(List.of("test", "testcreation3"))).thenReturn(Set.of("test"));
+
+        List<UserBulkResult> result = userService.createUsers(List.of(userCreation, userCreation2, userDuplicate, userExist, userNotFrench, userCreation3));
+
+        verify(userRepository).saveAll(List.of(userCreation, userCreation2));
+        verify(userRepository).saveAll(List.of(userCreation3));
+        verify(userEvents, times(3)).publish(eq(UserEventType.CREATED), any(), any());
+        assertThat(result.size(), is(6));
+        assertTrue(result.get(0).isCreated());
+        assertEquals("testcreation", result.get(0).user().getUsername());
+        assertTrue(result.get(1).isCreated());
+        assertEquals("User cannot be created, user already exists", result.get(2).error().getMessage());
+        assertEquals("User cannot be created, user already exists", result.get(3).error().getMessage());
+        assertEquals("User must be adult in an eligible country, among France (18)", result.get(4).error().getMessage());
+        assertTrue(result.get(5).isCreated());
+    }
+
+    @Test
+    void testCreateCheckedUsersNotCheckedAgain() {
+
+        User userChecked = new User(null, "testchecked", date, "Spain", "0612345678", "man", "test@test.com", null, null, null);
+        User userDuplicate = new User(null, "testchecked", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(userRepository.findUsernamesIn(List.of("testchecked"))).thenReturn(Set.of());
+
+        List<UserBulkResult> result = userService.createCheckedUsers(List.of(userChecked, userDuplicate));
+
+        // Checked when queued, so written even if no longer eligible, duplicates being still rejected
+        verify(userRepository).saveAll(List.of(userChecked));
+        assertTrue(result.get(0).isCreated());
+        assertEquals("User cannot be created, user already exists", result.get(1).error().getMessage());
+    }
+
+    @Test
+    void testCreateUsersDataAccessError() {
+
+        User userCreation = new User(null, "testcreation", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+
+        when(userRepository.findUsernamesIn(List.of("testcreation"))).thenReturn(Set.of());
+        doThrow(new DataIntegrityViolationException("users_username_idx")).when(transactionTemplate).executeWithoutResult(any());
+
+        List<UserBulkResult> result = userService.createUsers(List.of(userCreation));
+
+        assertThat(result.size(), is(1));
+        assertFalse(result.getFirst().isCreated());
+        assertEquals("User cannot be created", result.getFirst().error().getMessage());
+    }
+
+    @Test
+    void testCreateUserGroupCommit() {
+
+        userProperties.getGroupCommit().setEnabled(true);
+        User userCreation = new User(null, "TestCreation", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        when(userGroupCommit.create(userCreation)).thenReturn(userCreation);
+
+        User result = userService.createUser(userCreation);
+
+        verify(userGroupCommit).create(userCreation);
+        verify(userRepository, never()).findByUsername(any());
+        verify(userRepository, never()).save(any());
+
+        // Not checked here, but with users of its group
+        assertEquals("TestCreation", result.getUsername());
+    }
+
+    @Test
+    void testCreateUsersDataAccessErrorEachUser() {
+
+        User userCreation = new User(null, "testcreation", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        User userCreation2 = new User(null, "testcreation2", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+
+        when(userRepository.findUsernamesIn(List.of("testcreation", "testcreation2"))).thenReturn(Set.of());
+        when(userRepository.findUsernamesIn(List.of("testcreation"))).thenReturn(Set.of("testcreation"));
+        when(userRepository.findUsernamesIn(List.of("testcreation2"))).thenReturn(Set.of());
+        doThrow(new DataIntegrityViolationException("users_username_idx"))
+                .doAnswer(invocation -> {
+                    invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+                    return null;
+                }).when(transactionTemplate).executeWithoutResult(any());
+
+        List<UserBulkResult> result = userService.createUsers(List.of(userCreation, userCreation2));
+
+        verify(userRepository).saveAll(List.of(userCreation2));
+        assertEquals("User cannot be created, user already exists", result.get(0).error().getMessage());
+        assertTrue(result.get(1).isCreated());
+    }
+
+    @Test
+    void testCreateUserLater() {
+
+        User userCreation = new User(null, "TestCreation", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+        when(userWriteBehind.submit(userCreation)).thenReturn("id");
+
+        String result = userService.createUserLater(userCreation);
+
+        verify(userWriteBehind).submit(userCreation);
+        verify(userRepository, never()).save(any());
+        assertEquals("id", result);
+        assertEquals("testcreation", userCreation.getUsername());
+    }
+
+    @Test
+    void testCreateUserLaterNotFrench() {
+
+        User userNotFrench = new User(null, "testnotfrench", date, "Spain", "0612345678", "man", "test@test.com", null, null, null);
+
+        try {
+            userService.createUserLater(userNotFrench);
+            fail();
+
+        } catch (UserNotEligibleException e) {
+            assertEquals("User must be adult in an eligible country, among France (18)", e.getMessage());
+            verify(userWriteBehind, never()).submit(any());
+        }
+    }
+
+    @Test
+    void testGetUserCreation() {
+
+        CompletableFuture<UserBulkResult> creation = CompletableFuture.completedFuture(UserBulkResult.created(user));
+        when(userWriteBehind.get("id")).thenReturn(Optional.of(creation));
+        when(userWriteBehind.get("unknown")).thenReturn(Optional.empty());
+
+        assertSame(creation, userService.getUserCreation("id"));
+
+        try {
+            userService.getUserCreation("unknown");
+            fail();
+
+        } catch (UserNotFoundException e) {
+            assertEquals("User creation not found", e.getMessage());
         }
     }
 
     @Test
     void testUpdateUser() {
 
-        User userUpdate = new User(1L, "test", date, "France", "0612345678", "female", "test@test.com");
+        User userUpdate = new User(null, "Test", date, "France", "0612345678", "female", "test@test.com", null, null, null);
 
-        when(userRepository.save(userUpdate)).thenReturn(userUpdate);
+        when(userRepository.findIdByNaturalId("test")).thenReturn(Optional.of(1L));
+        when(userRepository.updateByUsername(userUpdate)).thenReturn(1);
 
-        User result = userService.updateUser(userUpdate);
+        User result = userService.updateUser(userUpdate, null);
 
-        verify(userRepository).save(userUpdate);
+        verify(userRepository).updateByUsername(userUpdate);
+        verify(userRepository, never()).findByUsername(any());
+        verify(userRepository, never()).save(any());
+        verify(userRepository).evictByNaturalId("test", 1L);
+        verify(userCache).evict("test");
+        verify(userEvents).publish(UserEventType.UPDATED, "test", userUpdate);
         assertNotNull(result);
-        assertEquals(1L, result.getId().longValue());
         assertEquals("test", result.getUsername());
         assertEquals(date, result.getBirthdate());
         assertEquals("France", result.getCountry());
         assertEquals("0612345678", result.getPhone());
         assertEquals("female", result.getGender());
         assertEquals("test@test.com", result.getEmail());
+        assertEquals(clock.instant(), result.getUpdatedAt());
+    }
+
+    @Test
+    void testUpdateUserIfMatch() {
+
+        User userUpdate = new User(null, "test", date, "France", "0612345678", "female", "test@test.com", null, null, null);
+        UserVersion expected = new UserVersion(1L, 2L);
+
+        when(userRepository.updateByUsernameAndVersion(userUpdate, expected)).thenReturn(1);
+
+        User result = userService.updateUser(userUpdate, expected);
+
+        verify(userRepository).updateByUsernameAndVersion(userUpdate, expected);
+        verify(userRepository, never()).updateByUsername(any());
+        verify(userRepository).evictByNaturalId("test", 1L);
+        verify(userCache).evict("test");
+        assertEquals(new UserVersion(1L, 3L), UserVersion.of(result));
+    }
+
+    @Test
+    void testUpdateUserIfMatchFailed() {
+
+        User userUpdate = new User(null, "test", date, "France", "0612345678", "female", "test@test.com", null, null, null);
+
+        try {
+            userService.updateUser(userUpdate, new UserVersion(1L, 2L));
+            fail();
+
+        } catch (UserPreconditionFailedException e) {
+            assertEquals("User cannot be updated, user is not in version expected", e.getMessage());
+        }
+
+        verify(userCache, never()).evict(any());
     }
 
     @Test
     void testUpdateUserNotExist() {
 
-        User userUpdate = new User(4L, "testupdate", date, "France", "0612345678", "female", "test@test.com");
+        User userUpdate = new User(4L, "testupdate", date, "France", "0612345678", "female", "test@test.com", 0L, null, null);
 
         try {
-            userService.updateUser(userUpdate);
+            userService.updateUser(userUpdate, null);
             fail();
 
         } catch (UserUpdateException e) {
             assertEquals("User cannot be updated, user not exists", e.getMessage());
+            verify(userRepository, never()).updateByUsername(any());
         }
     }
 
     @Test
     void testUpdateUserIllegalArgument() {
 
-        User userIllegalArgument = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com");
+        User userIllegalArgument = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
 
-        doThrow(new IllegalArgumentException()).when(userRepository).save(userIllegalArgument);
+        when(userRepository.findIdByNaturalId("test")).thenReturn(Optional.of(1L));
+        doThrow(new IllegalArgumentException()).when(userRepository).updateByUsername(userIllegalArgument);
 
         try {
-            userService.updateUser(userIllegalArgument);
+            userService.updateUser(userIllegalArgument, null);
             fail();
 
         } catch (UserUpdateException e) {
@@ -254,43 +938,49 @@ class UserServiceTest {
     @Test
     void testUpdateUserNotAdult() {
 
-        Date dateNotAdult = Date.from(LocalDate.of(2002, 1, 9).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-        User userNotAdult = new User(4L, "testnotadult", dateNotAdult, "France", "0612345678", "man", "test@test.com");
+        LocalDate dateNotAdult = LocalDate.of(2002, 1, 9);
+        User userNotAdult = new User(4L, "testnotadult", dateNotAdult, "France", "0612345678", "man", "test@test.com", 0L, null, null);
 
         try {
-            userService.updateUser(userNotAdult);
+            userService.updateUser(userNotAdult, null);
             fail();
 
-        } catch (UserNotFrenchAdultException e) {
-            assertEquals("User must be adult French", e.getMessage());
+        } catch (UserNotEligibleException e) {
+            assertEquals("User must be at least 18 years old in France", e.getMessage());
         }
     }
 
     @Test
     void testUpdateUserNotFrench() {
 
-        Date dateNotFrench = Date.from(LocalDate.of(2002, 1, 8).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
-        User userNotFrench = new User(5L, "testnotadult", dateNotFrench, "Spain", "0612345678", "man", "test@test.com");
+        LocalDate dateNotFrench = LocalDate.of(2002, 1, 8);
+        User userNotFrench = new User(5L, "testnotadult", dateNotFrench, "Spain", "0612345678", "man", "test@test.com", 0L, null, null);
 
         try {
-            userService.updateUser(userNotFrench);
+            userService.updateUser(userNotFrench, null);
             fail();
 
-        } catch (UserNotFrenchAdultException e) {
-            assertEquals("User must be adult French", e.getMessage());
+        } catch (UserNotEligibleException e) {
+            assertEquals("User must be adult in an eligible country, among France (18)", e.getMessage());
         }
     }
 
     @Test
     void testReplaceUser() {
 
-        User userReplaced = new User(2L, "testreplace", date, "France", "0612345678", "female", "test@test.com");
-        when(userRepository.save(userReplaced)).thenReturn(userReplaced);
+        User userReplaced = new User(2L, "testreplace", date, "France", "0612345678", "female", "test@test.com", 0L, null, null);
+        when(userRepository.findIdByNaturalId("test")).thenReturn(Optional.of(1L));
+        when(userRepository.deleteByUsername("test")).thenReturn(1);
+        when(userRepository.saveAndFlush(userReplaced)).thenReturn(userReplaced);
 
-        User result = userService.replaceUser("test", userReplaced);
+        User result = userService.replaceUser("test", userReplaced, null);
 
-        verify(userRepository).delete(user);
-        verify(userRepository).save(userReplaced);
+        verify(userRepository).deleteByUsername("test");
+        verify(userRepository).saveAndFlush(userReplaced);
+        verify(userRepository).evictByNaturalId("test", 1L);
+        verify(userCache).evict("test");
+        verify(userCache).evict("testreplace");
+        verify(userEvents).publish(UserEventType.REPLACED, "test", userReplaced);
         assertNotNull(result);
         assertEquals(2L, result.getId().longValue());
         assertEquals("testreplace", result.getUsername());
@@ -301,31 +991,159 @@ class UserServiceTest {
         assertEquals("test@test.com", result.getEmail());
     }
 
+    @Test
+    void testReplaceUserSameUsername() {
+
+        User userReplaced = new User(null, "Test", date, "France", "0612345678", "female", "test@test.com", null, null, null);
+        when(userRepository.findIdByNaturalId("test")).thenReturn(Optional.of(1L));
+        when(userRepository.updateByUsername(userReplaced)).thenReturn(1);
+
+        User result = userService.replaceUser("test", userReplaced, null);
+
+        verify(userRepository).updateByUsername(userReplaced);
+        verify(userRepository, never()).deleteByUsername(any());
+        verify(userRepository, never()).saveAndFlush(any());
+        verify(userEvents).publish(UserEventType.REPLACED, "test", userReplaced);
+        assertNotNull(result);
+        assertEquals("test", result.getUsername());
+        assertEquals("female", result.getGender());
+    }
+
+    @Test
+    void testReplaceUserIfMatch() {
+
+        User userReplaced = new User(null, "testreplace", date, "France", "0612345678", "female", "test@test.com", null, null, null);
+        User userSaved = new User(2L, "testreplace", date, "France", "0612345678", "female", "test@test.com", 0L, null, null);
+        UserVersion expected = new UserVersion(1L, 2L);
+        when(userRepository.deleteByUsernameAndVersion("test", expected)).thenReturn(1);
+        when(userRepository.saveAndFlush(userReplaced)).thenReturn(userSaved);
+
+        User result = userService.replaceUser("test", userReplaced, expected);
+
+        verify(userRepository).deleteByUsernameAndVersion("test", expected);
+        verify(userRepository, never()).deleteByUsername(any());
+        assertEquals(new UserVersion(2L, 0L), UserVersion.of(result));
+    }
+
+    @Test
+    void testReplaceUserSameUsernameIfMatchFailed() {
+
+        User userReplaced = new User(null, "test", date, "France", "0612345678", "female", "test@test.com", null, null, null);
+
+        try {
+            userService.replaceUser("test", userReplaced, new UserVersion(1L, 2L));
+            fail();
+
+        } catch (UserPreconditionFailedException e) {
+            assertEquals("User cannot be replaced, user is not in version expected", e.getMessage());
+        }
+    }
+
     @Test
     void testReplaceUserNotFound() {
 
-        User userReplaced = new User(2L, "testreplace", date, "France", "0612345678", "female", "test@test.com");
+        User userReplaced = new User(2L, "testreplace", date, "France", "0612345678", "female", "test@test.com", 0L, null, null);
+        try {
+            userService.replaceUser("testnotfound", userReplaced, null);
+            fail();
+
+        } catch (UserReplaceException e) {
+            assertEquals("User cannot be replaced, user does not exist", e.getMessage());
+        }
+    }
+
+    @Test
+    void testReplaceUserSameUsernameNotFound() {
+
+        User userReplaced = new User(2L, "testnotfound", date, "France", "0612345678", "female", "test@test.com", 0L, null, null);
+        try {
+            userService.replaceUser("testnotfound", userReplaced, null);
+            fail();
+
+        } catch (UserReplaceException e) {
+            assertEquals("User cannot be replaced, user does not exist", e.getMessage());
+        }
+    }
+
+    @Test
+    void testReplaceUserExist() {
+
+        User userReplaced = new User(2L, "testexist", date, "France", "0612345678", "female", "test@test.com", 0L, null, null);
+        when(userRepository.findIdByNaturalId("test")).thenReturn(Optional.of(1L));
+        when(userRepository.deleteByUsername("test")).thenReturn(1);
+        doThrow(new DataIntegrityViolationException("users_username_idx")).when(userRepository).saveAndFlush(userReplaced);
+
+        try {
+            userService.replaceUser("test", userReplaced, null);
+            fail();
+
+        } catch (UserReplaceException e) {
+            assertEquals("User cannot be replaced, user already exists", e.getMessage());
+        }
+    }
+
+    @Test
+    void testReplaceUserNotAdult() {
+
+        LocalDate dateNotAdult = LocalDate.of(2002, 1, 9);
+        User userNotAdult = new User(4L, "test", dateNotAdult, "France", "0612345678", "man", "test@test.com", 0L, null, null);
+
         try {
-            userService.replaceUser("testnotfound", userReplaced);
+            userService.replaceUser("test", userNotAdult, null);
             fail();
 
         } catch (UserReplaceException e) {
-            assertEquals("User cannot be replaced, User cannot be deleted, user does not exist", e.getMessage());
+            assertEquals("User cannot be replaced, User must be at least 18 years old in France", e.getMessage());
         }
     }
 
     @Test
     void testDeleteUser() {
 
-        userService.deleteUser("test");
-        verify(userRepository).delete(user);
+        when(userRepository.findIdByNaturalId("test")).thenReturn(Optional.of(1L));
+        when(userRepository.deleteByUsername("test")).thenReturn(1);
+
+        userService.deleteUser("Test", null);
+
+        verify(userRepository).deleteByUsername("test");
+        verify(userRepository, never()).findByUsername(any());
+        verify(userTombstoneRepository).save(new UserTombstone(null, "test", clock.instant(), null));
+        verify(userCache).evict("test");
+        verify(userEvents).publish(UserEventType.DELETED, "test", null);
+    }
+
+    @Test
+    void testDeleteUserIfMatch() {
+
+        UserVersion expected = new UserVersion(1L, 2L);
+        when(userRepository.deleteByUsernameAndVersion("test", expected)).thenReturn(1);
+
+        userService.deleteUser("Test", expected);
+
+        verify(userRepository).deleteByUsernameAndVersion("test", expected);
+        verify(userRepository, never()).deleteByUsername(any());
+        verify(userCache).evict("test");
+    }
+
+    @Test
+    void testDeleteUserIfMatchFailed() {
+
+        try {
+            userService.deleteUser("test", new UserVersion(1L, 2L));
+            fail();
+
+        } catch (UserPreconditionFailedException e) {
+            assertEquals("User cannot be deleted, user is not in version expected", e.getMessage());
+        }
+
+        verify(userEvents, never()).publish(any(), any(), any());
     }
 
     @Test
     void testDeleteUserNotFound() {
 
         try {
-            userService.deleteUser("testnotfound");
+            userService.deleteUser("testnotfound", null);
             fail();
 
         } catch (UserDeleteException e) {
@@ -336,13 +1154,11 @@ class UserServiceTest {
     @Test
     void testDeleteUserIllegalArgument() {
 
-        User userIllegalArgument = new User(1L, "testillegalargument", date, "France", "0612345678", "man", "test@test.com");
-
-        when(userRepository.findByUsername("testillegalargument")).thenReturn(Optional.of(userIllegalArgument));
-        doThrow(new IllegalArgumentException()).when(userRepository).delete(userIllegalArgument);
+        when(userRepository.findIdByNaturalId("testillegalargument")).thenReturn(Optional.of(1L));
+        doThrow(new IllegalArgumentException()).when(userRepository).deleteByUsername("testillegalargument");
 
         try {
-            userService.deleteUser("testillegalargument");
+            userService.deleteUser("testillegalargument", null);
             fail();
 
         } catch (UserDeleteException e) {
@@ -350,4 +1166,16 @@ class UserServiceTest {
         }
     }
 
+    @Test
+    void testSubscribeUserEvents() {
+
+        SseEmitter emitter = new SseEmitter();
+        when(userEvents.subscribe(12L)).thenReturn(emitter);
+
+        SseEmitter result = userService.subscribeUserEvents(12L);
+
+        verify(userEvents).subscribe(12L);
+        assertEquals(emitter, result);
+    }
+
 }
@@ -0,0 +1,121 @@
+package com.jvezolles.api.user;
+
+import com.jvezolles.api.config.IdProperties;
+import com.jvezolles.api.config.UserProperties;
+import com.jvezolles.api.user.exception.UserQueueFullException;
+import com.jvezolles.api.user.model.User;
+import com.jvezolles.api.user.model.UserBulkResult;
+import com.jvezolles.api.util.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for UserWriteBehind
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserWriteBehindTest {
+
+    @Mock
+    private UserService userService;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private UserWriteBehind userWriteBehind;
+
+    private final LocalDate date = LocalDate.of(2002, 1, 8);
+    private final User user = new User(null, "test", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+    private final User user2 = new User(null, "test2", date, "France", "0612345678", "man", "test@test.com", null, null, null);
+
+    @BeforeEach
+    void setUp() {
+
+        UserProperties userProperties = new UserProperties();
+        userProperties.getWriteBehind().setCapacity(2);
+        IdProperties idProperties = new IdProperties();
+        idProperties.setNode(3);
+        userProperties.getWriteBehind().setOfferTimeout(Duration.ofMillis(10));
+        userWriteBehind = new UserWriteBehind(userService, userProperties, idProperties, meterRegistry);
+    }
+
+    @Test
+    void testSubmitQueueFull() {
+
+        userWriteBehind.submit(user);
+        userWriteBehind.submit(user2);
+
+        assertThrows(UserQueueFullException.class, () -> userWriteBehind.submit(user));
+        assertEquals(2, meterRegistry.get(Constants.USER_WRITE_BEHIND_QUEUE).gauge().value());
+        assertEquals(1, meterRegistry.get(Constants.USER_WRITE_BEHIND_REJECTED).counter().count());
+    }
+
+    @Test
+    void testSubmitIdStartsWithNode() {
+
+        String id = userWriteBehind.submit(user);
+
+        assertTrue(id.startsWith("3-"));
+        assertTrue(userWriteBehind.get(id).isPresent());
+    }
+
+    @Test
+    void testDrainOnStop() throws Exception {
+
+        when(userService.createCheckedUsers(List.of(user, user2))).thenReturn(List.of(UserBulkResult.created(user), UserBulkResult.failed(new RuntimeException("error"))));
+
+        // Users pending before writer start are written in one batch
+        String id = userWriteBehind.submit(user);
+        String id2 = userWriteBehind.submit(user2);
+        userWriteBehind.start();
+        userWriteBehind.stop();
+
+        CompletableFuture<UserBulkResult> creation = userWriteBehind.get(id).orElseThrow();
+        CompletableFuture<UserBulkResult> creation2 = userWriteBehind.get(id2).orElseThrow();
+        assertTrue(creation.get(1, TimeUnit.SECONDS).isCreated());
+        assertEquals("error", creation2.get(1, TimeUnit.SECONDS).error().getMessage());
+        verify(userService, times(1)).createCheckedUsers(anyList());
+        assertEquals(1, meterRegistry.get(Constants.USER_WRITE_BEHIND_FLUSH).timer().count());
+        assertThrows(UserQueueFullException.class, () -> userWriteBehind.submit(user));
+    }
+
+    @Test
+    void testStopPendingNotWritten() throws Exception {
+
+        // Writer not started, user pending is failed on stop
+        String id = userWriteBehind.submit(user);
+        userWriteBehind.stop();
+
+        assertEquals("User cannot be created, not written in time", userWriteBehind.get(id).orElseThrow().get(1, TimeUnit.SECONDS).error().getMessage());
+        assertEquals(0, meterRegistry.get(Constants.USER_WRITE_BEHIND_QUEUE).gauge().value());
+        verify(userService, never()).createCheckedUsers(anyList());
+    }
+
+    @Test
+    void testFlushFailed() throws Exception {
+
+        when(userService.createCheckedUsers(List.of(user))).thenThrow(new IllegalStateException("database down"));
+
+        String id = userWriteBehind.submit(user);
+        userWriteBehind.start();
+        userWriteBehind.stop();
+
+        assertEquals("User cannot be created", userWriteBehind.get(id).orElseThrow().get(1, TimeUnit.SECONDS).error().getMessage());
+        assertTrue(userWriteBehind.get("unknown").isEmpty());
+    }
+
+}
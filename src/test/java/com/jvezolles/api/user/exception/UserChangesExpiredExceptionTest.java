@@ -0,0 +1,26 @@
+package com.jvezolles.api.user.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Unit tests for UserChangesExpiredException
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserChangesExpiredExceptionTest {
+
+    @Test
+    void testUserChangesExpiredException() {
+
+        UserChangesExpiredException userChangesExpiredException = new UserChangesExpiredException("Error user changes expired");
+
+        assertNotNull(userChangesExpiredException);
+        assertEquals("Error user changes expired", userChangesExpiredException.getMessage());
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.jvezolles.api.user.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Unit tests for UserCursorException
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserCursorExceptionTest {
+
+    @Test
+    void testUserCursorException() {
+
+        UserCursorException userCursorException = new UserCursorException("Error user cursor");
+
+        assertNotNull(userCursorException);
+        assertEquals("Error user cursor", userCursorException.getMessage());
+    }
+
+}
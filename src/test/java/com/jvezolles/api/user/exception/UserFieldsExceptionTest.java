@@ -0,0 +1,26 @@
+package com.jvezolles.api.user.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Unit tests for UserFieldsException
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserFieldsExceptionTest {
+
+    @Test
+    void testUserFieldsException() {
+
+        UserFieldsException userFieldsException = new UserFieldsException("Error user fields");
+
+        assertNotNull(userFieldsException);
+        assertEquals("Error user fields", userFieldsException.getMessage());
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.jvezolles.api.user.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Unit tests for UserNotEligibleException
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserNotEligibleExceptionTest {
+
+    @Test
+    void testUserNotEligibleException() {
+
+        UserNotEligibleException userNotEligibleException = new UserNotEligibleException("Error user update");
+
+        assertNotNull(userNotEligibleException);
+        assertEquals("Error user update", userNotEligibleException.getMessage());
+    }
+
+}
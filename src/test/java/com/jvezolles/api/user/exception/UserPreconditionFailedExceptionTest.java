@@ -0,0 +1,26 @@
+package com.jvezolles.api.user.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Unit tests for UserPreconditionFailedException
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserPreconditionFailedExceptionTest {
+
+    @Test
+    void testUserPreconditionFailedException() {
+
+        UserPreconditionFailedException userPreconditionFailedException = new UserPreconditionFailedException("Error user precondition failed");
+
+        assertNotNull(userPreconditionFailedException);
+        assertEquals("Error user precondition failed", userPreconditionFailedException.getMessage());
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.jvezolles.api.user.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Unit tests for UserQueueFullException
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserQueueFullExceptionTest {
+
+    @Test
+    void testUserQueueFullException() {
+
+        UserQueueFullException userQueueFullException = new UserQueueFullException("Error user queue full");
+
+        assertNotNull(userQueueFullException);
+        assertEquals("Error user queue full", userQueueFullException.getMessage());
+    }
+
+}
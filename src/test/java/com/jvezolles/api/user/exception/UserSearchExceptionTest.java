@@ -0,0 +1,26 @@
+package com.jvezolles.api.user.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Unit tests for UserSearchException
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class UserSearchExceptionTest {
+
+    @Test
+    void testUserSearchException() {
+
+        UserSearchException userSearchException = new UserSearchException("Error user search");
+
+        assertNotNull(userSearchException);
+        assertEquals("Error user search", userSearchException.getMessage());
+    }
+
+}
@@ -3,9 +3,10 @@ package com.jvezolles.api.user.model;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -20,7 +21,7 @@ class UserTest {
     @Test
     void testUser() {
 
-        Date date = Date.from(LocalDate.of(2002, 1, 8).atStartOfDay().atZone(ZoneOffset.UTC).toInstant());
+        LocalDate date = LocalDate.of(2002, 1, 8);
 
         User user1 = new User();
         user1.setId(1L);
@@ -39,7 +40,7 @@ class UserTest {
         assertEquals("man", user1.getGender());
         assertEquals("test@test.com", user1.getEmail());
 
-        User user2 = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com");
+        User user2 = new User(1L, "test", date, "France", "0612345678", "man", "test@test.com", 0L, null, null);
 
         assertEquals(1L, user2.getId().longValue());
         assertEquals("test", user2.getUsername());
@@ -48,6 +49,28 @@ class UserTest {
         assertEquals("0612345678", user2.getPhone());
         assertEquals("man", user2.getGender());
         assertEquals("test@test.com", user2.getEmail());
+        assertEquals(0L, user2.getVersion().longValue());
+    }
+
+    @Test
+    void testUserTimeListener() {
+
+        Clock clock = Clock.fixed(Instant.parse("2020-01-08T10:00:00.123456789Z"), ZoneOffset.UTC);
+        UserTimeListener listener = new UserTimeListener(clock);
+
+        // Time of write taken from clock in microseconds if not set
+        User user = new User();
+        listener.prePersist(user);
+
+        assertEquals(Instant.parse("2020-01-08T10:00:00.123456Z"), user.getUpdatedAt());
+
+        // Time of write set by service is kept
+        Instant updatedAt = Instant.parse("2020-01-07T10:00:00Z");
+        User user2 = new User();
+        user2.setUpdatedAt(updatedAt);
+        listener.prePersist(user2);
+
+        assertEquals(updatedAt, user2.getUpdatedAt());
     }
 
 }
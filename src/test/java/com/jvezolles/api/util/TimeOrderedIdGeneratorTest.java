@@ -0,0 +1,98 @@
+package com.jvezolles.api.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TimeOrderedIdGenerator
+ *
+ * @author Vezolles
+ */
+@SpringBootTest
+class TimeOrderedIdGeneratorTest {
+
+    private static final long NOW = TimeOrderedIdGenerator.EPOCH + 1_000L;
+
+    @Test
+    void testNextId() {
+
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(5, () -> NOW);
+
+        long id = generator.nextId();
+
+        assertEquals(1_000L, id >>> (TimeOrderedIdGenerator.NODE_BITS + TimeOrderedIdGenerator.SEQUENCE_BITS));
+        assertEquals(5L, (id >>> TimeOrderedIdGenerator.SEQUENCE_BITS) & TimeOrderedIdGenerator.MAX_NODE);
+        assertEquals(0L, id & ((1 << TimeOrderedIdGenerator.SEQUENCE_BITS) - 1));
+    }
+
+    @Test
+    void testNextIdOrdered() {
+
+        AtomicLong clock = new AtomicLong(NOW);
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1, clock::get);
+
+        long previous = generator.nextId();
+
+        // Same millisecond, sequence exhausted and clock going backward
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5_000) {
+                clock.set(NOW - 10);
+            }
+
+            long id = generator.nextId();
+            assertThat(id, greaterThan(previous));
+            previous = id;
+        }
+    }
+
+    @Test
+    void testNextIdDistinctNodes() {
+
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1, () -> NOW);
+        TimeOrderedIdGenerator generator2 = new TimeOrderedIdGenerator(2, () -> NOW);
+
+        for (int i = 0; i < 100; i++) {
+            assertNotEquals(generator.nextId(), generator2.nextId());
+        }
+    }
+
+    @Test
+    void testNextIdConcurrent() throws InterruptedException {
+
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                executor.submit(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        ids.add(generator.nextId());
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(80_000, ids.size());
+    }
+
+    @Test
+    void testNodeNotValid() {
+
+        assertThrows(IllegalArgumentException.class, () -> new TimeOrderedIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE + 1));
+    }
+
+}